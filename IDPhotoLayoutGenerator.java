@@ -3,10 +3,12 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 import javax.imageio.ImageIO;
 
 /**
@@ -463,17 +465,28 @@ class PhotoLayout {
         int startX = (paperWidthPx - totalPhotoWidth) / 2;
         int startY = (paperHeightPx - totalPhotoHeight) / 2;
 
-        // Draw each photo on the sheet
-        for (int row = 0; row < layoutOption.getRows(); row++) {
-            for (int col = 0; col < layoutOption.getColumns(); col++) {
-                int x = startX + col * (photoWidthPx + horizontalSpacingPx);
-                int y = startY + row * (photoHeightPx + verticalSpacingPx);
+        g2d.dispose();
 
-                g2d.drawImage(resizedPhoto, x, y, null);
+        // Copy the photo into each cell row by row; both images are INT_RGB so
+        // this is a plain array copy instead of a drawImage call per cell
+        int[] photoPixels = ((DataBufferInt) resizedPhoto.getRaster().getDataBuffer()).getData();
+        int[] sheetPixels = ((DataBufferInt) sheetImage.getRaster().getDataBuffer()).getData();
+        int columns = layoutOption.getColumns();
+        IntStream.range(0, layoutOption.getRows() * columns).parallel().forEach(cell -> {
+            int x = startX + (cell % columns) * (photoWidthPx + horizontalSpacingPx);
+            int y = startY + (cell / columns) * (photoHeightPx + verticalSpacingPx);
+
+            // Clip the cell to the sheet
+            int x0 = Math.max(0, x);
+            int x1 = Math.min(paperWidthPx, x + photoWidthPx);
+            int y0 = Math.max(0, y);
+            int y1 = Math.min(paperHeightPx, y + photoHeightPx);
+            for (int sheetY = y0; sheetY < y1 && x0 < x1; sheetY++) {
+                System.arraycopy(photoPixels, (sheetY - y) * photoWidthPx + (x0 - x),
+                        sheetPixels, sheetY * paperWidthPx + x0, x1 - x0);
             }
-        }
+        });
 
-        g2d.dispose();
         return sheetImage;
     }
 
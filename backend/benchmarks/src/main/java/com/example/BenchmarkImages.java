@@ -0,0 +1,65 @@
+package com.example;
+
+import com.example.model.ImageBuffers;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Test images for the benchmarks: the bundled portrait stretched to the
+ * requested size, with a little fixed noise so encoders and filters see
+ * photo-like detail rather than flat upscaled areas.
+ */
+public final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * Returns a canonical TYPE_INT_ARGB portrait of the given size.
+     *
+     * @param size "WIDTHxHEIGHT"
+     */
+    public static BufferedImage portrait(String size) {
+        String[] parts = size.split("x");
+        int width = Integer.parseInt(parts[0]);
+        int height = Integer.parseInt(parts[1]);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(loadPortrait(), 0, 0, width, height, null);
+        g.dispose();
+
+        int[] pixels = ImageBuffers.pixels(image);
+        Random random = new Random(42);
+        for (int i = 0; i < pixels.length; i++) {
+            int noise = random.nextInt(9) - 4;
+            int p = pixels[i];
+            int r = clamp(((p >> 16) & 0xFF) + noise);
+            int gr = clamp(((p >> 8) & 0xFF) + noise);
+            int b = clamp((p & 0xFF) + noise);
+            pixels[i] = 0xFF000000 | (r << 16) | (gr << 8) | b;
+        }
+        return image;
+    }
+
+    private static BufferedImage loadPortrait() {
+        try (InputStream in = BenchmarkImages.class.getResourceAsStream("/portrait.jpg")) {
+            return ImageIO.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.model;
+
+import com.example.BenchmarkImages;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opencv.core.Mat;
+
+import nu.pattern.OpenCV;
+
+/**
+ * Copies made for every undo step, and the Mat view that OpenCV-based
+ * operations read from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageStateBenchmark {
+
+    @Param({ "640x480", "1920x1080", "4000x3000" })
+    public String size;
+
+    private final ImageState state = new ImageState();
+    private BufferedImage canonical;
+    private BufferedImage bgr;
+
+    @Setup
+    public void setup() {
+        OpenCV.loadLocally();
+        canonical = BenchmarkImages.portrait(size);
+        // What ImageIO hands back for a JPEG, before the state canonicalizes it
+        bgr = new BufferedImage(canonical.getWidth(), canonical.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = bgr.createGraphics();
+        g.drawImage(canonical, 0, 0, null);
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage cloneCanonical() {
+        return state.cloneImage(canonical);
+    }
+
+    @Benchmark
+    public BufferedImage cloneBgr() {
+        return state.cloneImage(bgr);
+    }
+
+    @Benchmark
+    public int toBgrMat() {
+        Mat mat = ImageBuffers.toBgrMat(canonical);
+        int rows = mat.rows();
+        mat.release();
+        return rows;
+    }
+}
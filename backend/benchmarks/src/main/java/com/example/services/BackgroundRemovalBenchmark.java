@@ -0,0 +1,88 @@
+package com.example.services;
+
+import com.example.BenchmarkImages;
+import com.example.model.ImageBuffers;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opencv.core.Mat;
+
+import ai.onnxruntime.OrtException;
+
+/**
+ * The stages of U2Net background removal. Inference needs models/u2net.onnx
+ * in the working directory; the other stages run without it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BackgroundRemovalBenchmark {
+
+    @Param({ "640x480", "1920x1080", "4000x3000" })
+    public String size;
+
+    private BackgroundRemovalService service;
+    private BufferedImage image;
+    private Mat mat;
+    private float[] input;
+    private float[][][][] modelOutput;
+    private Mat mask;
+
+    @Setup
+    public void setup() {
+        service = new BackgroundRemovalService(new FaceCenteringService());
+        image = BenchmarkImages.portrait(size);
+        mat = ImageBuffers.toBgrMat(image);
+        input = service.prepareInput(mat);
+
+        // A soft-edged blob stands in for the model output
+        modelOutput = new float[1][1][320][320];
+        Random random = new Random(42);
+        for (int y = 0; y < 320; y++) {
+            for (int x = 0; x < 320; x++) {
+                double d = Math.hypot(x - 160, y - 140) / 120.0;
+                modelOutput[0][0][y][x] = (float) Math.max(0, Math.min(1, 1.5 - d + random.nextGaussian() * 0.02));
+            }
+        }
+        mask = service.postprocessMask(modelOutput, image.getWidth(), image.getHeight());
+    }
+
+    @Benchmark
+    public float[] tensorPrep() {
+        return service.prepareInput(mat);
+    }
+
+    @Benchmark
+    public float[][][][] inference() throws OrtException {
+        return service.runModel(input);
+    }
+
+    @Benchmark
+    public int maskPostprocess() {
+        Mat result = service.postprocessMask(modelOutput, image.getWidth(), image.getHeight());
+        int rows = result.rows();
+        result.release();
+        return rows;
+    }
+
+    @Benchmark
+    public BufferedImage transparentImage() {
+        return service.createTransparentImage(image, mask);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.services;
+
+import com.example.BenchmarkImages;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Haar cascade face detection, on a downscaled preview as the editor does it
+ * and at full resolution for comparison. Run from backend/ so the cascades
+ * are found.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FaceCenteringBenchmark {
+
+    @Param({ "640x480", "1920x1080", "4000x3000" })
+    public String size;
+
+    private final FaceCenteringService service = new FaceCenteringService();
+    private BufferedImage image;
+
+    @Setup
+    public void setup() {
+        image = BenchmarkImages.portrait(size);
+    }
+
+    @Benchmark
+    public List<Rectangle> detectOnPreview() {
+        return service.findFaces(image, 640);
+    }
+
+    @Benchmark
+    public List<Rectangle> detectFullSize() {
+        return service.findFaces(image, Integer.MAX_VALUE);
+    }
+}
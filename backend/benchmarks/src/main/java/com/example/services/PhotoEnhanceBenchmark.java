@@ -0,0 +1,58 @@
+package com.example.services;
+
+import com.example.BenchmarkImages;
+import com.example.dto.PhotoEnhanceRequest;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Brightness and contrast, as applied by /api/enhance and the enhance
+ * pipeline step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhotoEnhanceBenchmark {
+
+    @Param({ "640x480", "1920x1080", "4000x3000" })
+    public String size;
+
+    private final PhotoEnhanceService service = new PhotoEnhanceService();
+    private final PhotoEnhanceRequest request = new PhotoEnhanceRequest();
+    private BufferedImage image;
+    private int[] lut;
+
+    @Setup
+    public void setup() {
+        image = BenchmarkImages.portrait(size);
+        request.setBrightness(20);
+        request.setContrast(15);
+        lut = service.buildLut(request.getBrightness(), request.getContrast());
+    }
+
+    @Benchmark
+    public BufferedImage brightnessContrast() {
+        return service.apply(image, request);
+    }
+
+    @Benchmark
+    public BufferedImage applyLut() {
+        return service.applyLut(image, lut);
+    }
+}
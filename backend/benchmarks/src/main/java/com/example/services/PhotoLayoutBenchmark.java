@@ -0,0 +1,53 @@
+package com.example.services;
+
+import com.example.BenchmarkImages;
+import com.example.dto.PhotoLayoutRequest;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering a print sheet of repeated photos at print resolution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhotoLayoutBenchmark {
+
+    @Param({ "640x480", "1920x1080", "4000x3000" })
+    public String size;
+
+    @Param({ "2x2-4x6in", "6x8-passport-a4" })
+    public String template;
+
+    private final PhotoLayoutService service = new PhotoLayoutService(new LayoutTemplateRegistry());
+    private final PhotoLayoutRequest request = new PhotoLayoutRequest();
+    private BufferedImage image;
+
+    @Setup
+    public void setup() {
+        image = BenchmarkImages.portrait(size);
+        request.setTemplateId(template);
+        request.setDpi(300);
+    }
+
+    @Benchmark
+    public BufferedImage gridLayout() {
+        return service.apply(image, request);
+    }
+}
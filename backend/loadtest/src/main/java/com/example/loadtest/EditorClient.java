@@ -0,0 +1,140 @@
+package com.example.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * HTTP client for one simulated operator. The session is issued by the
+ * backend when the client opens, and every call carries its session header.
+ * Calls are timed under an endpoint label such as
+ * "POST /api/crop". Non-2xx responses are recorded as failures and returned
+ * as null, so a session carries on past a failing step as a user would.
+ */
+final class EditorClient {
+
+    private static final String SESSION_HEADER = "X-Session-Id";
+
+    private final HttpClient http;
+    private final URI base;
+    private final String sessionId;
+    private final LatencyStats stats;
+    private final ObjectMapper mapper;
+
+    private EditorClient(HttpClient http, URI base, String sessionId, LatencyStats stats, ObjectMapper mapper) {
+        this.http = http;
+        this.base = base;
+        this.sessionId = sessionId;
+        this.stats = stats;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Starts an editor session on the backend and returns a client for it.
+     *
+     * @throws IOException If the backend does not issue a session
+     */
+    static EditorClient open(HttpClient http, URI base, LatencyStats stats, ObjectMapper mapper)
+            throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = http.send(HttpRequest.newBuilder(base.resolve("/api/session"))
+                .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Could not start a session: " + response.statusCode() + " "
+                    + snippet(response.body()));
+        }
+        String sessionId = mapper.readTree(response.body()).path("sessionId").asText("");
+        if (sessionId.isEmpty()) {
+            throw new IOException("Backend returned no session ID");
+        }
+        return new EditorClient(http, base, sessionId, stats, mapper);
+    }
+
+    String getSessionId() {
+        return sessionId;
+    }
+
+    JsonNode getJson(String label, String path) throws InterruptedException {
+        byte[] body = send(label, request(path).GET());
+        return parse(body);
+    }
+
+    byte[] getBytes(String label, String path) throws InterruptedException {
+        return send(label, request(path).GET());
+    }
+
+    /**
+     * @return The response body, or null if the call failed
+     */
+    byte[] postJson(String label, String path, Object payload) throws InterruptedException {
+        byte[] json;
+        try {
+            json = mapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return send(label, request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json)));
+    }
+
+    byte[] postFile(String label, String path, String field, String fileName, String contentType, byte[] content)
+            throws InterruptedException {
+        String boundary = "----loadtest" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + field + "\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: " + contentType + "\r\n\r\n";
+        body.writeBytes(head.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return send(label, request(path)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray())));
+    }
+
+    JsonNode parse(byte[] body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return mapper.readTree(body);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).header(SESSION_HEADER, sessionId);
+    }
+
+    private byte[] send(String label, HttpRequest.Builder request) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            long elapsed = System.nanoTime() - start;
+            int status = response.statusCode();
+            if (status / 100 != 2) {
+                stats.record(label, elapsed, status + " " + snippet(response.body()));
+                return null;
+            }
+            stats.record(label, elapsed, null);
+            return response.body();
+        } catch (IOException e) {
+            stats.record(label, System.nanoTime() - start, e.toString());
+            return null;
+        }
+    }
+
+    private static String snippet(byte[] body) {
+        String text = new String(body, StandardCharsets.UTF_8).replaceAll("\\s+", " ").trim();
+        return text.length() > 120 ? text.substring(0, 120) + "..." : text;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.loadtest;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response times and failures per endpoint, in the order endpoints were
+ * first called.
+ */
+final class LatencyStats {
+
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    private static final class Endpoint {
+        private long[] nanos = new long[256];
+        private int count;
+        private int errors;
+        private String firstError;
+
+        synchronized void add(long elapsed, String error) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = elapsed;
+            if (error != null) {
+                errors++;
+                if (firstError == null) {
+                    firstError = error;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param error Short description of the failure, or null if the call succeeded
+     */
+    void record(String endpoint, long elapsedNanos, String error) {
+        Endpoint stats;
+        synchronized (endpoints) {
+            stats = endpoints.computeIfAbsent(endpoint, e -> new Endpoint());
+        }
+        stats.add(elapsedNanos, error);
+    }
+
+    void reset() {
+        synchronized (endpoints) {
+            endpoints.clear();
+        }
+    }
+
+    long totalRequests() {
+        return snapshot().stream().mapToLong(e -> e.count).sum();
+    }
+
+    long totalErrors() {
+        return snapshot().stream().mapToLong(e -> e.errors).sum();
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-36s %7s %7s %9s %9s %9s %9s %9s%n", "Endpoint (ms)", "count", "errors", "p50", "p90", "p95",
+                "p99", "max");
+        List<String> failures = new ArrayList<>();
+        synchronized (endpoints) {
+            for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+                Endpoint e = entry.getValue();
+                long[] sorted;
+                synchronized (e) {
+                    sorted = Arrays.copyOf(e.nanos, e.count);
+                    if (e.firstError != null) {
+                        failures.add(entry.getKey() + ": " + e.firstError);
+                    }
+                }
+                Arrays.sort(sorted);
+                out.printf("%-36s %7d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(), sorted.length, e.errors,
+                        percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 95),
+                        percentile(sorted, 99), sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+            }
+        }
+        if (!failures.isEmpty()) {
+            out.println();
+            out.println("First failure per endpoint:");
+            failures.forEach(f -> out.println("  " + f));
+        }
+    }
+
+    private List<Endpoint> snapshot() {
+        synchronized (endpoints) {
+            return new ArrayList<>(endpoints.values());
+        }
+    }
+
+    // Nearest-rank percentile, in milliseconds
+    private static double percentile(long[] sorted, int p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+}
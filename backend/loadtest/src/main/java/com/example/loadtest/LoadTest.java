@@ -0,0 +1,282 @@
+package com.example.loadtest;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import com.example.GoogleDriveApplication;
+import com.example.services.ImageStateRegistry;
+import com.example.services.MemoryAccountingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+/**
+ * Offline load test. Starts the backend in this JVM with the local Drive
+ * stand-in rooted in a scratch directory, seeds it with portraits and has a
+ * number of simulated operators replay {@link SessionScript} against it over
+ * HTTP, each in its own editor session. Prints throughput, per-endpoint
+ * latency percentiles and the memory the backend used.
+ * <p>
+ * Options are Spring properties, e.g. {@code --loadtest.users=16}; any
+ * backend property can be overridden the same way. Run from {@code backend/}
+ * so the face cascades and the U2Net model are found.
+ */
+public final class LoadTest {
+
+    static final String PORTRAIT_PREFIX = "portrait-";
+
+    private static final long MB = 1024 * 1024;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path workDir = Files.createTempDirectory("loadtest-");
+        PrintStream out = System.out;
+        int exitCode = 0;
+        try {
+            exitCode = run(args, workDir, out);
+        } finally {
+            deleteRecursively(workDir);
+        }
+        System.exit(exitCode);
+    }
+
+    private static int run(String[] args, Path workDir, PrintStream out) throws Exception {
+        Map<String, Object> defaults = new LinkedHashMap<>();
+        defaults.put("server.port", 0);
+        defaults.put("storage.provider", "local");
+        defaults.put("storage.local.root", workDir.resolve("drive").toString());
+        defaults.put("upload.directory", workDir.resolve("uploads").toString());
+        defaults.put("ingest.originals-dir", workDir.resolve("uploads/originals").toString());
+        defaults.put("background.library.dir", workDir.resolve("backgrounds").toString());
+        defaults.put("google.drive.tokens.directory", workDir.resolve("tokens").toString());
+        defaults.put("watch.enabled", false);
+        defaults.put("session.max-count", 1024);
+        // Every simulated user starts its own session from the same address
+        defaults.put("session.create-per-minute", 0);
+        defaults.put("spring.main.banner-mode", "off");
+        defaults.put("logging.level.root", "WARN");
+
+        // Above application.properties but below the command line
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("loadtest", defaults));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(GoogleDriveApplication.class)
+                .environment(environment)
+                .logStartupInfo(false)
+                .run(args);
+        try {
+            Environment env = context.getEnvironment();
+            int users = env.getProperty("loadtest.users", Integer.class, 8);
+            int sessions = env.getProperty("loadtest.sessions", Integer.class, 5);
+            int warmupSessions = env.getProperty("loadtest.warmup-sessions", Integer.class, 2);
+            int previews = env.getProperty("loadtest.previews", Integer.class, 10);
+            long thinkMs = env.getProperty("loadtest.think-ms", Long.class, 0L);
+            long rampUpMs = env.getProperty("loadtest.ramp-up-ms", Long.class, 0L);
+            long sampleMs = env.getProperty("loadtest.sample-ms", Long.class, 250L);
+            int driveFiles = env.getProperty("loadtest.drive-files", Integer.class, 8);
+            int imageWidth = env.getProperty("loadtest.image-width", Integer.class, 1200);
+            String image = env.getProperty("loadtest.image");
+            // The services report progress on stdout; keep it out of the report
+            boolean quiet = env.getProperty("loadtest.quiet", Boolean.class, true);
+
+            BufferedImage portrait = readPortrait(image);
+            seedDrive(Paths.get(env.getProperty("storage.local.root")), portrait, imageWidth, driveFiles);
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI base = URI.create("http://localhost:" + port);
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            ObjectMapper mapper = new ObjectMapper();
+            LatencyStats stats = new LatencyStats();
+            MemoryAccountingService memory = context.getBean(MemoryAccountingService.class);
+            ImageStateRegistry registry = context.getBean(ImageStateRegistry.class);
+
+            PrintStream err = System.err;
+            if (quiet) {
+                PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+                System.setOut(discard);
+                System.setErr(discard);
+            }
+            MemoryPeaks peaks = new MemoryPeaks();
+            long started;
+            long elapsed;
+            try {
+                out.printf("Warming up with %d session(s)...%n", warmupSessions);
+                EditorClient warmup = EditorClient.open(http, base, stats, mapper);
+                for (int i = 0; i < warmupSessions; i++) {
+                    new SessionScript(warmup, previews, 0, i).run();
+                }
+                stats.reset();
+                registry.remove(warmup.getSessionId());
+                System.gc();
+
+                out.printf("Running %d user(s) x %d session(s), %d preview(s) per session...%n",
+                        users, sessions, previews);
+                ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+                sampler.scheduleAtFixedRate(() -> peaks.sample(memory.report()), 0, sampleMs, TimeUnit.MILLISECONDS);
+                ExecutorService pool = Executors.newFixedThreadPool(users);
+                started = System.nanoTime();
+                List<Future<?>> running = new ArrayList<>();
+                for (int u = 0; u < users; u++) {
+                    int user = u;
+                    long delayMs = users > 1 ? rampUpMs * user / (users - 1) : 0;
+                    running.add(pool.submit(() -> {
+                        Thread.sleep(delayMs);
+                        EditorClient client = EditorClient.open(http, base, stats, mapper);
+                        for (int s = 0; s < sessions; s++) {
+                            new SessionScript(client, previews, thinkMs, 31L * user + s).run();
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : running) {
+                    future.get();
+                }
+                elapsed = System.nanoTime() - started;
+                pool.shutdown();
+                sampler.shutdown();
+                sampler.awaitTermination(10, TimeUnit.SECONDS);
+            } finally {
+                System.setOut(out);
+                System.setErr(err);
+            }
+
+            double seconds = elapsed / 1e9;
+            long requests = stats.totalRequests();
+            long errors = stats.totalErrors();
+            int totalSessions = users * sessions;
+            out.println();
+            out.printf("Image %dpx wide, %d Drive file(s), think time %d ms%n", imageWidth, driveFiles, thinkMs);
+            out.printf("Wall time %.1f s: %d sessions (%.2f/s), %d requests (%.1f/s), %d error(s)%n",
+                    seconds, totalSessions, totalSessions / seconds, requests, requests / seconds, errors);
+            out.println();
+            stats.print(out);
+            out.println();
+            peaks.print(out, memory.report());
+            return errors == 0 ? 0 : 1;
+        } finally {
+            context.close();
+        }
+    }
+
+    private static BufferedImage readPortrait(String path) throws IOException {
+        if (path != null) {
+            BufferedImage image = ImageIO.read(Paths.get(path).toFile());
+            if (image == null) {
+                throw new IOException("Not a readable image: " + path);
+            }
+            return image;
+        }
+        try (InputStream in = LoadTest.class.getResourceAsStream("/portrait.jpg")) {
+            return ImageIO.read(in);
+        }
+    }
+
+    /**
+     * Writes scaled copies of the portrait to the Drive root. Each copy gets
+     * its own tinted border so the files differ, as real uploads would.
+     */
+    private static void seedDrive(Path root, BufferedImage portrait, int width, int count) throws IOException {
+        Files.createDirectories(root);
+        int height = Math.max(1, (int) Math.round((double) portrait.getHeight() * width / portrait.getWidth()));
+        for (int i = 0; i < count; i++) {
+            BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = copy.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(portrait, 0, 0, width, height, null);
+            g.setColor(Color.getHSBColor(i / (float) count, 0.5f, 0.9f));
+            int border = Math.max(2, width / 200);
+            g.fillRect(0, height - border, width, border);
+            g.dispose();
+            ImageIO.write(copy, "jpg", root.resolve(String.format("%s%02d.jpg", PORTRAIT_PREFIX, i + 1)).toFile());
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Highest values seen in the memory accounting report while the users ran.
+     */
+    private static final class MemoryPeaks {
+        private long heapUsed;
+        private long rss = -1;
+        private long untrackedNative = -1;
+        private long directBuffers;
+        private long accounted;
+        private int sessions;
+
+        @SuppressWarnings("unchecked")
+        synchronized void sample(Map<String, Object> report) {
+            Map<String, Object> process = (Map<String, Object>) report.get("process");
+            heapUsed = Math.max(heapUsed, number(process, "heapUsedBytes"));
+            rss = Math.max(rss, number(process, "rssBytes"));
+            untrackedNative = Math.max(untrackedNative, number(process, "untrackedNativeBytes"));
+            directBuffers = Math.max(directBuffers, number(process, "directBufferBytes"));
+            accounted = Math.max(accounted, number(report, "accountedBytes"));
+            sessions = Math.max(sessions, ((List<?>) report.get("sessions")).size());
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized void print(PrintStream out, Map<String, Object> after) {
+            Map<String, Object> process = (Map<String, Object>) after.get("process");
+            out.printf("%-24s %12s %12s%n", "Memory (MB)", "peak", "after run");
+            row(out, "heap used", heapUsed, number(process, "heapUsedBytes"));
+            row(out, "direct buffers", directBuffers, number(process, "directBufferBytes"));
+            row(out, "process RSS", rss, number(process, "rssBytes"));
+            row(out, "untracked native", untrackedNative, number(process, "untrackedNativeBytes"));
+            row(out, "editor images", accounted, number(after, "accountedBytes"));
+            out.printf("%-24s %12d %12d%n", "editor sessions", sessions, ((List<?>) after.get("sessions")).size());
+            out.printf("%-24s %12s %12d%n", "heap max", "", number(process, "heapMaxBytes") / MB);
+            out.printf("%-24s %12s %12d%n", "image budget", "", number(after, "budgetBytes") / MB);
+        }
+
+        private static void row(PrintStream out, String label, long peak, long after) {
+            // RSS and native figures are -1 where /proc is not available
+            out.printf("%-24s %12s %12s%n", label, peak < 0 ? "n/a" : peak / MB, after < 0 ? "n/a" : after / MB);
+        }
+
+        private static long number(Map<String, Object> map, String key) {
+            Object value = map.get(key);
+            return value instanceof Number ? ((Number) value).longValue() : -1;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.loadtest;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * One operator working through a photo the way the editor UI drives the
+ * API: pick a portrait from Drive, upload it, crop, detect and center the
+ * face, swap the background for white, drag the enhancement sliders, apply
+ * the enhancement, lay out a print sheet, export it and save it back to
+ * Drive. Steps that depend on an earlier response are skipped when that
+ * response is missing; the failure is already in the stats.
+ */
+final class SessionScript {
+
+    private final EditorClient client;
+    private final int previews;
+    private final long thinkMs;
+    private final Random random;
+
+    SessionScript(EditorClient client, int previews, long thinkMs, long seed) {
+        this.client = client;
+        this.previews = previews;
+        this.thinkMs = thinkMs;
+        this.random = new Random(seed);
+    }
+
+    void run() throws InterruptedException {
+        JsonNode listing = client.getJson("GET /api/drive/files", "/api/drive/files?imagesOnly=true");
+        String fileId = pickPortrait(listing);
+        if (fileId == null) {
+            return;
+        }
+        think();
+
+        JsonNode content = client.getJson("GET /api/drive/files/{id}/content", "/api/drive/files/" + fileId + "/content");
+        if (content == null || !content.hasNonNull("content")) {
+            return;
+        }
+        byte[] photo = Base64.getDecoder().decode(content.get("content").asText());
+        if (client.postFile("POST /api/upload", "/api/upload", "file", "portrait.jpg", "image/jpeg", photo) == null) {
+            return;
+        }
+        think();
+
+        JsonNode dimensions = client.getJson("GET /api/image/dimensions", "/api/image/dimensions");
+        if (dimensions != null) {
+            int width = dimensions.get("width").asInt();
+            int height = dimensions.get("height").asInt();
+            client.postJson("POST /api/crop", "/api/crop", Map.of(
+                    "x", width / 10, "y", height / 10, "width", width * 8 / 10, "height", height * 8 / 10));
+            think();
+        }
+
+        client.postJson("POST /api/detect-face", "/api/detect-face", Map.of());
+        think();
+        client.postJson("POST /api/face-center", "/api/face-center", Map.of());
+        think();
+        client.postJson("POST /api/background-remove", "/api/background-remove", Map.of("method", "auto"));
+        think();
+        client.postJson("POST /api/background-replace", "/api/background-replace",
+                Map.of("type", "color", "color", "#ffffff"));
+        think();
+
+        // Slider drags: every move previews against the same reference image
+        int brightness = 0;
+        int contrast = 0;
+        for (int i = 0; i < previews; i++) {
+            brightness = random.nextInt(41) - 20;
+            contrast = random.nextInt(41) - 20;
+            client.postJson("POST /api/enhancement-preview", "/api/enhancement-preview", Map.of(
+                    "brightness", brightness, "contrast", contrast, "firstAdjustment", i == 0));
+            think();
+        }
+        client.postJson("POST /api/enhance", "/api/enhance", Map.of("brightness", brightness, "contrast", contrast));
+        think();
+
+        client.postJson("POST /api/layout", "/api/layout", Map.of("templateId", "2x2-4x6in", "dpi", 300));
+        think();
+        byte[] sheet = client.getBytes("GET /api/image/export", "/api/image/export");
+        if (sheet == null) {
+            return;
+        }
+        think();
+        client.postJson("POST /api/drive/upload", "/api/drive/upload", Map.of(
+                "filename", "loadtest-sheet.png",
+                "imageData", "data:image/png;base64," + Base64.getEncoder().encodeToString(sheet)));
+    }
+
+    private String pickPortrait(JsonNode listing) {
+        if (listing == null || !listing.has("files")) {
+            return null;
+        }
+        List<String> ids = new ArrayList<>();
+        for (JsonNode file : listing.get("files")) {
+            if (file.path("name").asText().startsWith(LoadTest.PORTRAIT_PREFIX)) {
+                ids.add(file.path("id").asText());
+            }
+        }
+        return ids.isEmpty() ? null : ids.get(random.nextInt(ids.size()));
+    }
+
+    private void think() throws InterruptedException {
+        if (thinkMs > 0) {
+            // Uniform around the mean so users drift apart instead of moving in lockstep
+            Thread.sleep(thinkMs / 2 + (long) (random.nextDouble() * thinkMs));
+        }
+    }
+}
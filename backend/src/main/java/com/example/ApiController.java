@@ -7,25 +7,47 @@ import com.example.dto.BackgroundReplaceRequest;
 import com.example.dto.FaceCenteringRequest;
 import com.example.dto.PhotoEnhanceRequest;
 import com.example.dto.PhotoLayoutRequest;
+import com.example.dto.PipelineRequest;
+import com.example.dto.SheetComposeRequest;
+import com.example.metrics.ImageMetrics;
+import com.example.model.ComposedSheet;
 import com.example.model.ImageState;
+import com.example.model.IngestedImage;
 import com.example.services.CropImageService;
 import com.example.services.ResizeImageService;
 import com.example.services.BackgroundRemovalService;
 import com.example.services.BackgroundReplaceService;
 import com.example.services.FaceCenteringService;
+import com.example.services.FileServingService;
+import com.example.services.ImageIngestService;
+import com.example.services.ImageStateRegistry;
 import com.example.services.PhotoEnhanceService;
+import com.example.services.LayoutTemplateRegistry;
+import com.example.services.PdfLayoutWriter;
 import com.example.services.PhotoLayoutService;
+import com.example.services.PipelineService;
+import com.example.services.SheetComposerService;
+import com.example.services.TiledLayoutRenderer;
 import com.example.services.UploadImageService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 
 @RestController
@@ -33,11 +55,22 @@ import java.util.Map;
 @CrossOrigin(origins = { "http://localhost:5173", "http://localhost:3000", "http://localhost:8080" }, allowCredentials = "true")
 public class ApiController {
 
-    private final ImageState state = new ImageState();
+    @Autowired
+    private ImageStateRegistry imageStateRegistry;
+
+    // Proxy to the current request, used to pick the session
+    @Autowired
+    private HttpServletRequest httpRequest;
 
     @Autowired
     private UploadImageService uploadImageService;
 
+    @Autowired
+    private ImageIngestService imageIngestService;
+
+    @Autowired
+    private FileServingService fileServingService;
+
     @Autowired
     private CropImageService cropImageService;
 
@@ -59,26 +92,120 @@ public class ApiController {
     @Autowired
     private PhotoLayoutService photoLayoutService;
 
+    @Autowired
+    private LayoutTemplateRegistry layoutTemplateRegistry;
+
+    @Autowired
+    private SheetComposerService sheetComposerService;
+
+    @Autowired
+    private PipelineService pipelineService;
+
     @PostMapping("/upload")
     public ResponseEntity<?> upload(@RequestParam("file") MultipartFile file) {
         try {
-            BufferedImage uploadedImage = ImageIO.read(file.getInputStream());
-            state.setOriginalImage(uploadedImage);
-            state.setCurrentImage(state.cloneImage(uploadedImage));
-            // Reset background state when a new image is uploaded
-            backgroundReplaceService.resetBackgroundState();
-            // Clear any stored reference image
-            state.clearReferenceImage();
+            loadImage(imageIngestService.ingest(file.getInputStream()));
             return ResponseEntity.ok("Image uploaded successfully");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error uploading image: " + e.getMessage());
         }
     }
 
+    /**
+     * Takes the image as the raw request body and decodes it while it is
+     * still arriving, without the multipart spool to disk.
+     */
+    @PostMapping(value = "/upload/stream", consumes = { "image/*", MediaType.APPLICATION_OCTET_STREAM_VALUE })
+    public ResponseEntity<?> uploadStream(HttpServletRequest request) {
+        try {
+            IngestedImage ingested = imageIngestService.ingest(request.getInputStream());
+            loadImage(ingested);
+            return ResponseEntity.ok(Map.of(
+                    "message", "Image uploaded successfully",
+                    "width", ingested.getImage().getWidth(),
+                    "height", ingested.getImage().getHeight(),
+                    "original", ingested.getOriginalFile().getFileName().toString()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error uploading image: " + e.getMessage());
+        }
+    }
+
+    private void loadImage(IngestedImage ingested) {
+        ImageState state = state();
+        BufferedImage uploadedImage = ingested.getImage();
+        // The original keeps its own copy, so the decoded image can be the current one
+        state.setOriginalImage(uploadedImage);
+        state.setCurrentImage(uploadedImage);
+        imageStateRegistry.replaceOriginal(state, ingested.getOriginalFile());
+        // Reset background state when a new image is uploaded
+        backgroundReplaceService.resetBackgroundState(state);
+        // Clear any stored reference image
+        state.clearReferenceImage();
+    }
+
+    // Answered here; the application's /error page would turn it into a 500
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<String> handleStatus(ResponseStatusException e) {
+        return ResponseEntity.status(e.getStatusCode()).body(e.getReason());
+    }
+
+    /**
+     * Starts an editor session. Clients send the returned ID in the
+     * X-Session-Id header; requests without it use the shared default session.
+     */
+    @PostMapping("/session")
+    public ResponseEntity<?> createSession() {
+        try {
+            ImageStateRegistry.Session session = imageStateRegistry.create(httpRequest.getRemoteAddr());
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("sessionId", session.getId()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "60").body(e.getMessage());
+        }
+    }
+
+    /**
+     * Ends the session named by the X-Session-Id header.
+     */
+    @DeleteMapping("/session")
+    public ResponseEntity<?> endSession() {
+        String id = httpRequest.getHeader(ImageStateRegistry.SESSION_HEADER);
+        if (id == null || id.isBlank()) {
+            return ResponseEntity.badRequest().body("No session given");
+        }
+        return imageStateRegistry.remove(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * State of the session named by the X-Session-Id header.
+     */
+    private ImageState state() {
+        return session().getState();
+    }
+
+    /**
+     * The session named by the X-Session-Id header.
+     */
+    private ImageStateRegistry.Session session() {
+        ImageStateRegistry.Session session;
+        try {
+            session = imageStateRegistry.find(httpRequest.getHeader(ImageStateRegistry.SESSION_HEADER));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (session == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    "Unknown or expired session; start one with POST /api/session");
+        }
+        return session;
+    }
+
     @PostMapping("/crop")
     public ResponseEntity<?> crop(@RequestBody CropRequest cropRequest) {
+        ImageState state = state();
         // Reset background state before cropping
-        backgroundReplaceService.resetBackgroundState();
+        backgroundReplaceService.resetBackgroundState(state);
         // Clear any stored reference image as the base image is changing
         state.clearReferenceImage();
         return cropImageService.crop(cropRequest, state);
@@ -86,8 +213,9 @@ public class ApiController {
 
     @PostMapping("/resize")
     public ResponseEntity<?> resize(@RequestBody ResizeRequest resizeRequest) {
+        ImageState state = state();
         // Reset background state before resizing
-        backgroundReplaceService.resetBackgroundState();
+        backgroundReplaceService.resetBackgroundState(state);
         // Clear any stored reference image as the base image is changing
         state.clearReferenceImage();
         return resizeImageService.resize(resizeRequest, state);
@@ -95,8 +223,9 @@ public class ApiController {
     
     @PostMapping("/background-remove")
     public ResponseEntity<?> removeBackground(@RequestBody BackgroundRemovalRequest request) {
+        ImageState state = state();
         // Reset background state before removing background
-        backgroundReplaceService.resetBackgroundState();
+        backgroundReplaceService.resetBackgroundState(state);
         // Clear any stored reference image as the base image is changing
         state.clearReferenceImage();
         return backgroundRemovalService.removeBackground(request, state);
@@ -104,6 +233,7 @@ public class ApiController {
     
     @PostMapping("/background-replace")
     public ResponseEntity<?> replaceBackground(@RequestBody BackgroundReplaceRequest request) {
+        ImageState state = state();
         // Clear any stored reference image as the base image is changing
         state.clearReferenceImage();
         return backgroundReplaceService.replaceBackground(request, state);
@@ -112,13 +242,14 @@ public class ApiController {
     @PostMapping("/detect-face")
     public ResponseEntity<?> detectFace(@RequestBody FaceCenteringRequest request) {
         // Only detect faces and visualize them, without centering
-        return faceCenteringService.detectFaceOnly(request, state);
+        return faceCenteringService.detectFaceOnly(request, state());
     }
     
     @PostMapping("/face-center")
     public ResponseEntity<?> centerFace(@RequestBody FaceCenteringRequest request) {
+        ImageState state = state();
         // Reset background state before face centering
-        backgroundReplaceService.resetBackgroundState();
+        backgroundReplaceService.resetBackgroundState(state);
         // Clear any stored reference image as the base image is changing
         state.clearReferenceImage();
         return faceCenteringService.centerFace(request, state);
@@ -132,6 +263,7 @@ public class ApiController {
     @PostMapping("/enhancement-preview")
     public ResponseEntity<?> enhancementPreview(@RequestBody PhotoEnhanceRequest request) {
         try {
+            ImageState state = state();
             BufferedImage currentImage = state.getCurrentImage();
             
             if (currentImage == null) {
@@ -174,33 +306,117 @@ public class ApiController {
     
     @PostMapping("/enhance")
     public ResponseEntity<?> enhancePhoto(@RequestBody PhotoEnhanceRequest request) {
-        return photoEnhanceService.enhancePhoto(request, state);
+        return photoEnhanceService.enhancePhoto(request, state());
     }
 
     @PostMapping("/layout")
     public ResponseEntity<?> createLayout(@RequestBody PhotoLayoutRequest request) {
+        ImageState state = state();
         // Reset background state before creating layout
-        backgroundReplaceService.resetBackgroundState();
+        backgroundReplaceService.resetBackgroundState(state);
         // Clear any stored reference image as the base image is changing
         state.clearReferenceImage();
         return photoLayoutService.createLayout(request, state);
     }
 
+    @PostMapping("/pipeline")
+    public ResponseEntity<?> runPipeline(@RequestBody PipelineRequest request) {
+        // Background and reference state are reset by the service once every step succeeded
+        return pipelineService.run(request, state());
+    }
+
+    @GetMapping("/layout/templates")
+    public ResponseEntity<?> getLayoutTemplates() {
+        return ResponseEntity.ok(layoutTemplateRegistry.getTemplates());
+    }
+
+    @PostMapping("/layout/export")
+    public ResponseEntity<StreamingResponseBody> exportLayout(@RequestBody PhotoLayoutRequest request,
+            @RequestParam(required = false) String filename) {
+        boolean pdf = "pdf".equalsIgnoreCase(request.getFormat());
+        String extension = pdf ? ".pdf" : ".png";
+        ImageState state = state();
+        StreamingResponseBody body;
+        try {
+            if (pdf) {
+                PdfLayoutWriter writer = photoLayoutService.preparePdfExport(request, state);
+                body = out -> writer.write(request.getCopies(), out);
+            } else {
+                // The sheet is rendered strip by strip straight into the response
+                TiledLayoutRenderer renderer = photoLayoutService.prepareExport(request, state);
+                body = renderer::writePng;
+            }
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            // Declared as a streaming body so Spring streams it, hence the error text is streamed too
+            byte[] message = ("Failed to export layout: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(out -> out.write(message));
+        }
+
+        if (filename == null || filename.isEmpty()) {
+            filename = "id-photo-layout" + extension;
+        } else if (!filename.endsWith(extension)) {
+            filename = filename + extension;
+        }
+
+        return ResponseEntity.ok()
+                .contentType(pdf ? MediaType.APPLICATION_PDF : MediaType.IMAGE_PNG)
+                .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    @PostMapping("/compose")
+    public ResponseEntity<?> composeSheets(@RequestBody SheetComposeRequest request) {
+        ImageStateRegistry.Session session = session();
+        try {
+            return ResponseEntity.ok(sheetComposerService.compose(request, session));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Failed to compose sheets: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/compose/sheets/{index}")
+    public ResponseEntity<?> getComposedSheet(@PathVariable int index) throws IOException {
+        ComposedSheet sheet = sheetComposerService.getSheet(session(), index);
+        if (sheet == null || sheet.getImage() == null)
+            return ResponseEntity.notFound().build();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageMetrics.time(ImageMetrics.ENCODE, () -> ImageIO.write(sheet.getImage(), "png", baos));
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .body(baos.toByteArray());
+    }
+
     @GetMapping("/image/get")
     public ResponseEntity<?> getCurrentImage() throws IOException {
-        BufferedImage img = state.getCurrentImage();
+        BufferedImage img = state().getCurrentImage();
         if (img == null)
             return ResponseEntity.notFound().build();
 
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(img, "png", baos);
+        ImageMetrics.time(ImageMetrics.ENCODE, () -> ImageIO.write(img, "png", baos));
         return ResponseEntity.ok()
                 .contentType(MediaType.IMAGE_PNG)
                 .body(baos.toByteArray());
     }
 
+    @GetMapping("/image/original")
+    public void getOriginalFile(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path original = state().getOriginalFile();
+        if (original == null || !Files.isRegularFile(original)) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + original.getFileName() + "\"");
+        fileServingService.serve(original, null, request, response);
+    }
+
     @GetMapping("/image/dimensions")
     public ResponseEntity<?> getImageDimensions(@RequestParam(required = false) Boolean original) {
+        ImageState state = state();
         BufferedImage img;
         
         if (Boolean.TRUE.equals(original)) {
@@ -230,6 +446,7 @@ public class ApiController {
 
     @GetMapping("/undo")
     public ResponseEntity<?> undo() {
+        ImageState state = state();
         if (!state.hasHistory()) {
             return ResponseEntity.badRequest().body("No history available");
         }
@@ -238,7 +455,7 @@ public class ApiController {
         state.pushFuture(state.getCurrentImage()); // Save current to future stack for redo
         state.setCurrentImage(previous);
         // Reset background state when undoing
-        backgroundReplaceService.resetBackgroundState();
+        backgroundReplaceService.resetBackgroundState(state);
         // Clear any stored reference image when undoing
         state.clearReferenceImage();
         return ResponseEntity.ok("Undo successful");
@@ -246,6 +463,7 @@ public class ApiController {
 
     @GetMapping("/redo")
     public ResponseEntity<?> redo() {
+        ImageState state = state();
         if (!state.hasFuture()) {
             return ResponseEntity.badRequest().body("No future states available");
         }
@@ -254,7 +472,7 @@ public class ApiController {
         state.pushHistory(state.getCurrentImage()); // Save current to history stack for undo
         state.setCurrentImage(future);
         // Reset background state when redoing
-        backgroundReplaceService.resetBackgroundState();
+        backgroundReplaceService.resetBackgroundState(state);
         // Clear any stored reference image when redoing
         state.clearReferenceImage();
         return ResponseEntity.ok("Redo successful");
@@ -262,6 +480,7 @@ public class ApiController {
 
     @GetMapping("/reset")
     public ResponseEntity<?> reset() {
+        ImageState state = state();
         BufferedImage originalImage = state.getOriginalImage();
         if (originalImage == null) {
             return ResponseEntity.badRequest().body("No original image available");
@@ -271,7 +490,7 @@ public class ApiController {
         state.setCurrentImage(state.cloneImage(originalImage));
         state.clearFuture(); // Clear future stack after reset
         // Reset background state when resetting to original
-        backgroundReplaceService.resetBackgroundState();
+        backgroundReplaceService.resetBackgroundState(state);
         // Clear any stored reference image when resetting
         state.clearReferenceImage();
         return ResponseEntity.ok("Reset successful - restored to original image");
@@ -279,6 +498,7 @@ public class ApiController {
 
     @GetMapping("/history/status")
     public ResponseEntity<Map<String, Boolean>> getHistoryStatus() {
+        ImageState state = state();
         return ResponseEntity.ok(Map.of(
                 "hasHistory", state.hasHistory(),
                 "hasOriginal", state.getOriginalImage() != null,
@@ -287,7 +507,7 @@ public class ApiController {
 
     @GetMapping("/image/export")
     public ResponseEntity<?> exportImage(@RequestParam(required = false) String filename) throws IOException {
-        BufferedImage img = state.getCurrentImage();
+        BufferedImage img = state().getCurrentImage();
         if (img == null)
             return ResponseEntity.notFound().build();
 
@@ -299,7 +519,7 @@ public class ApiController {
         }
 
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(img, "png", baos);
+        ImageMetrics.time(ImageMetrics.ENCODE, () -> ImageIO.write(img, "png", baos));
         
         return ResponseEntity.ok()
                 .contentType(MediaType.IMAGE_PNG)
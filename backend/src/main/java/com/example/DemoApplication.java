@@ -2,6 +2,8 @@ package com.example;
 
 import java.io.File;
 
+import com.example.services.CredentialCache;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -19,10 +21,12 @@ public class DemoApplication {
     private String tokensDirectory;
 
     /**
-     * Clear any stored Google credentials on startup to ensure a fresh login flow
+     * Clear any stored Google credentials on startup to ensure a fresh login flow.
+     * The credential cache has already read the token store by then, so it is
+     * invalidated as well.
      */
     @Bean
-    public CommandLineRunner clearTokensOnStartup() {
+    public CommandLineRunner clearTokensOnStartup(CredentialCache credentialCache) {
         return args -> {
             logger.info("Checking for existing Google tokens to clear...");
             File tokensDir = new File(tokensDirectory);
@@ -38,6 +42,7 @@ public class DemoApplication {
                             logger.warn("Failed to delete token file: {}", tokenFile.getName());
                         }
                     }
+                    credentialCache.invalidate();
                 } else {
                     logger.info("No token files found to delete");
                 }
@@ -2,6 +2,8 @@ package com.example;
 
 import java.io.File;
 
+import com.example.services.CredentialCache;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,9 +12,11 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @ConfigurationPropertiesScan
+@EnableScheduling
 public class GoogleDriveApplication {
 
     private static final Logger logger = LoggerFactory.getLogger(GoogleDriveApplication.class);
@@ -25,10 +29,12 @@ public class GoogleDriveApplication {
     }
 
     /**
-     * Clear any stored Google credentials on startup to ensure a fresh login flow
+     * Clear any stored Google credentials on startup to ensure a fresh login flow.
+     * The credential cache has already read the token store by then, so it is
+     * invalidated as well.
      */
     @Bean
-    public CommandLineRunner clearGoogleTokensOnStartup() {
+    public CommandLineRunner clearGoogleTokensOnStartup(CredentialCache credentialCache) {
         return args -> {
             logger.info("Checking for existing Google tokens to clear...");
             File tokensDir = new File(tokensDirectory);
@@ -44,6 +50,7 @@ public class GoogleDriveApplication {
                             logger.warn("Failed to delete token file: {}", tokenFile.getName());
                         }
                     }
+                    credentialCache.invalidate();
                 } else {
                     logger.info("No token files found to delete");
                 }
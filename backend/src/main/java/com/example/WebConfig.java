@@ -11,10 +11,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.example.controller.AdminAccessInterceptor;
+
 import jakarta.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.Map;
@@ -37,7 +40,7 @@ public class WebConfig {
      * Configure CORS and other web settings for the application.
      */
     @Bean
-    public WebMvcConfigurer corsConfigurer() {
+    public WebMvcConfigurer corsConfigurer(AdminAccessInterceptor adminAccessInterceptor) {
         return new WebMvcConfigurer() {
             @Override
             public void addCorsMappings(CorsRegistry registry) {
@@ -71,6 +74,12 @@ public class WebConfig {
                 logger.info("CORS configuration complete");
             }
 
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                // Operator endpoints need the admin token
+                registry.addInterceptor(adminAccessInterceptor).addPathPatterns("/api/admin/**");
+            }
+
             @Override
             public void addViewControllers(ViewControllerRegistry registry) {
                 // Forward requests to index page for SPA support
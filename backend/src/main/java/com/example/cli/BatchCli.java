@@ -0,0 +1,262 @@
+package com.example.cli;
+
+import com.example.dto.PipelineRequest;
+import com.example.services.BackgroundLibrary;
+import com.example.services.BackgroundRemovalService;
+import com.example.services.BackgroundReplaceService;
+import com.example.services.CropImageService;
+import com.example.services.FaceCenteringService;
+import com.example.services.ImageIngestService;
+import com.example.services.LayoutTemplateRegistry;
+import com.example.services.PhotoEnhanceService;
+import com.example.services.PhotoLayoutService;
+import com.example.services.PipelinePlanner;
+import com.example.services.PipelineService;
+import com.example.services.ResizeImageService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.support.ResourcePropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless batch processor. Runs a pipeline recipe over every image in a
+ * directory using the same services as the REST API, without starting Spring.
+ * <p>
+ * The recipe is a JSON file with the body of {@code POST /api/pipeline}.
+ * Images are processed on a work-stealing pool; all workers share one ONNX
+ * session and one set of face classifiers. Inputs are decoded like uploads,
+ * at working resolution and upright. Results are written as PNG files with
+ * the input's base name.
+ * <p>
+ * Run from the backend directory, so the cascades and model are found:
+ * <pre>
+ * java -cp target/demo-0.0.1-SNAPSHOT-exec.jar -Dloader.main=com.example.cli.BatchCli \
+ *      org.springframework.boot.loader.launch.PropertiesLauncher \
+ *      --input photos --recipe recipe.json [--output photos/processed] [--threads 8]
+ * </pre>
+ */
+public class BatchCli {
+
+    private final PipelineService pipelineService;
+    private final ImageIngestService imageIngestService;
+    private final PipelineRequest recipe;
+    private final Path outputDir;
+
+    // Total nanoseconds and number of runs per stage, in first-seen order,
+    // which is decode, the recipe's stages, encode
+    private final Map<String, long[]> stageTotals = new LinkedHashMap<>();
+
+    public BatchCli(PipelineService pipelineService, ImageIngestService imageIngestService, PipelineRequest recipe,
+            Path outputDir) {
+        this.pipelineService = pipelineService;
+        this.imageIngestService = imageIngestService;
+        this.recipe = recipe;
+        this.outputDir = outputDir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (!options.containsKey("input") || !options.containsKey("recipe")) {
+            System.err.println("Usage: BatchCli --input <dir> --recipe <file.json> [--output <dir>] [--threads <n>]");
+            System.exit(2);
+        }
+
+        Path inputDir = Paths.get(options.get("input"));
+        Path outputDir = Paths.get(options.getOrDefault("output", inputDir.resolve("processed").toString()));
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        PipelineRequest recipe = new ObjectMapper().readValue(new File(options.get("recipe")), PipelineRequest.class);
+        if (recipe.getSteps() == null || recipe.getSteps().isEmpty()) {
+            System.err.println("Recipe has no steps.");
+            System.exit(2);
+        }
+
+        List<Path> inputs = listImages(inputDir);
+        if (inputs.isEmpty()) {
+            System.err.println("No images found in " + inputDir.toAbsolutePath());
+            System.exit(1);
+        }
+        Files.createDirectories(outputDir);
+
+        StandardEnvironment env = loadEnvironment();
+        BatchCli cli = new BatchCli(createPipelineService(env), createImageIngestService(env), recipe, outputDir);
+        boolean ok = cli.run(inputs, threads);
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Wires the services by hand, the way Spring would, with one instance of
+     * each so that the ONNX session and classifiers are shared. Settings are
+     * read from application.properties, overridable with -D system properties
+     * and environment variables, as in the web app.
+     */
+    static PipelineService createPipelineService(StandardEnvironment env) {
+        CropImageService crop = new CropImageService();
+        ResizeImageService resize = new ResizeImageService();
+        FaceCenteringService faceCentering = new FaceCenteringService();
+        PhotoEnhanceService enhance = new PhotoEnhanceService();
+        PipelinePlanner planner = new PipelinePlanner(crop, resize, faceCentering, enhance);
+        BackgroundLibrary backgrounds = new BackgroundLibrary(
+                env.getProperty("background.library.dir", "uploaded_backgrounds"),
+                env.getProperty("background.library.cache-max-mb", Long.class, 256L),
+                env.getProperty("background.library.max-size", Integer.class, 4096));
+        try {
+            backgrounds.init();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new PipelineService(crop, resize, faceCentering, new BackgroundRemovalService(faceCentering),
+                new BackgroundReplaceService(backgrounds), enhance, new PhotoLayoutService(new LayoutTemplateRegistry()),
+                planner);
+    }
+
+    /**
+     * Decodes inputs with the web app's ingest limits and working size. Only
+     * {@link ImageIngestService#decode} is used, so no originals are stored.
+     */
+    static ImageIngestService createImageIngestService(StandardEnvironment env) {
+        return new ImageIngestService(
+                env.getProperty("ingest.originals-dir", "./uploaded_images/originals"),
+                env.getProperty("ingest.max-working-size", Integer.class, 3000),
+                env.getProperty("ingest.max-pixels", Long.class, 200_000_000L),
+                env.getProperty("ingest.max-upload-mb", Long.class, 200L));
+    }
+
+    // application.properties, overridable with -D system properties and environment variables
+    static StandardEnvironment loadEnvironment() {
+        StandardEnvironment env = new StandardEnvironment();
+        try {
+            env.getPropertySources().addLast(new ResourcePropertySource("classpath:application.properties"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return env;
+    }
+
+    /**
+     * Processes all inputs and prints a summary.
+     *
+     * @return True if every image was processed
+     */
+    public boolean run(List<Path> inputs, int threads) throws InterruptedException {
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (Path input : inputs) {
+            tasks.add(() -> process(input));
+        }
+
+        System.out.println("Processing " + inputs.size() + " images on " + threads + " threads...");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        int succeeded = 0;
+        try {
+            for (Future<Boolean> result : pool.invokeAll(tasks)) {
+                if (Boolean.TRUE.equals(result.get())) {
+                    succeeded++;
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Batch worker failed", e);
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        printSummary(inputs.size(), succeeded, threads, elapsed);
+        return succeeded == inputs.size();
+    }
+
+    private boolean process(Path input) {
+        try {
+            long start = System.nanoTime();
+            BufferedImage image;
+            try (InputStream in = Files.newInputStream(input)) {
+                image = imageIngestService.decode(in).getImage();
+            }
+            record("decode", System.nanoTime() - start);
+
+            BufferedImage result = pipelineService.execute(image, recipe.getSteps(), recipe.isFuse(), this::record);
+
+            start = System.nanoTime();
+            Path output = outputDir.resolve(baseName(input) + ".png");
+            ImageIO.write(result, "png", output.toFile());
+            record("encode", System.nanoTime() - start);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Failed to process " + input.getFileName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void record(String stage, long nanos) {
+        long[] totals = stageTotals.computeIfAbsent(stage, k -> new long[2]);
+        totals[0] += nanos;
+        totals[1]++;
+    }
+
+    private void printSummary(int total, int succeeded, int threads, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println();
+        System.out.println("Processed " + succeeded + "/" + total + " images in " +
+                String.format(Locale.ROOT, "%.2f s", seconds) + " on " + threads + " threads");
+        System.out.println("Throughput: " + String.format(Locale.ROOT, "%.2f images/sec", succeeded / seconds));
+        System.out.println("Stage timings (summed over workers):");
+
+        synchronized (this) {
+            for (Map.Entry<String, long[]> entry : stageTotals.entrySet()) {
+                long[] totals = entry.getValue();
+                System.out.println(String.format(Locale.ROOT, "  %-50s %6d runs %10.1f ms total %8.1f ms avg",
+                        entry.getKey(), totals[1], totals[0] / 1e6, totals[0] / 1e6 / totals[1]));
+            }
+        }
+    }
+
+    private static List<Path> listImages(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+                        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png")
+                                || name.endsWith(".bmp") || name.endsWith(".gif");
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String baseName(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
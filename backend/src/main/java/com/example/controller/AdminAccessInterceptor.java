@@ -0,0 +1,58 @@
+package com.example.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Guards the operator endpoints under /api/admin. A request must carry the
+ * configured admin.token in the {@value #TOKEN_HEADER} header; with no token
+ * configured the endpoints are switched off.
+ */
+@Component
+public class AdminAccessInterceptor implements HandlerInterceptor {
+
+    public static final String TOKEN_HEADER = "X-Admin-Token";
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminAccessInterceptor.class);
+
+    private final byte[] token;
+
+    public AdminAccessInterceptor(@Value("${admin.token:}") String token) {
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        if (this.token.length == 0) {
+            logger.info("No admin.token configured, /api/admin is disabled");
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        if (CorsUtils.isPreFlightRequest(request)) {
+            return true;
+        }
+        if (token.length == 0) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return false;
+        }
+        String given = request.getHeader(TOKEN_HEADER);
+        // Constant time, so the token cannot be guessed byte by byte
+        if (given == null || !MessageDigest.isEqual(token, given.getBytes(StandardCharsets.UTF_8))) {
+            logger.warn("Rejected admin request {} {} from {}", request.getMethod(), request.getRequestURI(),
+                    request.getRemoteAddr());
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            return false;
+        }
+        return true;
+    }
+}
@@ -175,6 +175,9 @@ public class AuthController {
                 }
             }
 
+            // Forget the cached credential as well
+            driveService.clearCachedCredential();
+
             status.put("success", allDeleted);
             status.put("message", allDeleted ? "Logged out successfully" : "Some credentials couldn't be removed");
 
@@ -1,27 +1,43 @@
 package com.example.controller;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import javax.imageio.ImageIO;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.example.dto.BatchImportRequest;
+import com.example.metrics.ImageMetrics;
+import com.example.model.BatchSlot;
 import com.example.model.DriveFile;
+import com.example.services.DriveBatchImportService;
 import com.example.services.GoogleDriveService;
-import com.google.api.services.drive.model.File;
+import com.example.services.ImageStateRegistry;
+import com.example.services.StorageProvider;
 import com.google.api.services.drive.model.FileList;
 import org.springframework.http.HttpStatus;
 
@@ -30,11 +46,40 @@ import org.springframework.http.HttpStatus;
 @CrossOrigin(origins = { "http://localhost:5173", "http://localhost:3000", "http://localhost:8080" }, allowCredentials = "true")
 public class DriveController {
     private final GoogleDriveService driveService;
+    private final StorageProvider storage;
+    private final DriveBatchImportService batchImportService;
+    private final ImageStateRegistry imageStateRegistry;
     private static final Logger logger = LoggerFactory.getLogger(DriveController.class);
     private static final String USER_ID = "user";
 
-    public DriveController(GoogleDriveService driveService) {
+    public DriveController(GoogleDriveService driveService, StorageProvider storage,
+            DriveBatchImportService batchImportService, ImageStateRegistry imageStateRegistry) {
         this.driveService = driveService;
+        this.storage = storage;
+        this.batchImportService = batchImportService;
+        this.imageStateRegistry = imageStateRegistry;
+    }
+
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<String> handleStatus(ResponseStatusException e) {
+        return ResponseEntity.status(e.getStatusCode()).body(e.getReason());
+    }
+
+    /**
+     * The editor session whose batch workspace a request works on.
+     */
+    private ImageStateRegistry.Session session(String sessionId) {
+        ImageStateRegistry.Session session;
+        try {
+            session = imageStateRegistry.find(sessionId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (session == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    "Unknown or expired session; start one with POST /api/session");
+        }
+        return session;
     }
 
     @GetMapping("/files")
@@ -45,21 +90,18 @@ public class DriveController {
             logger.info("Listing Google Drive files with folderId: {}, imagesOnly: {}", folderId, imagesOnly);
 
             // Check if token exists
-            if (!driveService.isTokenAvailable()) {
+            if (!storage.isAvailable()) {
                 logger.error("No valid Google Drive token available. User must authenticate first.");
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body("User must authenticate with Google Drive first");
             }
 
-            FileList result = driveService.listFiles(folderId);
-            List<File> files = result.getFiles();
+            List<DriveFile> files = storage.list(folderId);
 
             if (imagesOnly) {
                 logger.info("Filtering for image files only");
                 files = files.stream()
-                        .filter(file -> file.getMimeType() != null &&
-                                (file.getMimeType().startsWith("image/") ||
-                                        driveService.isFolder(file)))
+                        .filter(file -> file.isImage() || file.isFolder())
                         .collect(Collectors.toList());
             }
 
@@ -86,7 +128,7 @@ public class DriveController {
             logger.info("Getting file content for ID: {}, thumbnail: {}", fileId, thumbnail);
             
             // Check if token exists
-            if (!driveService.isTokenAvailable()) {
+            if (!storage.isAvailable()) {
                 logger.error("No valid Google Drive token available. User must authenticate first.");
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body("User must authenticate with Google Drive first");
@@ -95,10 +137,10 @@ public class DriveController {
             byte[] content;
             if (thumbnail) {
                 // Get thumbnail instead of full file content
-                content = driveService.downloadThumbnail(fileId);
+                content = storage.downloadThumbnail(fileId);
             } else {
                 // Get full file content
-                content = driveService.downloadFile(fileId);
+                content = storage.downloadFile(fileId);
             }
             
             String base64Content = Base64.getEncoder().encodeToString(content);
@@ -120,32 +162,16 @@ public class DriveController {
             logger.info("Getting detailed file metadata for file ID: {}", fileId);
             
             // Check if token exists
-            if (!driveService.isTokenAvailable()) {
+            if (!storage.isAvailable()) {
                 logger.error("No valid Google Drive token available. User must authenticate first.");
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body("User must authenticate with Google Drive first");
             }
             
-            File file = driveService.getFileDetails(fileId);
+            DriveFile file = storage.getDetails(List.of(fileId)).get(fileId);
             if (file == null) {
                 return ResponseEntity.notFound().build();
             }
-            
-            // If it's an image file, generate a direct access link
-            if (file.getMimeType() != null && file.getMimeType().startsWith("image/")) {
-                // Create a webContentLink if it doesn't exist
-                if (file.getWebContentLink() == null) {
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("id", file.getId());
-                    response.put("name", file.getName());
-                    response.put("mimeType", file.getMimeType());
-                    response.put("webContentLink", "https://drive.google.com/uc?export=view&id=" + file.getId());
-                    response.put("thumbnailLink", file.getThumbnailLink());
-                    
-                    return ResponseEntity.ok(response);
-                }
-            }
-            
             return ResponseEntity.ok(file);
         } catch (Exception e) {
             logger.error("Error getting file details", e);
@@ -154,6 +180,33 @@ public class DriveController {
         }
     }
 
+    @PostMapping("/files/details")
+    public ResponseEntity<?> getFileDetailsBatch(@RequestBody List<String> fileIds) {
+        try {
+            logger.info("Getting batched file metadata for {} files", fileIds.size());
+
+            // Check if token exists
+            if (!storage.isAvailable()) {
+                logger.error("No valid Google Drive token available. User must authenticate first.");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("User must authenticate with Google Drive first");
+            }
+
+            Map<String, DriveFile> files = storage.getDetails(fileIds);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("files", files);
+            response.put("missing", fileIds.stream()
+                    .filter(fileId -> !files.containsKey(fileId))
+                    .collect(Collectors.toList()));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error getting batched file details", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to get file details: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/refresh")
     public ResponseEntity<?> refreshDriveService() {
         try {
@@ -347,7 +400,7 @@ public class DriveController {
             logger.info("Uploading image to Google Drive");
             
             // Check if token exists
-            if (!driveService.isTokenAvailable()) {
+            if (!storage.isAvailable()) {
                 logger.error("No valid Google Drive token available. User must authenticate first.");
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body("User must authenticate with Google Drive first");
@@ -380,7 +433,7 @@ public class DriveController {
                 mimeType = "image/jpeg";
             }
             
-            File uploadedFile = driveService.uploadImage(imageBytes, filename, mimeType, null);
+            DriveFile uploadedFile = storage.uploadFile(new ByteArrayInputStream(imageBytes), filename, mimeType, null);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -400,4 +453,113 @@ public class DriveController {
                     .body(errorResponse);
         }
     }
+
+    @PostMapping(value = "/batch-import", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> batchImport(@RequestBody BatchImportRequest request,
+            @RequestHeader(value = ImageStateRegistry.SESSION_HEADER, required = false) String sessionId) {
+        logger.info("Starting batch import from Google Drive");
+
+        ImageStateRegistry.Session session;
+        try {
+            session = session(sessionId);
+        } catch (ResponseStatusException e) {
+            return rejectImport(HttpStatus.valueOf(e.getStatusCode().value()), e.getReason());
+        }
+
+        // Check if token exists
+        if (!storage.isAvailable()) {
+            logger.error("No valid Google Drive token available. User must authenticate first.");
+            return rejectImport(HttpStatus.UNAUTHORIZED, "User must authenticate with Google Drive first");
+        }
+
+        // Stream progress events back to the client while the import runs
+        SseEmitter emitter = new SseEmitter(0L);
+        try {
+            batchImportService.startImport(session.getWorkspace(), request, event -> {
+                try {
+                    emitter.send(SseEmitter.event().name((String) event.get("type")).data(event));
+                } catch (IOException e) {
+                    // Client went away - keep importing so the workspace is still filled
+                    logger.debug("Could not deliver batch import progress event: {}", e.getMessage());
+                }
+            }).whenComplete((summary, error) -> {
+                if (error == null) {
+                    emitter.complete();
+                } else if (error instanceof IllegalArgumentException) {
+                    // A folder with too many files, found only once it was listed
+                    logger.warn("Rejected batch import: {}", error.getMessage());
+                    sendError(emitter, error.getMessage());
+                } else {
+                    logger.error("Batch import failed", error);
+                    emitter.completeWithError(error);
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected batch import: {}", e.getMessage());
+            return rejectImport(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            logger.warn("Rejected batch import: {}", e.getMessage());
+            return rejectImport(HttpStatus.CONFLICT, e.getMessage());
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    // The response must stay an event stream, so the reason goes out as a single "error" event
+    private ResponseEntity<SseEmitter> rejectImport(HttpStatus status, String message) {
+        SseEmitter emitter = new SseEmitter(0L);
+        sendError(emitter, message);
+        return ResponseEntity.status(status).body(emitter);
+    }
+
+    private static void sendError(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(Map.of("type", "error", "error", message)));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    @GetMapping("/batch-workspace")
+    public ResponseEntity<?> getBatchWorkspace(
+            @RequestHeader(value = ImageStateRegistry.SESSION_HEADER, required = false) String sessionId) {
+        List<Map<String, Object>> slots = new ArrayList<>();
+        for (BatchSlot slot : session(sessionId).getWorkspace().getSlots()) {
+            Map<String, Object> info = new HashMap<>();
+            info.put("index", slot.getIndex());
+            info.put("fileId", slot.getFileId());
+            info.put("name", slot.getName());
+            info.put("status", slot.getStatus());
+            info.put("attempts", slot.getAttempts());
+            BufferedImage image = slot.getState().getCurrentImage();
+            if (image != null) {
+                info.put("width", image.getWidth());
+                info.put("height", image.getHeight());
+            }
+            if (slot.getStatus() == BatchSlot.Status.FAILED) {
+                info.put("error", slot.getError());
+            }
+            slots.add(info);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("slots", slots);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/batch-workspace/{index}/image")
+    public ResponseEntity<?> getBatchImage(@PathVariable int index,
+            @RequestHeader(value = ImageStateRegistry.SESSION_HEADER, required = false) String sessionId)
+            throws IOException {
+        BatchSlot slot = session(sessionId).getWorkspace().getSlot(index);
+        if (slot == null || slot.getState().getCurrentImage() == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageMetrics.time(ImageMetrics.ENCODE, () -> ImageIO.write(slot.getState().getCurrentImage(), "png", baos));
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .body(baos.toByteArray());
+    }
 }
\ No newline at end of file
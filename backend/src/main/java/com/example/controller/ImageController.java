@@ -1,5 +1,6 @@
 package com.example.controller;
 
+import com.example.services.FileServingService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
@@ -8,12 +9,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,6 +21,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
 @RestController
 @RequestMapping("/api/image-service")
 @CrossOrigin(origins = { "http://localhost:5173" }, allowCredentials = "true")
@@ -31,58 +34,46 @@ public class ImageController {
     private String uploadDir;
 
     private final ResourceLoader resourceLoader;
+    private final FileServingService fileServingService;
 
-    public ImageController(ResourceLoader resourceLoader) {
+    public ImageController(ResourceLoader resourceLoader, FileServingService fileServingService) {
         this.resourceLoader = resourceLoader;
+        this.fileServingService = fileServingService;
     }
 
+    /**
+     * Serves the current image as binary, with Range and conditional GET support.
+     */
     @GetMapping("/get")
-    public ResponseEntity<?> getImage() {
-        try {
-            // Define the default image path
-            Path imagePath = Paths.get(uploadDir, "current_image.jpg");
-            File imageFile = imagePath.toFile();
-
-            // Check if the image exists
-            if (!imageFile.exists() || !imageFile.isFile()) {
-                logger.info("No current image found at: {}", imagePath);
-                return ResponseEntity.notFound().build();
-            }
-
-            // Read the image bytes
-            byte[] imageBytes = Files.readAllBytes(imagePath);
-            String base64Image = java.util.Base64.getEncoder().encodeToString(imageBytes);
-
-            Map<String, String> response = new HashMap<>();
-            response.put("image", base64Image);
-
-            logger.info("Successfully retrieved image of size: {} bytes", imageBytes.length);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            logger.error("Error retrieving image:", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Error retrieving image: " + e.getMessage());
+    public void getImage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Define the default image path
+        Path imagePath = Paths.get(uploadDir, "current_image.jpg");
+
+        // Check if the image exists
+        if (!Files.isRegularFile(imagePath)) {
+            logger.info("No current image found at: {}", imagePath);
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
         }
+
+        fileServingService.serve(imagePath, MediaType.IMAGE_JPEG, request, response);
     }
 
     @PostMapping("/upload")
     public ResponseEntity<?> uploadImage(@RequestParam("file") MultipartFile file) {
         try {
-            // Create directory if it doesn't exist
-            File directory = new File(uploadDir);
-            if (!directory.exists()) {
-                directory.mkdirs();
-            }
-
-            // Save the file
+            // Written next to the target and renamed, so /get never sees a partial file
             Path targetPath = Paths.get(uploadDir, "current_image.jpg");
-            Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+            long size;
+            try (InputStream in = file.getInputStream()) {
+                size = fileServingService.store(in, targetPath);
+            }
 
             Map<String, String> response = new HashMap<>();
             response.put("path", targetPath.toString());
             response.put("message", "Image uploaded successfully");
 
-            logger.info("Image uploaded successfully to: {}", targetPath);
+            logger.info("Image uploaded successfully to: {} ({} bytes)", targetPath, size);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             logger.error("Error uploading image:", e);
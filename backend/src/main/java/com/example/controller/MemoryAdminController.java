@@ -0,0 +1,58 @@
+package com.example.controller;
+
+import com.example.services.ImageStateRegistry;
+import com.example.services.MemoryAccountingService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Memory accounting and session housekeeping for operators. Requests need the
+ * admin token, see {@link AdminAccessInterceptor}, and sessions are named by
+ * their hashed key rather than their ID.
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class MemoryAdminController {
+
+    private final MemoryAccountingService memoryAccountingService;
+    private final ImageStateRegistry imageStateRegistry;
+
+    public MemoryAdminController(MemoryAccountingService memoryAccountingService,
+            ImageStateRegistry imageStateRegistry) {
+        this.memoryAccountingService = memoryAccountingService;
+        this.imageStateRegistry = imageStateRegistry;
+    }
+
+    /**
+     * Bytes held per session and category, caches, and JVM/process memory.
+     */
+    @GetMapping("/memory")
+    public Map<String, Object> getMemory() {
+        return memoryAccountingService.report();
+    }
+
+    /**
+     * Runs eviction now, as if the budget had been exceeded by the given amount.
+     *
+     * @param targetMb Megabytes to free; 0 only drops caches and Mat views
+     */
+    @PostMapping("/memory/evict")
+    public Map<String, Object> evict(@RequestParam(defaultValue = "0") long targetMb) {
+        long freed = memoryAccountingService.evict(targetMb * 1024 * 1024);
+        Map<String, Object> report = memoryAccountingService.report();
+        report.put("freedBytes", freed);
+        return report;
+    }
+
+    /**
+     * Ends the session with the given key, as listed by {@link #getMemory()}.
+     */
+    @DeleteMapping("/sessions/{key}")
+    public ResponseEntity<?> removeSession(@PathVariable String key) {
+        return imageStateRegistry.removeByKey(key)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
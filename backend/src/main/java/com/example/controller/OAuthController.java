@@ -21,6 +21,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.services.CredentialCache;
 import com.google.api.client.auth.oauth2.AuthorizationCodeRequestUrl;
 import com.google.api.client.auth.oauth2.TokenResponse;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
@@ -53,10 +54,12 @@ public class OAuthController {
     private String callbackPath;
 
     private final ApplicationContext applicationContext;
+    private final CredentialCache credentialCache;
     private GoogleAuthorizationCodeFlow flow;
 
-    public OAuthController(ApplicationContext applicationContext) {
+    public OAuthController(ApplicationContext applicationContext, CredentialCache credentialCache) {
         this.applicationContext = applicationContext;
+        this.credentialCache = credentialCache;
     }
 
     @PostConstruct
@@ -228,6 +231,7 @@ public class OAuthController {
     public ResponseEntity<Map<String, Object>> logout() {
         try {
             getFlow().getCredentialDataStore().delete(USER_ID);
+            credentialCache.invalidate();
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -308,6 +312,7 @@ public class OAuthController {
                 // Try to clear the credential store directly
                 try {
                     getFlow().getCredentialDataStore().clear();
+                    credentialCache.invalidate();
                     logger.info("Cleared credential data store");
                 } catch (Exception e) {
                     logger.error("Error clearing credential data store", e);
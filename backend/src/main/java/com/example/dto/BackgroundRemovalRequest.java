@@ -2,6 +2,8 @@ package com.example.dto;
 
 public class BackgroundRemovalRequest {
     private String method; // "auto" or "manual"
+    // Run the model on a head-and-shoulders region around the detected faces only
+    private boolean faceRoi;
 
     public String getMethod() {
         return method;
@@ -10,4 +12,12 @@ public class BackgroundRemovalRequest {
     public void setMethod(String method) {
         this.method = method;
     }
-} 
\ No newline at end of file
+
+    public boolean isFaceRoi() {
+        return faceRoi;
+    }
+
+    public void setFaceRoi(boolean faceRoi) {
+        this.faceRoi = faceRoi;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.example.dto;
+
+import java.util.List;
+
+public class BatchImportRequest {
+    private String folderId; // Drive folder to import all images from
+    private List<String> fileIds; // Explicit list of Drive file IDs (takes precedence over folderId)
+
+    public String getFolderId() {
+        return folderId;
+    }
+
+    public void setFolderId(String folderId) {
+        this.folderId = folderId;
+    }
+
+    public List<String> getFileIds() {
+        return fileIds;
+    }
+
+    public void setFileIds(List<String> fileIds) {
+        this.fileIds = fileIds;
+    }
+}
@@ -8,6 +8,13 @@ public class PhotoLayoutRequest {
     private int originalHeight;
     private int finalWidth;
     private int finalHeight;
+    private int dpi = 96;
+    // Optional preset from the layout template registry; overrides the grid fields
+    private String templateId;
+    // Export format: "png" or "pdf"
+    private String format = "png";
+    // Number of photos to place (PDF only, at most 1000); 0 fills one sheet
+    private int copies;
 
     public int getBorderSize() {
         return borderSize;
@@ -64,4 +71,36 @@ public class PhotoLayoutRequest {
     public void setFinalHeight(int finalHeight) {
         this.finalHeight = finalHeight;
     }
+
+    public int getDpi() {
+        return dpi;
+    }
+
+    public void setDpi(int dpi) {
+        this.dpi = dpi;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public int getCopies() {
+        return copies;
+    }
+
+    public void setCopies(int copies) {
+        this.copies = copies;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public void setTemplateId(String templateId) {
+        this.templateId = templateId;
+    }
 } 
\ No newline at end of file
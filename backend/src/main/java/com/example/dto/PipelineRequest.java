@@ -0,0 +1,25 @@
+package com.example.dto;
+
+import java.util.List;
+
+public class PipelineRequest {
+    private List<PipelineStep> steps;
+    // Merge adjacent geometric / tone steps into single passes
+    private boolean fuse = true;
+
+    public List<PipelineStep> getSteps() {
+        return steps;
+    }
+
+    public void setSteps(List<PipelineStep> steps) {
+        this.steps = steps;
+    }
+
+    public boolean isFuse() {
+        return fuse;
+    }
+
+    public void setFuse(boolean fuse) {
+        this.fuse = fuse;
+    }
+}
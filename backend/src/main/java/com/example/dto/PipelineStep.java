@@ -0,0 +1,83 @@
+package com.example.dto;
+
+/**
+ * One operation of a pipeline request.
+ * {@code op} names the operation, using the same names as the single-step
+ * endpoints, and the matching field carries its usual request body.
+ */
+public class PipelineStep {
+    // "crop", "resize", "face-center", "background-remove",
+    // "background-replace", "enhance" or "layout"
+    private String op;
+    private CropRequest crop;
+    private ResizeRequest resize;
+    private FaceCenteringRequest faceCenter;
+    private BackgroundRemovalRequest backgroundRemove;
+    private BackgroundReplaceRequest backgroundReplace;
+    private PhotoEnhanceRequest enhance;
+    private PhotoLayoutRequest layout;
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public CropRequest getCrop() {
+        return crop;
+    }
+
+    public void setCrop(CropRequest crop) {
+        this.crop = crop;
+    }
+
+    public ResizeRequest getResize() {
+        return resize;
+    }
+
+    public void setResize(ResizeRequest resize) {
+        this.resize = resize;
+    }
+
+    public FaceCenteringRequest getFaceCenter() {
+        return faceCenter;
+    }
+
+    public void setFaceCenter(FaceCenteringRequest faceCenter) {
+        this.faceCenter = faceCenter;
+    }
+
+    public BackgroundRemovalRequest getBackgroundRemove() {
+        return backgroundRemove;
+    }
+
+    public void setBackgroundRemove(BackgroundRemovalRequest backgroundRemove) {
+        this.backgroundRemove = backgroundRemove;
+    }
+
+    public BackgroundReplaceRequest getBackgroundReplace() {
+        return backgroundReplace;
+    }
+
+    public void setBackgroundReplace(BackgroundReplaceRequest backgroundReplace) {
+        this.backgroundReplace = backgroundReplace;
+    }
+
+    public PhotoEnhanceRequest getEnhance() {
+        return enhance;
+    }
+
+    public void setEnhance(PhotoEnhanceRequest enhance) {
+        this.enhance = enhance;
+    }
+
+    public PhotoLayoutRequest getLayout() {
+        return layout;
+    }
+
+    public void setLayout(PhotoLayoutRequest layout) {
+        this.layout = layout;
+    }
+}
@@ -6,6 +6,7 @@ public class ResizeRequest {
     private boolean maintainAspectRatio;
     private boolean widthProvided;
     private boolean heightProvided;
+    private String filter = "lanczos"; // "lanczos", "mitchell" or "bilinear"
 
     // Getters and setters
     public int getWidth() {
@@ -47,4 +48,12 @@ public class ResizeRequest {
     public void setHeightProvided(boolean heightProvided) {
         this.heightProvided = heightProvided;
     }
-} 
\ No newline at end of file
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.example.dto;
+
+public class SheetComposeItem {
+    // "current" for the editor image or "batch" for a batch workspace slot
+    private String source = "current";
+    private int slot;
+    // Printed size in mm
+    private double width;
+    private double height;
+    private int count = 1;
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public void setWidth(double width) {
+        this.width = width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public void setHeight(double height) {
+        this.height = height;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.dto;
+
+import java.util.List;
+
+public class SheetComposeRequest {
+    // Paper size, margin and spacing in mm (defaults to A4)
+    private double paperWidth = 210;
+    private double paperHeight = 297;
+    private double margin = 5;
+    private double spacing = 2;
+    private int dpi = 96;
+    private List<SheetComposeItem> items;
+
+    public double getPaperWidth() {
+        return paperWidth;
+    }
+
+    public void setPaperWidth(double paperWidth) {
+        this.paperWidth = paperWidth;
+    }
+
+    public double getPaperHeight() {
+        return paperHeight;
+    }
+
+    public void setPaperHeight(double paperHeight) {
+        this.paperHeight = paperHeight;
+    }
+
+    public double getMargin() {
+        return margin;
+    }
+
+    public void setMargin(double margin) {
+        this.margin = margin;
+    }
+
+    public double getSpacing() {
+        return spacing;
+    }
+
+    public void setSpacing(double spacing) {
+        this.spacing = spacing;
+    }
+
+    public int getDpi() {
+        return dpi;
+    }
+
+    public void setDpi(int dpi) {
+        this.dpi = dpi;
+    }
+
+    public List<SheetComposeItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<SheetComposeItem> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.metrics;
+
+import java.io.IOException;
+
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpIOExceptionHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponseInterceptor;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Wraps the Drive client's request initializer (normally the OAuth
+ * credential) to time every HTTP call the client makes, including batch
+ * calls, as {@code drive.requests}. Calls are tagged by method, a coarse
+ * operation (metadata, media, upload, batch), HTTP status and outcome, so
+ * error rates fall out of the same timer. Retries after a token refresh are
+ * counted as one call.
+ */
+public class DriveRequestMetrics implements HttpRequestInitializer {
+
+    private final HttpRequestInitializer delegate;
+
+    /**
+     * @param delegate Initializer to run first; may be null
+     */
+    public DriveRequestMetrics(HttpRequestInitializer delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void initialize(HttpRequest request) throws IOException {
+        if (delegate != null) {
+            delegate.initialize(request);
+        }
+        HttpExecuteInterceptor interceptor = request.getInterceptor();
+        HttpResponseInterceptor responseInterceptor = request.getResponseInterceptor();
+        HttpIOExceptionHandler ioExceptionHandler = request.getIOExceptionHandler();
+        Timer.Sample[] sample = new Timer.Sample[1];
+
+        request.setInterceptor(r -> {
+            if (sample[0] == null) {
+                sample[0] = Timer.start(Metrics.globalRegistry);
+            }
+            if (interceptor != null) {
+                interceptor.intercept(r);
+            }
+        });
+        // Runs for every response the client returns, successful or not
+        request.setResponseInterceptor(response -> {
+            int status = response.getStatusCode();
+            record(sample, request, String.valueOf(status), status < 400 ? "success" : "error");
+            if (responseInterceptor != null) {
+                responseInterceptor.interceptResponse(response);
+            }
+        });
+        request.setIOExceptionHandler((r, supportsRetry) -> {
+            boolean retry = ioExceptionHandler != null && ioExceptionHandler.handleIOException(r, supportsRetry);
+            if (!retry) {
+                record(sample, request, "IO_ERROR", "error");
+            }
+            return retry;
+        });
+    }
+
+    private static void record(Timer.Sample[] sample, HttpRequest request, String status, String outcome) {
+        if (sample[0] == null) {
+            return;
+        }
+        sample[0].stop(Timer.builder("drive.requests")
+                .description("Google Drive API calls")
+                .tag("method", request.getRequestMethod())
+                .tag("operation", operation(request))
+                .tag("status", status)
+                .tag("outcome", outcome)
+                .register(Metrics.globalRegistry));
+        sample[0] = null;
+    }
+
+    private static String operation(HttpRequest request) {
+        String path = request.getUrl().getRawPath();
+        if (path == null) {
+            return "other";
+        }
+        if (path.endsWith("/batch") || path.contains("/batch/")) {
+            return "batch";
+        }
+        if (path.startsWith("/upload/")) {
+            return "upload";
+        }
+        if ("media".equals(request.getUrl().getFirst("alt"))) {
+            return "media";
+        }
+        return "metadata";
+    }
+}
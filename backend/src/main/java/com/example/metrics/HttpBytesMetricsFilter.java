@@ -0,0 +1,254 @@
+package com.example.metrics;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Records request and response body sizes for /api calls, tagged like
+ * Spring's http.server.requests timer so the two can be joined.
+ * <p>
+ * Bodies are counted as they pass through the servlet streams, so chunked
+ * and streamed responses are measured too; async responses (SSE, streaming
+ * exports) are recorded when the request completes. Files handed to Tomcat's
+ * sendfile are counted by their range, and multipart uploads, which the
+ * container parses itself, by their Content-Length.
+ */
+@Component
+public class HttpBytesMetricsFilter extends OncePerRequestFilter {
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final MeterRegistry registry;
+
+    public HttpBytesMetricsFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CountingRequest countingRequest = new CountingRequest(request);
+        CountingResponse countingResponse = new CountingResponse(response);
+        try {
+            chain.doFilter(countingRequest, countingResponse);
+        } finally {
+            // The container flushes its own writer when the response ends, but not this one
+            countingResponse.flushWriter();
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(countingRequest, countingResponse);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(countingRequest, countingResponse);
+            }
+        }
+    }
+
+    private void record(CountingRequest request, CountingResponse response) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        long requestBytes = Math.max(request.getCount(), request.getContentLengthLong());
+        if (requestBytes > 0) {
+            summary("http.server.request.bytes", request.getMethod(), uri).record(requestBytes);
+        }
+        long responseBytes = response.getCount();
+        // Sent by Tomcat straight from the file, never through the stream
+        if (request.getAttribute(SENDFILE_START) instanceof Long start
+                && request.getAttribute(SENDFILE_END) instanceof Long end) {
+            responseBytes += end - start;
+        }
+        if (responseBytes > 0) {
+            summary("http.server.response.bytes", request.getMethod(), uri).record(responseBytes);
+        }
+    }
+
+    private DistributionSummary summary(String name, String method, String uri) {
+        return DistributionSummary.builder(name)
+                .baseUnit("bytes")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(registry);
+    }
+
+    /**
+     * Counts the body bytes the application reads.
+     */
+    private static final class CountingRequest extends HttpServletRequestWrapper {
+        private ServletInputStream stream;
+        private long count;
+
+        CountingRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (stream == null) {
+                ServletInputStream delegate = super.getInputStream();
+                stream = new ServletInputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        int b = delegate.read();
+                        if (b >= 0) {
+                            count++;
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int n = delegate.read(buffer, offset, length);
+                        if (n > 0) {
+                            count += n;
+                        }
+                        return n;
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return delegate.isFinished();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener listener) {
+                        delegate.setReadListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+    }
+
+    /**
+     * Counts the body bytes written, whether through the output stream or the writer.
+     */
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+        private volatile long count;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        count++;
+                    }
+
+                    @Override
+                    public void write(byte[] buffer, int offset, int length) throws IOException {
+                        delegate.write(buffer, offset, length);
+                        count += length;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        delegate.setWriteListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+
+        // Encodes through the counting stream, so characters are counted as the bytes they become
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                String encoding = getCharacterEncoding();
+                Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), charset));
+            }
+            return writer;
+        }
+
+        void flushWriter() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            super.flushBuffer();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Timers for the internal stages of image processing, recorded as
+ * {@code image.stage} tagged with the stage name and outcome.
+ * <p>
+ * The stages run deep inside services that are also constructed outside
+ * Spring (the batch CLI, the benchmarks), so this records to the global
+ * registry instead of taking a MeterRegistry. Spring Boot adds its registry
+ * there; without it every call is a cheap no-op.
+ */
+public final class ImageMetrics {
+
+    public static final String DECODE = "decode";
+    public static final String MAT_CONVERSION = "mat-conversion";
+    public static final String INFERENCE = "inference";
+    public static final String FACE_DETECTION = "face-detection";
+    public static final String COMPOSITE = "composite";
+    public static final String LAYOUT = "layout";
+    public static final String ENCODE = "encode";
+
+    /**
+     * Work whose duration is recorded; may throw a checked exception.
+     */
+    @FunctionalInterface
+    public interface Stage<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private ImageMetrics() {
+    }
+
+    /**
+     * Runs the work and records how long it took under the given stage,
+     * with outcome "error" if it threw.
+     */
+    public static <T, E extends Exception> T time(String stage, Stage<T, E> work) throws E {
+        Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+        String outcome = "error";
+        try {
+            T result = work.run();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(Timer.builder("image.stage")
+                    .description("Time spent in an image processing stage")
+                    .tag("stage", stage)
+                    .tag("outcome", outcome)
+                    .register(Metrics.globalRegistry));
+        }
+    }
+
+    /**
+     * Records the size of image data read or written by a stage, as
+     * {@code image.bytes} tagged with the stage.
+     */
+    public static void recordBytes(String stage, long bytes) {
+        DistributionSummary.builder("image.bytes")
+                .description("Size of encoded image data")
+                .baseUnit("bytes")
+                .tag("stage", stage)
+                .register(Metrics.globalRegistry)
+                .record(bytes);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.model;
+
+/**
+ * A single entry of the batch workspace.
+ * Each slot owns its own ImageState so that batch images can be edited
+ * independently of the main editor image.
+ */
+public class BatchSlot {
+    public enum Status {
+        PENDING, DOWNLOADING, READY, FAILED
+    }
+
+    private final int index;
+    private final String fileId;
+    private String name;
+    private String mimeType;
+    private volatile Status status = Status.PENDING;
+    private volatile String error;
+    private volatile int attempts;
+    private final ImageState state = new ImageState();
+
+    public BatchSlot(int index, String fileId) {
+        this.index = index;
+        this.fileId = fileId;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public ImageState getState() {
+        return state;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds the images loaded for batch editing.
+ * Slots are allocated up front in request order so that parallel downloads
+ * always land in a predictable position regardless of completion order.
+ */
+public class BatchWorkspace {
+    private volatile List<BatchSlot> slots = Collections.emptyList();
+
+    public synchronized List<BatchSlot> allocate(List<String> fileIds) {
+        List<BatchSlot> allocated = new ArrayList<>(fileIds.size());
+        for (int i = 0; i < fileIds.size(); i++) {
+            allocated.add(new BatchSlot(i, fileIds.get(i)));
+        }
+        this.slots = Collections.unmodifiableList(allocated);
+        return this.slots;
+    }
+
+    public List<BatchSlot> getSlots() {
+        return slots;
+    }
+
+    public BatchSlot getSlot(int index) {
+        List<BatchSlot> current = slots;
+        return index >= 0 && index < current.size() ? current.get(index) : null;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public void clear() {
+        this.slots = Collections.emptyList();
+    }
+}
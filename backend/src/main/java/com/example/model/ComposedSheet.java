@@ -0,0 +1,80 @@
+package com.example.model;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One sheet produced by the sheet composer: where each photo goes and, once
+ * rendered, the sheet image.
+ */
+public class ComposedSheet {
+
+    /**
+     * A photo placed on the sheet, in sheet pixels.
+     */
+    public static class Placement {
+        private final int item;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+
+        public Placement(int item, int x, int y, int width, int height) {
+            this.item = item;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getItem() {
+            return item;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+
+    private final int index;
+    private final List<Placement> placements = new ArrayList<>();
+    private volatile BufferedImage image;
+
+    public ComposedSheet(int index) {
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public List<Placement> getPlacements() {
+        return Collections.unmodifiableList(placements);
+    }
+
+    public void addPlacement(Placement placement) {
+        placements.add(placement);
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public void setImage(BufferedImage image) {
+        this.image = image;
+    }
+}
@@ -13,6 +13,8 @@ public class DriveFile {
     private String mimeType;
     private Date modifiedTime;
     private String webViewLink;
+    private String thumbnailLink;
+    private String webContentLink;
     private long size;
 
     // Default constructor required for serialization/deserialization
@@ -69,6 +71,22 @@ public class DriveFile {
         this.webViewLink = webViewLink;
     }
 
+    public String getThumbnailLink() {
+        return thumbnailLink;
+    }
+
+    public void setThumbnailLink(String thumbnailLink) {
+        this.thumbnailLink = thumbnailLink;
+    }
+
+    public String getWebContentLink() {
+        return webContentLink;
+    }
+
+    public void setWebContentLink(String webContentLink) {
+        this.webContentLink = webContentLink;
+    }
+
     public long getSize() {
         return size;
     }
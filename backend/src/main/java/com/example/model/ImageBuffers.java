@@ -0,0 +1,219 @@
+package com.example.model;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.util.stream.IntStream;
+
+import com.example.metrics.ImageMetrics;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Conversions to and from the canonical editor layout: a standalone
+ * TYPE_INT_ARGB image, non-premultiplied, with the pixels packed row by row
+ * in one int array. Opaque images simply have alpha 255 everywhere.
+ * <p>
+ * OpenCV works on 8-bit BGR Mats. Both directions copy the pixels directly,
+ * without going through Java2D or an encoder.
+ */
+public final class ImageBuffers {
+
+    // Below this many pixels the work is not worth splitting
+    private static final int PARALLEL_THRESHOLD = 1 << 18;
+
+    private ImageBuffers() {
+    }
+
+    /**
+     * True if the image already has the canonical layout.
+     */
+    public static boolean isCanonical(BufferedImage image) {
+        return image.getType() == BufferedImage.TYPE_INT_ARGB && image.getRaster().getParent() == null
+                && image.getRaster().getDataBuffer().getSize() == image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * Returns the image in the canonical layout, converting only if needed.
+     */
+    public static BufferedImage toCanonical(BufferedImage image) {
+        if (image == null || isCanonical(image)) {
+            return image;
+        }
+        return copy(image);
+    }
+
+    /**
+     * Returns a canonical copy of the image.
+     */
+    public static BufferedImage copy(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] out = pixels(copy);
+        if (isCanonical(image)) {
+            System.arraycopy(pixels(image), 0, out, 0, out.length);
+            return copy;
+        }
+        boolean alpha = image.getColorModel().hasAlpha();
+        rows(width, height).forEach(y -> {
+            image.getRGB(0, y, width, 1, out, y * width, width);
+            if (!alpha) {
+                // getRGB already reports 255, but custom colour models are not guaranteed to
+                for (int i = y * width, end = i + width; i < end; i++) {
+                    out[i] |= 0xFF000000;
+                }
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * Turns a standalone TYPE_INT_RGB image into a canonical one without
+     * copying: alpha is set to 255 in place and the same pixel array is
+     * wrapped as ARGB. The source image must not be used afterwards.
+     *
+     * @throws IllegalArgumentException If the image is not a standalone TYPE_INT_RGB image
+     */
+    public static BufferedImage adoptOpaque(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB || image.getRaster().getParent() != null) {
+            throw new IllegalArgumentException("Expected a standalone TYPE_INT_RGB image");
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        DataBufferInt buffer = (DataBufferInt) image.getRaster().getDataBuffer();
+        int[] data = buffer.getData();
+        rows(width, height).forEach(y -> {
+            for (int i = y * width, end = i + width; i < end; i++) {
+                data[i] |= 0xFF000000;
+            }
+        });
+        DirectColorModel argb = (DirectColorModel) ColorModel.getRGBdefault();
+        return new BufferedImage(argb, Raster.createPackedRaster(buffer, width, height, width, argb.getMasks(), null),
+                false, null);
+    }
+
+    /**
+     * The packed ARGB pixels of a canonical image. Writes go straight to the image.
+     *
+     * @throws IllegalArgumentException If the image is not canonical
+     */
+    public static int[] pixels(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB || image.getRaster().getParent() != null) {
+            throw new IllegalArgumentException("Expected a standalone TYPE_INT_ARGB image");
+        }
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Bytes held by the pixel data of the image (the whole backing buffer,
+     * even for a sub-image).
+     */
+    public static long sizeOf(BufferedImage image) {
+        if (image == null) {
+            return 0;
+        }
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * Copies the image into a new 8-bit, 3-channel BGR Mat. Transparent
+     * pixels are composited over black.
+     */
+    public static Mat toBgrMat(BufferedImage image) {
+        return ImageMetrics.time(ImageMetrics.MAT_CONVERSION, () -> copyToBgrMat(image));
+    }
+
+    private static Mat copyToBgrMat(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = pixels(toCanonical(image));
+        byte[] bgr = new byte[width * height * 3];
+        rows(width, height).forEach(y -> {
+            for (int i = y * width, end = i + width, j = i * 3; i < end; i++, j += 3) {
+                int p = argb[i];
+                int a = p >>> 24;
+                int r = (p >> 16) & 0xFF;
+                int g = (p >> 8) & 0xFF;
+                int b = p & 0xFF;
+                if (a != 255) {
+                    r = div255(r * a);
+                    g = div255(g * a);
+                    b = div255(b * a);
+                }
+                bgr[j] = (byte) b;
+                bgr[j + 1] = (byte) g;
+                bgr[j + 2] = (byte) r;
+            }
+        });
+        Mat mat = new Mat(height, width, CvType.CV_8UC3);
+        mat.put(0, 0, bgr);
+        return mat;
+    }
+
+    /**
+     * Copies an 8-bit Mat with 1 (grey), 3 (BGR) or 4 (BGRA) channels into a
+     * new canonical image.
+     *
+     * @throws IllegalArgumentException For any other Mat type
+     */
+    public static BufferedImage fromMat(Mat mat) {
+        int channels = mat.channels();
+        if (mat.depth() != CvType.CV_8U || (channels != 1 && channels != 3 && channels != 4)) {
+            throw new IllegalArgumentException("Unsupported Mat type: " + CvType.typeToString(mat.type()));
+        }
+        return ImageMetrics.time(ImageMetrics.MAT_CONVERSION, () -> copyFromMat(mat, channels));
+    }
+
+    private static BufferedImage copyFromMat(Mat mat, int channels) {
+        int width = mat.cols();
+        int height = mat.rows();
+        byte[] data = new byte[width * height * channels];
+        mat.get(0, 0, data);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] out = pixels(image);
+        rows(width, height).forEach(y -> {
+            for (int i = y * width, end = i + width, j = i * channels; i < end; i++, j += channels) {
+                if (channels == 1) {
+                    int v = data[j] & 0xFF;
+                    out[i] = 0xFF000000 | (v << 16) | (v << 8) | v;
+                    continue;
+                }
+                int a = channels == 4 ? data[j + 3] & 0xFF : 255;
+                out[i] = (a << 24) | ((data[j + 2] & 0xFF) << 16) | ((data[j + 1] & 0xFF) << 8) | (data[j] & 0xFF);
+            }
+        });
+        return image;
+    }
+
+    /**
+     * Rounded x / 255 for 0 <= x <= 255 * 255, without a division.
+     */
+    public static int div255(int x) {
+        x += 128;
+        return (x + (x >> 8)) >> 8;
+    }
+
+    /**
+     * Row indices of a width x height pass over pixels, parallel once the
+     * image is large enough for splitting to pay off.
+     */
+    public static IntStream rows(int width, int height) {
+        return rows(width, height, PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Row indices as {@link #rows(int, int)}, for passes whose per-pixel work
+     * justifies a different threshold.
+     */
+    public static IntStream rows(int width, int height, int parallelThreshold) {
+        IntStream rows = IntStream.range(0, height);
+        return (long) width * height >= parallelThreshold ? rows.parallel() : rows;
+    }
+}
@@ -1,13 +1,30 @@
 package com.example.model;
 
 import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
+import org.opencv.core.Mat;
+
+/**
+ * Editor state for one image. Every image stored here is in the canonical
+ * layout of {@link ImageBuffers}, so services can rely on packed ARGB pixels.
+ * Images are never modified once stored; an edit sets a new image.
+ */
 public class ImageState {
 
     private BufferedImage currentImage;
     private BufferedImage originalImage;
     private BufferedImage referenceImage; // Image before enhancement adjustments
+    private AlphaMatte alphaMatte; // Cut-out foreground of currentImage, for background replacement
+    private Path originalFile; // Uploaded bytes, kept for full quality export
+    private Mat matView; // BGR copy of matViewImage for OpenCV, built on first use
+    private BufferedImage matViewImage;
     private final Stack<BufferedImage> history = new Stack<>();
     private final Stack<BufferedImage> future = new Stack<>();
 
@@ -16,7 +33,32 @@ public class ImageState {
     }
 
     public void setCurrentImage(BufferedImage image) {
-        this.currentImage = image;
+        this.currentImage = ImageBuffers.toCanonical(image);
+        // A matte only ever describes the image it was set with
+        this.alphaMatte = null;
+    }
+
+    /**
+     * Returns the current image as an 8-bit BGR Mat. The conversion is done
+     * once per image version and cached; each call gets its own copy of the
+     * cached Mat, which the caller owns and should release when done.
+     *
+     * @return The Mat, or null if no image is loaded
+     */
+    public synchronized Mat getCurrentMat() {
+        BufferedImage image = currentImage;
+        if (image == null) {
+            return null;
+        }
+        if (matViewImage != image) {
+            // Never handed out, so nobody else can be using it
+            if (matView != null) {
+                matView.release();
+            }
+            matView = ImageBuffers.toBgrMat(image);
+            matViewImage = image;
+        }
+        return matView.clone();
     }
 
     public BufferedImage getOriginalImage() {
@@ -29,6 +71,14 @@ public class ImageState {
         clearFuture();
     }
     
+    public Path getOriginalFile() {
+        return originalFile;
+    }
+
+    public void setOriginalFile(Path originalFile) {
+        this.originalFile = originalFile;
+    }
+    
     public BufferedImage getReferenceImage() {
         return referenceImage;
     }
@@ -41,6 +91,27 @@ public class ImageState {
         this.referenceImage = null;
     }
 
+    /**
+     * Remembers the cut-out foreground behind the current image, either the
+     * background removal result or an image produced by replacing its
+     * background. Setting a new current image drops it, so call this after
+     * {@link #setCurrentImage}.
+     */
+    public void setAlphaMatte(AlphaMatte matte) {
+        this.alphaMatte = matte;
+    }
+    
+    /**
+     * Returns the matte of the current image, or null if it has none.
+     */
+    public AlphaMatte getAlphaMatte() {
+        return alphaMatte;
+    }
+    
+    public void clearAlphaMatte() {
+        this.alphaMatte = null;
+    }
+
     public void pushHistory(BufferedImage image) {
         if (image != null) {
             history.push(cloneImage(image));
@@ -78,11 +149,80 @@ public class ImageState {
         future.clear();
     }
 
+    public int getHistorySize() {
+        return history.size();
+    }
+
+    public int getFutureSize() {
+        return future.size();
+    }
+
+    /**
+     * Drops the oldest undo steps, keeping the given number of most recent ones.
+     *
+     * @return Bytes no longer referenced by the history
+     */
+    public long trimHistory(int keep) {
+        long freed = 0;
+        synchronized (history) {
+            while (history.size() > Math.max(0, keep)) {
+                freed += ImageBuffers.sizeOf(history.remove(0));
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Releases the cached Mat view. Callers only ever hold copies, so this is
+     * safe while requests are running; the view is rebuilt on the next use.
+     *
+     * @return Native bytes the view was holding
+     */
+    public synchronized long dropMatView() {
+        Mat view = matView;
+        matView = null;
+        matViewImage = null;
+        if (view == null) {
+            return 0;
+        }
+        long bytes = view.total() * view.elemSize();
+        view.release();
+        return bytes;
+    }
+
+    /**
+     * Bytes held by this state per category. Pixels referenced from more
+     * than one place (e.g. a matte that shares the current image's pixels)
+     * are counted once, under the first category they appear in.
+     */
+    public Map<MemoryCategory, Long> measureMemory() {
+        Map<MemoryCategory, Long> usage = new EnumMap<>(MemoryCategory.class);
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        add(usage, seen, MemoryCategory.CURRENT, currentImage);
+        add(usage, seen, MemoryCategory.ORIGINAL, originalImage);
+        for (Object image : history.toArray()) {
+            add(usage, seen, MemoryCategory.HISTORY, (BufferedImage) image);
+        }
+        for (Object image : future.toArray()) {
+            add(usage, seen, MemoryCategory.FUTURE, (BufferedImage) image);
+        }
+        add(usage, seen, MemoryCategory.REFERENCE, referenceImage);
+        AlphaMatte matte = alphaMatte;
+        add(usage, seen, MemoryCategory.MATTE, matte != null ? matte.getImage() : null);
+        Mat view = matView;
+        usage.put(MemoryCategory.NATIVE, view != null ? view.total() * view.elemSize() : 0L);
+        return usage;
+    }
+
+    private static void add(Map<MemoryCategory, Long> usage, Set<Object> seen, MemoryCategory category,
+            BufferedImage image) {
+        long bytes = image != null && seen.add(image) ? ImageBuffers.sizeOf(image) : 0;
+        usage.merge(category, bytes, Long::sum);
+    }
+
     public BufferedImage cloneImage(BufferedImage img) {
         if (img == null)
             return null;
-        BufferedImage copy = new BufferedImage(img.getWidth(), img.getHeight(), img.getType());
-        copy.getGraphics().drawImage(img, 0, 0, null);
-        return copy;
+        return ImageBuffers.copy(img);
     }
 }
@@ -0,0 +1,66 @@
+package com.example.model;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+
+/**
+ * An uploaded image decoded at working resolution, together with the
+ * original file it was decoded from.
+ */
+public final class IngestedImage {
+
+    private final BufferedImage image;
+    private final Path originalFile;
+    private final int originalWidth;
+    private final int originalHeight;
+    private final int orientation;
+
+    public IngestedImage(BufferedImage image, Path originalFile, int originalWidth, int originalHeight,
+            int orientation) {
+        this.image = image;
+        this.originalFile = originalFile;
+        this.originalWidth = originalWidth;
+        this.originalHeight = originalHeight;
+        this.orientation = orientation;
+    }
+
+    /**
+     * Decoded image, upright and no larger than the working resolution.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * The uploaded bytes, unchanged, or null if the original was not kept.
+     */
+    public Path getOriginalFile() {
+        return originalFile;
+    }
+
+    /**
+     * Width of the original as stored, before orientation is applied.
+     */
+    public int getOriginalWidth() {
+        return originalWidth;
+    }
+
+    public int getOriginalHeight() {
+        return originalHeight;
+    }
+
+    /**
+     * EXIF orientation (1-8) that was applied; 1 if there was none.
+     */
+    public int getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * True if the image was decoded below its original resolution.
+     */
+    public boolean isReduced() {
+        int longSide = Math.max(originalWidth, originalHeight);
+        return Math.max(image.getWidth(), image.getHeight()) < longSide;
+    }
+}
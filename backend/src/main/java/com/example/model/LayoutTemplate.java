@@ -0,0 +1,87 @@
+package com.example.model;
+
+/**
+ * A print layout preset: a grid of identical photos on a sheet of paper.
+ * All sizes are in millimetres.
+ */
+public class LayoutTemplate {
+    private final String id;
+    private final String name;
+    private final int rows;
+    private final int cols;
+    private final double photoWidth;
+    private final double photoHeight;
+    private final double paperWidth;
+    private final double paperHeight;
+    private final double horizontalMargin;
+    private final double verticalMargin;
+    private final double horizontalSpacing;
+    private final double verticalSpacing;
+
+    public LayoutTemplate(String id, String name, int rows, int cols,
+            double photoWidth, double photoHeight,
+            double paperWidth, double paperHeight,
+            double horizontalMargin, double verticalMargin,
+            double horizontalSpacing, double verticalSpacing) {
+        this.id = id;
+        this.name = name;
+        this.rows = rows;
+        this.cols = cols;
+        this.photoWidth = photoWidth;
+        this.photoHeight = photoHeight;
+        this.paperWidth = paperWidth;
+        this.paperHeight = paperHeight;
+        this.horizontalMargin = horizontalMargin;
+        this.verticalMargin = verticalMargin;
+        this.horizontalSpacing = horizontalSpacing;
+        this.verticalSpacing = verticalSpacing;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public double getPhotoWidth() {
+        return photoWidth;
+    }
+
+    public double getPhotoHeight() {
+        return photoHeight;
+    }
+
+    public double getPaperWidth() {
+        return paperWidth;
+    }
+
+    public double getPaperHeight() {
+        return paperHeight;
+    }
+
+    public double getHorizontalMargin() {
+        return horizontalMargin;
+    }
+
+    public double getVerticalMargin() {
+        return verticalMargin;
+    }
+
+    public double getHorizontalSpacing() {
+        return horizontalSpacing;
+    }
+
+    public double getVerticalSpacing() {
+        return verticalSpacing;
+    }
+}
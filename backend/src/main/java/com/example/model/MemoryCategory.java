@@ -0,0 +1,17 @@
+package com.example.model;
+
+import java.util.Locale;
+
+/**
+ * What a block of accounted image memory is held for.
+ */
+public enum MemoryCategory {
+    CURRENT, ORIGINAL, HISTORY, FUTURE, REFERENCE, MATTE, CACHES, NATIVE;
+
+    /**
+     * Name used in gauges and the admin endpoint, e.g. "history".
+     */
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
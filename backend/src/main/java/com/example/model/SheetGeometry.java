@@ -0,0 +1,121 @@
+package com.example.model;
+
+/**
+ * Pixel placement of photos on a layout sheet at a given DPI.
+ * Instances are immutable so they can be computed once per template and DPI
+ * and shared between requests.
+ */
+public class SheetGeometry {
+    private static final double MM_PER_INCH = 25.4;
+
+    private final int dpi;
+    private final int sheetWidth;
+    private final int sheetHeight;
+    private final int photoWidth;
+    private final int photoHeight;
+    private final int[] cellX;
+    private final int[] cellY;
+
+    private SheetGeometry(int dpi, int sheetWidth, int sheetHeight, int photoWidth, int photoHeight,
+            int[] cellX, int[] cellY) {
+        if (sheetWidth <= 0 || sheetHeight <= 0) {
+            throw new IllegalArgumentException("Sheet size must be positive");
+        }
+        if (photoWidth <= 0 || photoHeight <= 0) {
+            throw new IllegalArgumentException("Photo size must be positive");
+        }
+        this.dpi = dpi;
+        this.sheetWidth = sheetWidth;
+        this.sheetHeight = sheetHeight;
+        this.photoWidth = photoWidth;
+        this.photoHeight = photoHeight;
+        this.cellX = cellX;
+        this.cellY = cellY;
+    }
+
+    public static int mmToPx(double mm, int dpi) {
+        return (int) Math.round(mm * dpi / MM_PER_INCH);
+    }
+
+    /**
+     * Lays out a template's grid centred on its paper, as the desktop
+     * generator does.
+     */
+    public static SheetGeometry forTemplate(LayoutTemplate template, int dpi) {
+        int sheetWidth = mmToPx(template.getPaperWidth(), dpi);
+        int sheetHeight = mmToPx(template.getPaperHeight(), dpi);
+        int photoWidth = mmToPx(template.getPhotoWidth(), dpi);
+        int photoHeight = mmToPx(template.getPhotoHeight(), dpi);
+        int spacingX = mmToPx(template.getHorizontalSpacing(), dpi);
+        int spacingY = mmToPx(template.getVerticalSpacing(), dpi);
+
+        int rows = template.getRows();
+        int cols = template.getCols();
+        int startX = (sheetWidth - (cols * photoWidth + (cols - 1) * spacingX)) / 2;
+        int startY = (sheetHeight - (rows * photoHeight + (rows - 1) * spacingY)) / 2;
+
+        int[] cellX = new int[rows * cols];
+        int[] cellY = new int[rows * cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                cellX[row * cols + col] = startX + col * (photoWidth + spacingX);
+                cellY[row * cols + col] = startY + row * (photoHeight + spacingY);
+            }
+        }
+        return new SheetGeometry(dpi, sheetWidth, sheetHeight, photoWidth, photoHeight, cellX, cellY);
+    }
+
+    /**
+     * Lays out a grid from the top-left corner with each photo surrounded by
+     * a white border, matching the original /layout behaviour.
+     */
+    public static SheetGeometry grid(int rows, int cols, int photoWidth, int photoHeight, int border,
+            int sheetWidth, int sheetHeight, int dpi) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Rows and columns must be positive");
+        }
+        int cellWidth = photoWidth + 2 * border;
+        int cellHeight = photoHeight + 2 * border;
+        int[] cellX = new int[rows * cols];
+        int[] cellY = new int[rows * cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                cellX[row * cols + col] = col * cellWidth + border;
+                cellY[row * cols + col] = row * cellHeight + border;
+            }
+        }
+        return new SheetGeometry(dpi, sheetWidth, sheetHeight, photoWidth, photoHeight, cellX, cellY);
+    }
+
+    public int getDpi() {
+        return dpi;
+    }
+
+    public int getSheetWidth() {
+        return sheetWidth;
+    }
+
+    public int getSheetHeight() {
+        return sheetHeight;
+    }
+
+    public int getPhotoWidth() {
+        return photoWidth;
+    }
+
+    public int getPhotoHeight() {
+        return photoHeight;
+    }
+
+    public int getCellCount() {
+        return cellX.length;
+    }
+
+    public int getCellX(int cell) {
+        return cellX[cell];
+    }
+
+    public int getCellY(int cell) {
+        return cellY[cell];
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.services;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Background images available for replacement.
+ * <p>
+ * The directory is indexed once at startup. Uploads are decoded once,
+ * converted to ARGB, capped in size and stored as PNG. Decoded backgrounds
+ * and their variants scaled to a canvas size are kept in an LRU bounded by
+ * memory, keyed by (image ID, width, height), so switching back and forth
+ * between backgrounds neither decodes nor rescales.
+ */
+@Service
+public class BackgroundLibrary {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundLibrary.class);
+
+    private final Path directory;
+    private final long cacheMaxBytes;
+    private final int maxSize;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    // Access-ordered; guarded by this
+    private final LinkedHashMap<Key, int[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    public BackgroundLibrary(@Value("${background.library.dir:uploaded_backgrounds}") String directory,
+            @Value("${background.library.cache-max-mb:256}") long cacheMaxMb,
+            @Value("${background.library.max-size:4096}") int maxSize) {
+        this.directory = Paths.get(directory);
+        this.cacheMaxBytes = cacheMaxMb * 1024 * 1024;
+        this.maxSize = maxSize;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(Files::isRegularFile).forEach(path -> {
+                String name = path.getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                String imageId = dot > 0 ? name.substring(0, dot) : name;
+                int[] size = readSize(path);
+                if (size != null) {
+                    index.put(imageId, new Entry(path, size[0], size[1]));
+                }
+            });
+        }
+        logger.info("Indexed {} background images in {}", index.size(), directory.toAbsolutePath());
+    }
+
+    /**
+     * Decodes an uploaded image, normalizes it and adds it to the library.
+     *
+     * @return ID of the new background
+     * @throws IOException If the data is not a readable image
+     */
+    public String add(InputStream data) throws IOException {
+        BufferedImage decoded = ImageIO.read(data);
+        if (decoded == null) {
+            throw new IOException("Unsupported image format");
+        }
+        BufferedImage canonical = normalize(decoded);
+
+        String imageId = UUID.randomUUID().toString();
+        Path target = directory.resolve(imageId + ".png");
+        Path temp = Files.createTempFile(directory, ".upload-", ".tmp");
+        try {
+            ImageIO.write(canonical, "png", temp.toFile());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        Entry entry = new Entry(target, canonical.getWidth(), canonical.getHeight());
+        index.put(imageId, entry);
+        put(new Key(imageId, entry.width, entry.height), pixels(canonical));
+        logger.info("Added background {} ({}x{})", imageId, entry.width, entry.height);
+        return imageId;
+    }
+
+    /**
+     * Returns the background stretched to the given size as ARGB pixels, row by row.
+     * The array is shared with the cache and must not be modified.
+     *
+     * @return Pixels, or null if there is no background with that ID
+     * @throws IOException If the stored image cannot be read
+     */
+    public int[] getScaled(String imageId, int width, int height) throws IOException {
+        Entry entry = index.get(imageId);
+        if (entry == null) {
+            return null;
+        }
+        Key key = new Key(imageId, width, height);
+        int[] scaled = get(key);
+        if (scaled != null) {
+            return scaled;
+        }
+
+        // Two requests for the same size may both get here; the result is the same
+        int[] source = getSource(imageId, entry);
+        if (width == entry.width && height == entry.height) {
+            return source;
+        }
+        BufferedImage sourceImage = wrap(source, entry.width, entry.height);
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(sourceImage, 0, 0, width, height, null);
+        g.dispose();
+
+        scaled = pixels(target);
+        put(key, scaled);
+        return scaled;
+    }
+
+    private int[] getSource(String imageId, Entry entry) throws IOException {
+        Key key = new Key(imageId, entry.width, entry.height);
+        int[] source = get(key);
+        if (source == null) {
+            BufferedImage decoded = ImageIO.read(entry.path.toFile());
+            if (decoded == null) {
+                throw new IOException("Unreadable background image: " + entry.path.getFileName());
+            }
+            source = pixels(toArgb(decoded));
+            put(key, source);
+        }
+        return source;
+    }
+
+    /**
+     * Bytes currently held by the decoded background cache.
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Evicts least recently used backgrounds until the cache holds at most
+     * the given number of bytes.
+     *
+     * @return Bytes evicted
+     */
+    public synchronized long trimCache(long maxBytes) {
+        long before = cachedBytes;
+        Iterator<int[]> it = cache.values().iterator();
+        while (cachedBytes > maxBytes && it.hasNext()) {
+            cachedBytes -= 4L * it.next().length;
+            it.remove();
+        }
+        return before - cachedBytes;
+    }
+
+    private synchronized int[] get(Key key) {
+        return cache.get(key);
+    }
+
+    private synchronized void put(Key key, int[] pixels) {
+        int[] previous = cache.put(key, pixels);
+        if (previous != null) {
+            cachedBytes -= 4L * previous.length;
+        }
+        cachedBytes += 4L * pixels.length;
+
+        // Evict least recently used entries, but always keep the newest one
+        Iterator<Map.Entry<Key, int[]>> it = cache.entrySet().iterator();
+        while (cachedBytes > cacheMaxBytes && cache.size() > 1 && it.hasNext()) {
+            Map.Entry<Key, int[]> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            cachedBytes -= 4L * eldest.getValue().length;
+            it.remove();
+        }
+    }
+
+    // ARGB, no larger than maxSize on the long side
+    private BufferedImage normalize(BufferedImage image) {
+        int longSide = Math.max(image.getWidth(), image.getHeight());
+        if (longSide <= maxSize) {
+            return toArgb(image);
+        }
+        double scale = (double) maxSize / longSide;
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private static BufferedImage toArgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB && image.getRaster().getParent() == null) {
+            return image;
+        }
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    private static int[] pixels(BufferedImage argb) {
+        return ((DataBufferInt) argb.getRaster().getDataBuffer()).getData();
+    }
+
+    private static BufferedImage wrap(int[] pixels, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.getRaster().setDataElements(0, 0, width, height, pixels);
+        return image;
+    }
+
+    // Reads only the header, so indexing does not decode every image
+    private static int[] readSize(Path path) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                logger.warn("Skipping {}: not an image", path.getFileName());
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            logger.warn("Skipping {}: {}", path.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        final Path path;
+        final int width;
+        final int height;
+
+        Entry(Path path, int width, int height) {
+            this.path = path;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static final class Key {
+        final String imageId;
+        final int width;
+        final int height;
+
+        Key(String imageId, int width, int height) {
+            this.imageId = imageId;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return width == other.width && height == other.height && imageId.equals(other.imageId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(imageId, width, height);
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.services;
 
 import com.example.dto.BackgroundRemovalRequest;
+import com.example.metrics.ImageMetrics;
+import com.example.model.AlphaMatte;
+import com.example.model.ImageBuffers;
 import com.example.model.ImageState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.core.io.ClassPathResource;
@@ -12,8 +17,8 @@ import ai.onnxruntime.*;
 import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
 import java.io.File;
 import java.io.IOException;
 import java.nio.FloatBuffer;
@@ -29,20 +34,34 @@ import java.nio.file.StandardCopyOption;
 @Service
 public class BackgroundRemovalService {
     
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundRemovalService.class);
+    
     // Load OpenCV library statically
     static {
         try {
             OpenCV.loadLocally();
-            System.out.println("OpenCV loaded successfully: " + Core.VERSION);
+            logger.info("OpenCV loaded successfully: {}", Core.VERSION);
         } catch (Exception e) {
-            System.err.println("Failed to load OpenCV: " + e.getMessage());
+            logger.error("Failed to load OpenCV", e);
         }
     }
     
     private final String MODEL_PATH = "models/u2net.onnx";
     private Resource modelResource;
+    // Created on first use and shared; OrtSession.run is safe to call concurrently
+    private volatile OrtSession session;
+    
+    // Face detection for the ROI option runs on a copy this size at most
+    private static final int FACE_DETECTION_SIZE = 640;
+    // Head-and-shoulders region around the faces, in multiples of the face size
+    private static final double ROI_SIDE_PADDING = 1.0;
+    private static final double ROI_TOP_PADDING = 0.6;
+    private static final double ROI_BOTTOM_PADDING = 2.5;
     
-    public BackgroundRemovalService() {
+    private final FaceCenteringService faceCenteringService;
+    
+    public BackgroundRemovalService(FaceCenteringService faceCenteringService) {
+        this.faceCenteringService = faceCenteringService;
         try {
             // Create models directory if it doesn't exist
             Path modelsDir = Paths.get("models");
@@ -56,13 +75,13 @@ public class BackgroundRemovalService {
                 try {
                     modelResource = new ClassPathResource("models/u2net.onnx");
                     Files.copy(modelResource.getInputStream(), modelPath, StandardCopyOption.REPLACE_EXISTING);
-                    System.out.println("U2Net model extracted to: " + modelPath.toAbsolutePath());
+                    logger.info("U2Net model extracted to: {}", modelPath.toAbsolutePath());
                 } catch (IOException e) {
-                    System.err.println("Failed to extract model file: " + e.getMessage());
+                    logger.error("Failed to extract model file", e);
                 }
             }
         } catch (IOException e) {
-            System.err.println("Error setting up model directory: " + e.getMessage());
+            logger.error("Error setting up model directory", e);
         }
     }
     
@@ -72,32 +91,136 @@ public class BackgroundRemovalService {
         
         try {
             // Save current image to history before removing background
-            state.pushHistory(state.cloneImage(img));
+            state.pushHistory(img);
             
             // Clear future stack when making a new edit
             state.clearFuture();
             
-            // Convert to OpenCV Mat
-            Mat originalImage = bufferedImageToMat(img);
-            
-            // Remove background
-            BufferedImage resultImage = processImageWithU2Net(originalImage, img);
+            // Remove background; the full frame can use the BGR view the state keeps
+            BufferedImage resultImage;
+            if (request != null && request.isFaceRoi()) {
+                resultImage = apply(img, request);
+            } else {
+                Mat image = state.getCurrentMat();
+                try {
+                    resultImage = processImageWithU2Net(image, img);
+                } finally {
+                    image.release();
+                }
+            }
             
             // Update current image
             state.setCurrentImage(resultImage);
             
+            // Keep the cut-out so background replacement can reuse it; it shares the current image's pixels
+            state.setAlphaMatte(AlphaMatte.from(state.getCurrentImage()));
+            
             return ResponseEntity.ok("Background removed successfully.");
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.warn("Failed to remove background", e);
             return ResponseEntity.badRequest().body("Failed to remove background: " + e.getMessage());
         }
     }
     
+    /**
+     * Removes the background without touching any editor state.
+     * The result is a TYPE_INT_ARGB image with the background transparent.
+     */
+    public BufferedImage apply(BufferedImage img, BackgroundRemovalRequest request) throws Exception {
+        if (request != null && request.isFaceRoi()) {
+            Rectangle roi = findSubjectRegion(img);
+            if (roi != null) {
+                return removeWithinRegion(img, roi);
+            }
+            logger.debug("No face found for ROI background removal, using the full frame");
+        }
+        
+        // Convert to OpenCV Mat
+        Mat originalImage = ImageBuffers.toBgrMat(img);
+        try {
+            return processImageWithU2Net(originalImage, img);
+        } finally {
+            originalImage.release();
+        }
+    }
+    
+    /**
+     * Returns a padded head-and-shoulders box around the detected faces,
+     * clamped to the image, or null if there is no face.
+     */
+    private Rectangle findSubjectRegion(BufferedImage img) {
+        List<Rectangle> faces = faceCenteringService.findFaces(img, FACE_DETECTION_SIZE);
+        if (faces.isEmpty()) {
+            return null;
+        }
+        
+        // Pad the union of all faces by the size of the largest one
+        Rectangle union = new Rectangle(faces.get(0));
+        int faceWidth = 0;
+        int faceHeight = 0;
+        for (Rectangle face : faces) {
+            union = union.union(face);
+            faceWidth = Math.max(faceWidth, face.width);
+            faceHeight = Math.max(faceHeight, face.height);
+        }
+        int left = (int) (union.x - faceWidth * ROI_SIDE_PADDING);
+        int right = (int) (union.x + union.width + faceWidth * ROI_SIDE_PADDING);
+        int top = (int) (union.y - faceHeight * ROI_TOP_PADDING);
+        int bottom = (int) (union.y + union.height + faceHeight * ROI_BOTTOM_PADDING);
+        
+        Rectangle roi = new Rectangle(left, top, right - left, bottom - top)
+                .intersection(new Rectangle(0, 0, img.getWidth(), img.getHeight()));
+        logger.debug("Background removal ROI: {},{} {}x{} of {}x{}", roi.x, roi.y, roi.width, roi.height,
+                img.getWidth(), img.getHeight());
+        return roi.isEmpty() ? null : roi;
+    }
+    
+    /**
+     * Runs U2Net on the region only. Everything outside it is background.
+     */
+    private BufferedImage removeWithinRegion(BufferedImage img, Rectangle roi) throws Exception {
+        BufferedImage region = img.getSubimage(roi.x, roi.y, roi.width, roi.height);
+        BufferedImage regionResult;
+        Mat regionImage = ImageBuffers.toBgrMat(region);
+        try {
+            regionResult = processImageWithU2Net(regionImage, region);
+        } finally {
+            regionImage.release();
+        }
+        
+        int width = img.getWidth();
+        int height = img.getHeight();
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] row = new int[width];
+        int[] regionRow = new int[roi.width];
+        for (int y = 0; y < height; y++) {
+            // Keep the colours but make every pixel transparent
+            img.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                row[x] &= 0x00FFFFFF;
+            }
+            if (y >= roi.y && y < roi.y + roi.height) {
+                regionResult.getRGB(0, y - roi.y, roi.width, 1, regionRow, 0, roi.width);
+                System.arraycopy(regionRow, 0, row, roi.x, roi.width);
+            }
+            result.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return result;
+    }
+    
     private BufferedImage processImageWithU2Net(Mat originalImage, BufferedImage originalBufferedImage) throws Exception {
-        // Store original dimensions
-        int origHeight = originalImage.rows();
-        int origWidth = originalImage.cols();
+        float[] inputData = prepareInput(originalImage);
+        float[][][][] outputMask = runModel(inputData);
+        Mat resizedMask = postprocessMask(outputMask, originalImage.cols(), originalImage.rows());
         
+        // Convert to BufferedImage with alpha channel
+        return createTransparentImage(originalBufferedImage, resizedMask);
+    }
+    
+    /**
+     * Builds the normalized 1x3x320x320 U2Net input tensor from a BGR image.
+     */
+    float[] prepareInput(Mat originalImage) {
         // Resize image to 320x320 as required by U2Net
         Mat resizedImage = new Mat();
         Size modelInputSize = new Size(320, 320);
@@ -130,30 +253,39 @@ public class BackgroundRemovalService {
                 }
             }
         }
-        
+        return inputData;
+    }
+    
+    /**
+     * Runs U2Net on a prepared input tensor and returns the raw output.
+     */
+    float[][][][] runModel(float[] inputData) throws OrtException {
         // Run the ONNX model
         OrtEnvironment env = OrtEnvironment.getEnvironment();
-        OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions();
-        
-        // Create session
-        String modelPath = MODEL_PATH;
-        OrtSession session = env.createSession(modelPath, sessionOptions);
+        OrtSession session = getSession();
         
         // Prepare input tensor (NCHW format)
         long[] shape = {1, 3, 320, 320};  // Batch, Channels, Height, Width
-        OnnxTensor inputTensor = OnnxTensor.createTensor(env, FloatBuffer.wrap(inputData), shape);
-        
-        // Create input map
-        Map<String, OnnxTensor> inputMap = new HashMap<>();
-        inputMap.put("input.1", inputTensor);
-        
-        // Run inference
-        OrtSession.Result result = session.run(inputMap);
-        
-        // Get output mask
-        OnnxTensor outputTensor = (OnnxTensor) result.get(0);
-        float[][][][] outputMask = (float[][][][]) outputTensor.getValue();
-        
+        float[][][][] outputMask;
+        try (OnnxTensor inputTensor = OnnxTensor.createTensor(env, FloatBuffer.wrap(inputData), shape)) {
+            // Create input map
+            Map<String, OnnxTensor> inputMap = new HashMap<>();
+            inputMap.put("input.1", inputTensor);
+            
+            // Run inference
+            try (OrtSession.Result result = ImageMetrics.time(ImageMetrics.INFERENCE, () -> session.run(inputMap))) {
+                // Get output mask
+                OnnxTensor outputTensor = (OnnxTensor) result.get(0);
+                outputMask = (float[][][][]) outputTensor.getValue();
+            }
+        }
+        return outputMask;
+    }
+    
+    /**
+     * Turns the raw model output into an 8-bit alpha mask of the given size.
+     */
+    Mat postprocessMask(float[][][][] outputMask, int origWidth, int origHeight) {
         // Process mask to create alpha channel
         Mat mask = new Mat(320, 320, CvType.CV_32FC1);
         for (int y = 0; y < 320; y++) {
@@ -194,37 +326,29 @@ public class BackgroundRemovalService {
         
         // Convert back to 8-bit
         resizedMask.convertTo(resizedMask, CvType.CV_8UC1, 255);
-        
-        // Convert to BufferedImage with alpha channel
-        return createTransparentImage(originalBufferedImage, resizedMask);
-        
-        // Clean up
-        /* 
-        inputTensor.close();
-        result.close();
-        session.close();
-        env.close();
-        */
+        return resizedMask;
     }
     
-    private Mat bufferedImageToMat(BufferedImage image) {
-        // Convert BufferedImage to Mat
-        Mat mat = new Mat(image.getHeight(), image.getWidth(), CvType.CV_8UC3);
-        
-        // Convert to BGR first (OpenCV format)
-        BufferedImage bgr = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
-        Graphics2D g = bgr.createGraphics();
-        g.drawImage(image, 0, 0, null);
-        g.dispose();
-        
-        // Get byte array from image
-        byte[] data = ((DataBufferByte) bgr.getRaster().getDataBuffer()).getData();
-        mat.put(0, 0, data);
-        
-        return mat;
+    // Loading the model takes far longer than running it, so it is done once
+    private OrtSession getSession() throws OrtException {
+        OrtSession current = session;
+        if (current == null) {
+            synchronized (this) {
+                current = session;
+                if (current == null) {
+                    current = OrtEnvironment.getEnvironment().createSession(MODEL_PATH, new OrtSession.SessionOptions());
+                    session = current;
+                }
+            }
+        }
+        return current;
     }
     
-    private BufferedImage createTransparentImage(BufferedImage original, Mat mask) {
+    BufferedImage createTransparentImage(BufferedImage original, Mat mask) {
+        return ImageMetrics.time(ImageMetrics.COMPOSITE, () -> applyMask(original, mask));
+    }
+
+    private BufferedImage applyMask(BufferedImage original, Mat mask) {
         // Create new BufferedImage with alpha channel
         BufferedImage result = new BufferedImage(original.getWidth(), original.getHeight(), BufferedImage.TYPE_INT_ARGB);
         
@@ -232,19 +356,15 @@ public class BackgroundRemovalService {
         byte[] maskData = new byte[mask.rows() * mask.cols()];
         mask.get(0, 0, maskData);
         
-        // Copy original image pixels with alpha from mask
-        for (int y = 0; y < original.getHeight(); y++) {
-            for (int x = 0; x < original.getWidth(); x++) {
-                int index = y * original.getWidth() + x;
-                int rgb = original.getRGB(x, y);
-                
-                // Get alpha value from mask (0-255)
-                int alpha = index < maskData.length ? maskData[index] & 0xFF : 0;
-                
-                // Combine original RGB with new alpha
-                int rgba = (alpha << 24) | (rgb & 0x00FFFFFF);
-                result.setRGB(x, y, rgba);
-            }
+        // Copy original image pixels with alpha from mask, on the packed canonical pixels
+        int[] source = ImageBuffers.pixels(ImageBuffers.toCanonical(original));
+        int[] target = ImageBuffers.pixels(result);
+        for (int index = 0; index < target.length; index++) {
+            // Get alpha value from mask (0-255)
+            int alpha = index < maskData.length ? maskData[index] & 0xFF : 0;
+            
+            // Combine original RGB with new alpha
+            target[index] = (alpha << 24) | (source[index] & 0x00FFFFFF);
         }
         
         return result;
@@ -0,0 +1,164 @@
+package com.example.services;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.google.api.client.auth.oauth2.Credential;
+
+/**
+ * Keeps the stored Google credential in memory and refreshes it before it expires.
+ * The token store on disk is only read at startup and when {@link #reload()} is
+ * called explicitly (e.g. after a new OAuth login), so request handling never
+ * touches the token file or waits for a refresh round-trip.
+ */
+public class CredentialCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CredentialCache.class);
+
+    /**
+     * Loads the credential from the persistent token store.
+     */
+    @FunctionalInterface
+    public interface CredentialLoader {
+        Credential load() throws IOException;
+    }
+
+    @Value("${google.drive.token.refresh-ahead-seconds:300}")
+    private long refreshAheadSeconds;
+
+    private final CredentialLoader loader;
+    private final AtomicBoolean refreshInProgress = new AtomicBoolean(false);
+    private volatile Credential credential;
+    private volatile boolean loaded = false;
+
+    public CredentialCache(CredentialLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the cached credential, loading it from the token store on first use.
+     * 
+     * @return The cached credential, or null if the user has not authenticated
+     */
+    public Credential get() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        }
+        return credential;
+    }
+
+    /**
+     * Re-reads the credential from the token store.
+     * Call this after a new credential has been stored by the OAuth flow.
+     * 
+     * @return The freshly loaded credential, or null if none is stored
+     */
+    public synchronized Credential reload() {
+        try {
+            credential = loader.load();
+            logger.info("Loaded stored credential into cache: {}", credential != null);
+        } catch (IOException e) {
+            logger.warn("Failed to load stored credential: {}", e.getMessage());
+            credential = null;
+        }
+        loaded = true;
+        if (isExpiring(credential)) {
+            refreshAsync();
+        }
+        return credential;
+    }
+
+    /**
+     * Drops the cached credential, e.g. after the token files have been deleted.
+     */
+    public synchronized void invalidate() {
+        credential = null;
+        loaded = true;
+        logger.info("Credential cache invalidated");
+    }
+
+    /**
+     * Checks whether the cached credential can be used for API calls without
+     * blocking. A token that is about to expire but can be refreshed still
+     * counts as usable; a background refresh is started for it.
+     * 
+     * @return true if a usable credential is cached
+     */
+    public boolean isUsable() {
+        Credential current = get();
+        if (current == null || (current.getAccessToken() == null && current.getRefreshToken() == null)) {
+            return false;
+        }
+        if (isExpiring(current)) {
+            refreshAsync();
+            Long expiresIn = current.getExpiresInSeconds();
+            return current.getRefreshToken() != null || (expiresIn != null && expiresIn > 0);
+        }
+        return true;
+    }
+
+    /**
+     * Periodically renews the access token ahead of its expiry.
+     * The refreshed token is persisted through the credential's refresh listener.
+     */
+    @Scheduled(fixedDelayString = "${google.drive.token.refresh-check-ms:30000}")
+    public void refreshIfExpiring() {
+        Credential current = credential;
+        if (isExpiring(current)) {
+            refresh(current);
+        }
+    }
+
+    // A token that cannot be refreshed must not keep reporting Drive as available
+    private synchronized void discard(Credential failed) {
+        if (credential == failed) {
+            credential = null;
+            loaded = true;
+            logger.info("Dropped cached credential after failed refresh");
+        }
+    }
+
+    private boolean isExpiring(Credential current) {
+        if (current == null || current.getRefreshToken() == null) {
+            return false;
+        }
+        Long expiresIn = current.getExpiresInSeconds();
+        return current.getAccessToken() == null || (expiresIn != null && expiresIn <= refreshAheadSeconds);
+    }
+
+    private void refreshAsync() {
+        Credential current = credential;
+        CompletableFuture.runAsync(() -> refresh(current));
+    }
+
+    private void refresh(Credential current) {
+        if (current == null || !refreshInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            logger.info("Proactively refreshing Google Drive token (expires in {} seconds)",
+                    current.getExpiresInSeconds());
+            if (current.refreshToken()) {
+                logger.info("Token refreshed, new expiration: {} seconds", current.getExpiresInSeconds());
+            } else {
+                logger.warn("Failed to refresh Google Drive token");
+                discard(current);
+            }
+        } catch (IOException e) {
+            logger.warn("Error refreshing Google Drive token: {}", e.getMessage());
+            discard(current);
+        } finally {
+            refreshInProgress.set(false);
+        }
+    }
+}
@@ -4,7 +4,7 @@ import com.example.dto.CropRequest;
 import com.example.model.ImageState;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 @Service
@@ -19,39 +19,50 @@ public class CropImageService {
         }
         
         // Save current image to history before cropping
-        state.pushHistory(cloneImage(img));
+        state.pushHistory(img);
         
         // Clear future stack when making a new edit
         state.clearFuture();
 
+        try {
+            state.setCurrentImage(apply(img, crop));
+            return ResponseEntity.ok("Image cropped successfully.");
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to crop image: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Crops the image without touching any editor state.
+     * The crop rectangle is clamped to the image bounds.
+     */
+    public BufferedImage apply(BufferedImage img, CropRequest crop) {
+        if (crop.getWidth() <= 0 || crop.getHeight() <= 0) {
+            throw new IllegalArgumentException("Invalid crop dimensions: width and height must be positive");
+        }
+
+        Rectangle bounds = bounds(img.getWidth(), img.getHeight(), crop);
+        return img.getSubimage(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    /**
+     * Returns the crop rectangle clamped to an image of the given size.
+     */
+    public Rectangle bounds(int imageWidth, int imageHeight, CropRequest crop) {
         // Ensure coordinates and dimensions are valid
         int x = Math.max(0, crop.getX());
         int y = Math.max(0, crop.getY());
-        int width = Math.min(img.getWidth() - x, Math.max(1, crop.getWidth()));
-        int height = Math.min(img.getHeight() - y, Math.max(1, crop.getHeight()));
+        int width = Math.min(imageWidth - x, Math.max(1, crop.getWidth()));
+        int height = Math.min(imageHeight - y, Math.max(1, crop.getHeight()));
         
         // Additional safety check to prevent RasterFormatException
-        if (x + width > img.getWidth()) {
-            width = img.getWidth() - x;
+        if (x + width > imageWidth) {
+            width = imageWidth - x;
         }
-        if (y + height > img.getHeight()) {
-            height = img.getHeight() - y;
+        if (y + height > imageHeight) {
+            height = imageHeight - y;
         }
         
-        try {
-            BufferedImage cropped = img.getSubimage(x, y, width, height);
-            state.setCurrentImage(cropped);
-            return ResponseEntity.ok("Image cropped successfully.");
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body("Failed to crop image: " + e.getMessage());
-        }
-    }
-
-    private BufferedImage cloneImage(BufferedImage img) {
-        BufferedImage copy = new BufferedImage(img.getWidth(), img.getHeight(), img.getType());
-        Graphics g = copy.getGraphics();
-        g.drawImage(img, 0, 0, null);
-        g.dispose();
-        return copy;
+        return new Rectangle(x, y, width, height);
     }
 }
\ No newline at end of file
@@ -0,0 +1,272 @@
+package com.example.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.example.dto.BatchImportRequest;
+import com.example.model.BatchSlot;
+import com.example.model.BatchWorkspace;
+import com.example.model.DriveFile;
+import com.example.model.IngestedImage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Imports many Google Drive images into a session's batch workspace at once.
+ * Downloads run with per-file retry on a fixed pool owned by this service,
+ * and each file is decoded at working resolution, with the upload limits of
+ * {@link ImageIngestService}, into its pre-allocated workspace slot.
+ * Only one import runs at a time; a second one is rejected until the first
+ * has finished, and imports of more than the configured number of files are
+ * rejected before anything is downloaded.
+ */
+@Service
+public class DriveBatchImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriveBatchImportService.class);
+
+    @Value("${drive.import.concurrency:8}")
+    private int concurrency;
+
+    @Value("${drive.import.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${drive.import.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    @Value("${drive.import.max-files:200}")
+    private int maxFiles;
+
+    private final StorageProvider storage;
+    private final ImageIngestService imageIngestService;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private ThreadPoolTaskExecutor executor;
+
+    public DriveBatchImportService(StorageProvider storage, ImageIngestService imageIngestService) {
+        this.storage = storage;
+        this.imageIngestService = imageIngestService;
+    }
+
+    @PostConstruct
+    public void init() {
+        int workers = Math.max(1, concurrency);
+        executor = new ThreadPoolTaskExecutor();
+        // One thread drives the import, the others download; nothing is ever queued
+        executor.setCorePoolSize(workers + 1);
+        executor.setMaxPoolSize(workers + 1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("drive-import-");
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * True while an import is running.
+     */
+    public boolean isImporting() {
+        return running.get();
+    }
+
+    /**
+     * Starts an import on the import pool and returns at once.
+     *
+     * @param workspace Workspace to fill, replacing what it held
+     * @param request   Folder ID or explicit list of file IDs to import
+     * @param listener  Receives progress events; may be called concurrently
+     * @return Completes with the import summary, or exceptionally if the import failed
+     * @throws IllegalArgumentException If the request names no files or too many
+     * @throws IllegalStateException If another import is still running
+     */
+    public CompletableFuture<Map<String, Object>> startImport(BatchWorkspace workspace, BatchImportRequest request,
+            Consumer<Map<String, Object>> listener) {
+        if (request.getFileIds() != null && !request.getFileIds().isEmpty()) {
+            checkFileCount(request.getFileIds().size());
+        } else if (request.getFolderId() == null || request.getFolderId().isEmpty()) {
+            throw new IllegalArgumentException("Either folderId or fileIds must be provided");
+        }
+        acquire();
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(runImport(workspace, request, listener));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            running.set(false);
+            throw new IllegalStateException("Batch import pool is busy", e);
+        }
+        return result;
+    }
+
+    private void acquire() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A batch import is already running");
+        }
+    }
+
+    private Map<String, Object> runImport(BatchWorkspace workspace, BatchImportRequest request,
+            Consumer<Map<String, Object>> listener) throws IOException {
+        long start = System.currentTimeMillis();
+        List<DriveFile> files = resolveFiles(request);
+        // Folders are only counted once listed, still before any slot is allocated
+        checkFileCount(files.size());
+        List<String> fileIds = new ArrayList<>(files.size());
+        for (DriveFile file : files) {
+            fileIds.add(file.getId());
+        }
+        List<BatchSlot> slots = workspace.allocate(fileIds);
+        for (int i = 0; i < slots.size(); i++) {
+            slots.get(i).setName(files.get(i).getName());
+            slots.get(i).setMimeType(files.get(i).getMimeType());
+        }
+        int total = slots.size();
+        logger.info("Starting batch import of {} files with concurrency {}", total, concurrency);
+
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        listener.accept(event("started", null, 0, total));
+
+        if (total > 0) {
+            // Each worker pulls the next slot until none are left, so at most
+            // `concurrency` tasks are ever handed to the pool
+            AtomicInteger next = new AtomicInteger();
+            int workers = Math.min(Math.max(1, concurrency), total);
+            List<CompletableFuture<Void>> futures = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < total) {
+                        BatchSlot slot = slots.get(index);
+                        if (importSlot(slot, listener, completed.get(), total)) {
+                            completed.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                        listener.accept(event(slot.getStatus() == BatchSlot.Status.READY ? "file-ready" : "file-failed",
+                                slot, completed.get() + failed.get(), total));
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        }
+
+        Map<String, Object> summary = event("completed", null, total, total);
+        summary.put("succeeded", completed.get());
+        summary.put("failed", failed.get());
+        summary.put("elapsedMs", System.currentTimeMillis() - start);
+        logger.info("Batch import finished: {} succeeded, {} failed in {} ms",
+                completed.get(), failed.get(), summary.get("elapsedMs"));
+        listener.accept(summary);
+        return summary;
+    }
+
+    private List<DriveFile> resolveFiles(BatchImportRequest request) throws IOException {
+        if (request.getFileIds() != null && !request.getFileIds().isEmpty()) {
+            // One batched metadata call fills in names for the whole list
+            Map<String, DriveFile> details = storage.getDetails(request.getFileIds());
+            List<DriveFile> files = new ArrayList<>(request.getFileIds().size());
+            for (String fileId : request.getFileIds()) {
+                DriveFile file = details.get(fileId);
+                if (file == null) {
+                    file = new DriveFile();
+                    file.setId(fileId);
+                }
+                files.add(file);
+            }
+            return files;
+        }
+        return storage.listImages(request.getFolderId());
+    }
+
+    private void checkFileCount(int count) {
+        if (count > maxFiles) {
+            throw new IllegalArgumentException("Cannot import " + count + " files at once, the limit is " + maxFiles);
+        }
+    }
+
+    private boolean importSlot(BatchSlot slot, Consumer<Map<String, Object>> listener, int done, int total) {
+        slot.setStatus(BatchSlot.Status.DOWNLOADING);
+        byte[] content = download(slot, listener, done, total);
+        if (content == null) {
+            slot.setStatus(BatchSlot.Status.FAILED);
+            return false;
+        }
+        try {
+            IngestedImage decoded = imageIngestService.decode(new ByteArrayInputStream(content));
+            // Slots are never reset, so they keep no separate original
+            slot.getState().setCurrentImage(decoded.getImage());
+            slot.setStatus(BatchSlot.Status.READY);
+            return true;
+        } catch (IOException e) {
+            // Not an image we can decode, or too large - retrying will not help
+            slot.setError(e.getMessage());
+            slot.setStatus(BatchSlot.Status.FAILED);
+            return false;
+        }
+    }
+
+    // Downloads with retries; null once every attempt has failed
+    private byte[] download(BatchSlot slot, Consumer<Map<String, Object>> listener, int done, int total) {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            slot.setAttempts(attempt);
+            try {
+                return storage.downloadFile(slot.getFileId());
+            } catch (IOException e) {
+                logger.warn("Attempt {}/{} failed for file {}: {}", attempt, maxAttempts, slot.getFileId(), e.getMessage());
+                slot.setError(e.getMessage());
+                if (attempt < maxAttempts) {
+                    listener.accept(event("file-retry", slot, done, total));
+                    try {
+                        Thread.sleep(retryBackoffMs * (1L << (attempt - 1)));
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Object> event(String type, BatchSlot slot, int done, int total) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", type);
+        event.put("done", done);
+        event.put("total", total);
+        if (slot != null) {
+            event.put("slot", slot.getIndex());
+            event.put("fileId", slot.getFileId());
+            event.put("name", slot.getName());
+            event.put("attempts", slot.getAttempts());
+            if (slot.getStatus() == BatchSlot.Status.FAILED || "file-retry".equals(type)) {
+                event.put("error", slot.getError());
+            }
+        }
+        return event;
+    }
+}
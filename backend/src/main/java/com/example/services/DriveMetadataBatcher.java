@@ -0,0 +1,214 @@
+package com.example.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+
+/**
+ * Coalesces Google Drive metadata lookups into multipart batch requests.
+ * A lookup made while nothing else is queued or in flight is sent at once.
+ * Lookups that arrive while other requests are outstanding are queued for
+ * a short window and sent together. Explicit lists of IDs are split into
+ * batches of at most {@value #MAX_BATCH_SIZE} (the Drive API limit per batch).
+ * Batches are sent on a small pool, so a slow one does not hold up the next.
+ */
+public class DriveMetadataBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriveMetadataBatcher.class);
+
+    // Union of the fields needed by every metadata consumer, so one lookup serves them all
+    static final String METADATA_FIELDS =
+            "id, name, mimeType, thumbnailLink, webContentLink, webViewLink, parents, size, modifiedTime";
+    static final int MAX_BATCH_SIZE = 100;
+    private static final int MAX_CONCURRENT_BATCHES = 8;
+
+    private final Supplier<Drive> driveSupplier;
+    private final long windowMs;
+    // Only fires the window timers; the batches themselves run on the sender pool
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor senders;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private Map<String, CompletableFuture<File>> pending = new LinkedHashMap<>();
+
+    public DriveMetadataBatcher(Supplier<Drive> driveSupplier, long windowMs) {
+        this.driveSupplier = driveSupplier;
+        this.windowMs = windowMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "drive-metadata-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(MAX_CONCURRENT_BATCHES, MAX_CONCURRENT_BATCHES, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "drive-metadata-sender-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.senders.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Requests a metadata lookup. If nothing else is queued or in flight the
+     * lookup is sent at once; otherwise it is sent together with any other
+     * lookups made within the batching window.
+     * 
+     * @param fileId ID of the file to look up
+     * @return Future completed with the file metadata
+     */
+    public CompletableFuture<File> get(String fileId) {
+        Map<String, CompletableFuture<File>> toSend = null;
+        CompletableFuture<File> future;
+        synchronized (this) {
+            future = pending.get(fileId);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            if (pending.isEmpty() && inFlight.get() == 0) {
+                // Idle: waiting for company would only add latency
+                toSend = new LinkedHashMap<>();
+                toSend.put(fileId, future);
+            } else {
+                pending.put(fileId, future);
+                if (pending.size() == 1) {
+                    scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+                } else if (pending.size() >= MAX_BATCH_SIZE) {
+                    toSend = pending;
+                    pending = new LinkedHashMap<>();
+                }
+            }
+            if (toSend != null) {
+                inFlight.incrementAndGet();
+            }
+        }
+        if (toSend != null) {
+            send(toSend);
+        }
+        return future;
+    }
+
+    /**
+     * Looks up metadata for a list of files using as few batch calls as possible.
+     * Files that could not be retrieved are omitted from the result.
+     * 
+     * @param fileIds IDs of the files to look up
+     * @return Map of file ID to metadata, in request order
+     */
+    public Map<String, File> getAll(Collection<String> fileIds) {
+        Map<String, CompletableFuture<File>> futures = new LinkedHashMap<>();
+        for (String fileId : new LinkedHashSet<>(fileIds)) {
+            futures.put(fileId, new CompletableFuture<>());
+        }
+        List<String> ids = new ArrayList<>(futures.keySet());
+        for (int from = 0; from < ids.size(); from += MAX_BATCH_SIZE) {
+            Map<String, CompletableFuture<File>> chunk = new LinkedHashMap<>();
+            for (String fileId : ids.subList(from, Math.min(ids.size(), from + MAX_BATCH_SIZE))) {
+                chunk.put(fileId, futures.get(fileId));
+            }
+            execute(chunk);
+        }
+
+        Map<String, File> result = new LinkedHashMap<>();
+        futures.forEach((fileId, future) -> {
+            File file = future.getNow(null);
+            if (file != null) {
+                result.put(fileId, file);
+            }
+        });
+        return result;
+    }
+
+    private void flush() {
+        Map<String, CompletableFuture<File>> toFlush;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            toFlush = pending;
+            pending = new LinkedHashMap<>();
+            inFlight.incrementAndGet();
+        }
+        send(toFlush);
+    }
+
+    // The caller has already counted the batch as in flight
+    private void send(Map<String, CompletableFuture<File>> requests) {
+        senders.execute(() -> {
+            try {
+                execute(requests);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    private void execute(Map<String, CompletableFuture<File>> requests) {
+        Drive drive = driveSupplier.get();
+        try {
+            // A single lookup gains nothing from the multipart envelope
+            if (requests.size() == 1) {
+                Map.Entry<String, CompletableFuture<File>> entry = requests.entrySet().iterator().next();
+                entry.getValue().complete(drive.files().get(entry.getKey()).setFields(METADATA_FIELDS).execute());
+                return;
+            }
+
+            BatchRequest batch = drive.batch();
+            for (Map.Entry<String, CompletableFuture<File>> entry : requests.entrySet()) {
+                CompletableFuture<File> future = entry.getValue();
+                drive.files().get(entry.getKey())
+                        .setFields(METADATA_FIELDS)
+                        .queue(batch, new JsonBatchCallback<File>() {
+                            @Override
+                            public void onSuccess(File file, HttpHeaders responseHeaders) {
+                                future.complete(file);
+                            }
+
+                            @Override
+                            public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+                                future.completeExceptionally(new IOException(
+                                        "Error getting metadata for " + entry.getKey() + ": " + error.getMessage()));
+                            }
+                        });
+            }
+            logger.info("Executing batched metadata request for {} files", requests.size());
+            batch.execute();
+
+            // Guard against parts missing from the multipart response
+            requests.forEach((fileId, future) -> future.completeExceptionally(
+                    new IOException("No metadata returned for " + fileId)));
+        } catch (Exception e) {
+            logger.error("Batched metadata request failed for {} files", requests.size(), e);
+            IOException failure = e instanceof IOException ? (IOException) e
+                    : new IOException("Batched metadata request failed: " + e.getMessage(), e);
+            requests.values().forEach(future -> future.completeExceptionally(failure));
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        senders.shutdown();
+    }
+}
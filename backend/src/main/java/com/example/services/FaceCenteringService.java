@@ -1,6 +1,8 @@
 package com.example.services;
 
 import com.example.dto.FaceCenteringRequest;
+import com.example.metrics.ImageMetrics;
+import com.example.model.ImageBuffers;
 import com.example.model.ImageState;
 import org.springframework.stereotype.Service;
 import org.springframework.http.ResponseEntity;
@@ -9,24 +11,24 @@ import org.springframework.core.io.Resource;
 
 import nu.pattern.OpenCV;
 import org.opencv.core.*;
-import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 import org.opencv.objdetect.CascadeClassifier;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import javax.imageio.ImageIO;
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 @Service
 public class FaceCenteringService {
@@ -147,38 +149,25 @@ public class FaceCenteringService {
         
         try {
             // Check if face detector is properly initialized
-            if (faceDetector == null || faceDetector.empty()) {
-                System.err.println("Face detector is not properly initialized. Trying to reinitialize...");
-                
-                // Try to reinitialize
-                Path cascadePath = Paths.get("cascades/haarcascade_frontalface_default.xml");
-                if (Files.exists(cascadePath)) {
-                    faceDetector = new CascadeClassifier(cascadePath.toAbsolutePath().toString());
-                    
-                    if (faceDetector.empty()) {
-                        String error = "Failed to reinitialize face detector. Cascade file may be corrupted.";
-                        System.err.println(error);
-                        return ResponseEntity.badRequest().body(error);
-                    }
-                } else {
-                    String error = "Cascade file not found at: " + cascadePath.toAbsolutePath();
-                    System.err.println(error);
-                    return ResponseEntity.badRequest().body(error);
-                }
+            String detectorError = ensureFaceDetector();
+            if (detectorError != null) {
+                return ResponseEntity.badRequest().body(detectorError);
             }
             
             // Save current image to history before centering
-            state.pushHistory(state.cloneImage(img));
+            state.pushHistory(img);
             
             // Clear future stack when making a new edit
             state.clearFuture();
             
-            // Convert BufferedImage to OpenCV Mat
-            Mat image = bufferedImageToMat(img);
-            
-            // Apply face centering
-            System.out.println("Starting face centering process for image: " + img.getWidth() + "x" + img.getHeight());
-            BufferedImage centeredImage = centerPortraitOnFaces(image, img.getWidth(), img.getHeight());
+            // Apply face centering on a copy of the BGR view the state keeps for the current image
+            Mat image = state.getCurrentMat();
+            BufferedImage centeredImage;
+            try {
+                centeredImage = centerPortraitOnFaces(image, img.getWidth(), img.getHeight());
+            } finally {
+                image.release();
+            }
             
             // Update the current image
             state.setCurrentImage(centeredImage);
@@ -191,7 +180,110 @@ public class FaceCenteringService {
         }
     }
     
-    private BufferedImage centerPortraitOnFaces(Mat image, int targetWidth, int targetHeight) throws IOException {
+    /**
+     * Centres the image horizontally on the detected faces without touching
+     * any editor state.
+     */
+    public BufferedImage apply(BufferedImage img, FaceCenteringRequest request) throws IOException {
+        String detectorError = ensureFaceDetector();
+        if (detectorError != null) {
+            throw new IllegalStateException(detectorError);
+        }
+        
+        // Convert BufferedImage to OpenCV Mat
+        Mat image = ImageBuffers.toBgrMat(img);
+        
+        System.out.println("Starting face centering process for image: " + img.getWidth() + "x" + img.getHeight());
+        try {
+            return centerPortraitOnFaces(image, img.getWidth(), img.getHeight());
+        } finally {
+            image.release();
+        }
+    }
+    
+    // Returns an error message if the face detector cannot be (re)initialized
+    private synchronized String ensureFaceDetector() {
+        if (faceDetector != null && !faceDetector.empty()) {
+            return null;
+        }
+        System.err.println("Face detector is not properly initialized. Trying to reinitialize...");
+        
+        // Try to reinitialize
+        Path cascadePath = Paths.get("cascades/haarcascade_frontalface_default.xml");
+        if (Files.exists(cascadePath)) {
+            faceDetector = new CascadeClassifier(cascadePath.toAbsolutePath().toString());
+            
+            if (faceDetector.empty()) {
+                String error = "Failed to reinitialize face detector. Cascade file may be corrupted.";
+                System.err.println(error);
+                return error;
+            }
+            return null;
+        }
+        String error = "Cascade file not found at: " + cascadePath.toAbsolutePath();
+        System.err.println(error);
+        return error;
+    }
+    
+    /**
+     * Returns how far the image has to move horizontally to centre the
+     * detected faces, or 0 if no face is found. Nothing is modified.
+     */
+    public int findCenteringOffset(BufferedImage img) {
+        String detectorError = ensureFaceDetector();
+        if (detectorError != null) {
+            throw new IllegalStateException(detectorError);
+        }
+        Mat image = ImageBuffers.toBgrMat(img);
+        try {
+            Rect[] faces = detectFaces(image);
+            return faces.length == 0 ? 0 : horizontalOffset(faces, image.width(), image.height());
+        } finally {
+            image.release();
+        }
+    }
+    
+    /**
+     * Detects faces on a copy scaled down to at most maxSize pixels on the
+     * long side and returns their bounds in the coordinates of the given image.
+     */
+    public List<Rectangle> findFaces(BufferedImage img, int maxSize) {
+        String detectorError = ensureFaceDetector();
+        if (detectorError != null) {
+            throw new IllegalStateException(detectorError);
+        }
+        double scale = Math.min(1.0, (double) maxSize / Math.max(img.getWidth(), img.getHeight()));
+        BufferedImage small = img;
+        if (scale < 1.0) {
+            small = new BufferedImage(Math.max(1, (int) Math.round(img.getWidth() * scale)),
+                    Math.max(1, (int) Math.round(img.getHeight() * scale)), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = small.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(img, 0, 0, small.getWidth(), small.getHeight(), null);
+            g.dispose();
+        }
+        
+        Rect[] detected;
+        Mat image = ImageBuffers.toBgrMat(small);
+        try {
+            detected = detectFaces(image);
+        } finally {
+            image.release();
+        }
+        List<Rectangle> faces = new ArrayList<>();
+        for (Rect face : detected) {
+            faces.add(new Rectangle((int) (face.x / scale), (int) (face.y / scale),
+                    (int) Math.ceil(face.width / scale), (int) Math.ceil(face.height / scale)));
+        }
+        return faces;
+    }
+    
+    // CascadeClassifier keeps per-call scratch state, so detections are serialized
+    private synchronized Rect[] detectFaces(Mat image) {
+        return ImageMetrics.time(ImageMetrics.FACE_DETECTION, () -> runCascades(image));
+    }
+
+    private Rect[] runCascades(Mat image) {
         // Convert to grayscale for face detection
         Mat grayImage = new Mat();
         Imgproc.cvtColor(image, grayImage, Imgproc.COLOR_BGR2GRAY);
@@ -274,12 +366,10 @@ public class FaceCenteringService {
             }
         }
         
-        if (faces.length == 0) {
-            System.out.println("No faces detected. Centering the entire image instead.");
-            // Fall back to centering the entire image if no faces are detected
-            return centerEntireImage(image, targetWidth, targetHeight);
-        }
-        
+        return faces;
+    }
+    
+    private int horizontalOffset(Rect[] faces, int width, int height) {
         // Calculate the center of all faces
         int faceCenterX = 0;
         int faceCenterY = 0;
@@ -330,8 +420,8 @@ public class FaceCenteringService {
         }
         
         // Calculate the image center
-        int imageCenterX = image.width() / 2;
-        int imageCenterY = image.height() / 2;
+        int imageCenterX = width / 2;
+        int imageCenterY = height / 2;
         
         // Calculate the offset to move the face center to the image center
         // Only adjust horizontally, keep vertical position the same
@@ -342,6 +432,21 @@ public class FaceCenteringService {
         System.out.println("Face center: (" + faceCenterX + "," + faceCenterY + ")");
         System.out.println("Horizontal offset to center face: " + offsetX);
         
+        return offsetX;
+    }
+    
+    private BufferedImage centerPortraitOnFaces(Mat image, int targetWidth, int targetHeight) throws IOException {
+        Rect[] faces = detectFaces(image);
+        
+        if (faces.length == 0) {
+            System.out.println("No faces detected. Centering the entire image instead.");
+            // Fall back to centering the entire image if no faces are detected
+            return centerEntireImage(image, targetWidth, targetHeight);
+        }
+        
+        int offsetX = horizontalOffset(faces, image.width(), image.height());
+        int offsetY = 0; // Set to 0 to keep vertical position unchanged
+        
         // Create a transformation matrix for translation
         Mat translationMatrix = new Mat(2, 3, CvType.CV_32F);
         translationMatrix.put(0, 0, 1, 0, offsetX, 0, 1, offsetY);
@@ -353,34 +458,24 @@ public class FaceCenteringService {
         System.out.println("Horizontal centering applied successfully");
         
         // Convert the OpenCV Mat to a BufferedImage
-        BufferedImage bufferedImage = matToBufferedImage(centeredImage);
-        
-        // Create a new blank image with the target dimensions
-        BufferedImage outputImage = new BufferedImage(
-            targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
-        
-        // Create graphics context and fill with white background
-        Graphics2D g2d = outputImage.createGraphics();
-        g2d.setColor(Color.WHITE);
-        g2d.fillRect(0, 0, targetWidth, targetHeight);
-        
-        // Calculate position to center the image
-        int x = (targetWidth - bufferedImage.getWidth()) / 2;
-        int y = (targetHeight - bufferedImage.getHeight()) / 2;
-        
-        // Draw the centered image
-        g2d.drawImage(bufferedImage, x, y, null);
-        g2d.dispose();
+        BufferedImage outputImage = onWhiteCanvas(ImageBuffers.fromMat(centeredImage), targetWidth, targetHeight);
         
         System.out.println("Face centering (horizontal only) completed");
         return outputImage;
     }
     
     private BufferedImage centerEntireImage(Mat image, int targetWidth, int targetHeight) throws IOException {
-        BufferedImage inputImage = matToBufferedImage(image);
+        return onWhiteCanvas(ImageBuffers.fromMat(image), targetWidth, targetHeight);
+    }
+    
+    // Centres the image on a white canvas of the target size; the Mat conversion is already opaque
+    private BufferedImage onWhiteCanvas(BufferedImage inputImage, int targetWidth, int targetHeight) {
+        if (inputImage.getWidth() == targetWidth && inputImage.getHeight() == targetHeight) {
+            return inputImage;
+        }
         
         BufferedImage outputImage = new BufferedImage(
-            targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+            targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB);
         
         Graphics2D g2d = outputImage.createGraphics();
         g2d.setColor(Color.WHITE);
@@ -395,31 +490,6 @@ public class FaceCenteringService {
         return outputImage;
     }
     
-    private Mat bufferedImageToMat(BufferedImage image) {
-        // Convert BufferedImage to Mat
-        Mat mat = new Mat(image.getHeight(), image.getWidth(), CvType.CV_8UC3);
-        
-        // Convert to BGR first (OpenCV format)
-        BufferedImage bgr = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
-        Graphics2D g = bgr.createGraphics();
-        g.drawImage(image, 0, 0, null);
-        g.dispose();
-        
-        // Get byte array from image
-        byte[] data = ((DataBufferByte) bgr.getRaster().getDataBuffer()).getData();
-        mat.put(0, 0, data);
-        
-        return mat;
-    }
-    
-    private BufferedImage matToBufferedImage(Mat mat) throws IOException {
-        MatOfByte matOfByte = new MatOfByte();
-        Imgcodecs.imencode(".jpg", mat, matOfByte);
-        byte[] byteArray = matOfByte.toArray();
-        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(byteArray);
-        return ImageIO.read(byteArrayInputStream);
-    }
-
     public ResponseEntity<String> detectFaceOnly(FaceCenteringRequest request, ImageState state) {
         BufferedImage img = state.getCurrentImage();
         if (img == null) return ResponseEntity.badRequest().body("No image loaded.");
@@ -431,37 +501,48 @@ public class FaceCenteringService {
                 return ResponseEntity.badRequest().body("Face detector is not properly initialized.");
             }
             
-            // Convert BufferedImage to OpenCV Mat
-            Mat image = bufferedImageToMat(img);
-            
-            // Convert to grayscale for face detection
+            // BGR copy of the current image, kept by the state
+            Mat image = state.getCurrentMat();
             Mat grayImage = new Mat();
-            Imgproc.cvtColor(image, grayImage, Imgproc.COLOR_BGR2GRAY);
-            
-            // Improve contrast for better detection
-            Imgproc.equalizeHist(grayImage, grayImage);
-            
-            System.out.println("Detecting faces in image for visualization...");
-            
-            // Detect faces with improved parameters
             MatOfRect faceDetections = new MatOfRect();
-            // Parameters: image, faces, scaleFactor, minNeighbors, flags, minSize, maxSize
-            // Adjust parameters for better detection
-            double scaleFactor = 1.1;
-            int minNeighbors = 3;
-            Size minSize = new Size(image.width() * 0.1, image.height() * 0.1); // Min 10% of image
-            
-            faceDetector.detectMultiScale(
-                grayImage,
-                faceDetections,
-                scaleFactor,
-                minNeighbors,
-                0,  // flags
-                minSize,
-                new Size() // max size (empty = no limit)
-            );
-            
-            Rect[] faces = faceDetections.toArray();
+            Rect[] faces;
+            try {
+                // Convert to grayscale for face detection
+                Imgproc.cvtColor(image, grayImage, Imgproc.COLOR_BGR2GRAY);
+                
+                // Improve contrast for better detection
+                Imgproc.equalizeHist(grayImage, grayImage);
+                
+                System.out.println("Detecting faces in image for visualization...");
+                
+                // Detect faces with improved parameters
+                // Parameters: image, faces, scaleFactor, minNeighbors, flags, minSize, maxSize
+                // Adjust parameters for better detection
+                double scaleFactor = 1.1;
+                int minNeighbors = 3;
+                Size minSize = new Size(image.width() * 0.1, image.height() * 0.1); // Min 10% of image
+                
+                synchronized (this) {
+                    ImageMetrics.time(ImageMetrics.FACE_DETECTION, () -> {
+                        faceDetector.detectMultiScale(
+                            grayImage,
+                            faceDetections,
+                            scaleFactor,
+                            minNeighbors,
+                            0,  // flags
+                            minSize,
+                            new Size() // max size (empty = no limit)
+                        );
+                        return faceDetections;
+                    });
+                }
+                
+                faces = faceDetections.toArray();
+            } finally {
+                image.release();
+                grayImage.release();
+                faceDetections.release();
+            }
             
             System.out.println("Detected " + faces.length + " faces in the image");
             
@@ -500,8 +581,8 @@ public class FaceCenteringService {
             faceCenterY /= faces.length;
             
             // Calculate the image center
-            int imageCenterX = image.width() / 2;
-            int imageCenterY = image.height() / 2;
+            int imageCenterX = img.getWidth() / 2;
+            int imageCenterY = img.getHeight() / 2;
             
             // Draw the face center
             g2d.setColor(Color.RED);
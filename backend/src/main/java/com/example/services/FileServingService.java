@@ -0,0 +1,183 @@
+package com.example.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Moves image files between disk and HTTP without copying them through the heap.
+ * <p>
+ * Downloads honour conditional requests (ETag and Last-Modified) and single
+ * byte ranges. The body is handed to Tomcat's sendfile when the connector
+ * supports it, so the kernel copies straight from the page cache to the
+ * socket; otherwise it goes through FileChannel.transferTo. Uploads are
+ * written through a direct buffer into a temp file next to the target and
+ * renamed into place, so readers never see a partial file.
+ */
+@Service
+public class FileServingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileServingService.class);
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Writes the file as the response, or 304, 206 or 416 as the request asks.
+     *
+     * @param contentType Type to send; probed from the file if null
+     */
+    public void serve(Path file, MediaType contentType, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+
+        // Sets ETag and Last-Modified, and 304 if the client copy is current
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && rangeApplies(request, etag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // Multipart range responses are not worth it for images; those get the whole file
+            if (ranges.size() == 1) {
+                if (length == 0 || !satisfiable(ranges.get(0), length)) {
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return;
+                }
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        if (contentType == null) {
+            String probed = Files.probeContentType(file);
+            contentType = probed != null ? MediaType.parseMediaType(probed) : MediaType.APPLICATION_OCTET_STREAM;
+        }
+        response.setContentType(contentType.toString());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * Writes the stream to the target file via a temp file in the same
+     * directory and an atomic rename.
+     *
+     * @return Number of bytes written
+     */
+    public long store(InputStream data, Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        // Not createTempFile, whose owner-only permissions would carry over to the target
+        Path temp = directory.resolve(".upload-" + UUID.randomUUID() + ".tmp");
+        try {
+            long written = 0;
+            try (ReadableByteChannel in = Channels.newChannel(data);
+                    FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE,
+                            StandardOpenOption.CREATE_NEW)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+                while (in.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        written += out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            logger.debug("Stored {} bytes at {}", written, target);
+            return written;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // If-Range: only serve the range if the client's copy is still the current one
+    private static boolean rangeApplies(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long since = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return since >= 0 && lastModified / 1000 <= since / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // HttpRange clamps the end but accepts a start beyond the file
+    private static boolean satisfiable(HttpRange range, long length) {
+        try {
+            long start = range.getRangeStart(length);
+            return start >= 0 && start < length && start <= range.getRangeEnd(length);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
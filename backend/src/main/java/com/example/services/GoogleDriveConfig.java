@@ -14,6 +14,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.example.metrics.DriveRequestMetrics;
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
@@ -58,6 +59,48 @@ public class GoogleDriveConfig {
      */
     @Bean
     public GoogleAuthorizationCodeFlow authorizationCodeFlow() throws IOException {
+        return buildAuthorizationCodeFlow();
+    }
+
+    /**
+     * Creates the in-memory credential cache used on the request path.
+     * 
+     * @return CredentialCache backed by the token store on disk
+     */
+    @Bean
+    public CredentialCache credentialCache() {
+        return new CredentialCache(this::loadCredentialFromStore);
+    }
+
+    /**
+     * Returns the stored credential from the in-memory cache.
+     * This does not read the token store; see {@link CredentialCache#reload()}.
+     *
+     * @return An authorized Credential object, or null if not authenticated.
+     * @throws IOException If there's an error accessing stored credentials
+     */
+    public Credential getStoredCredential() throws IOException {
+        return credentialCache().get();
+    }
+
+    /**
+     * Reads the credential from the token store on disk.
+     * A fresh flow is built so that tokens written by other flows (e.g. the
+     * OAuth callback) are picked up; only the credential cache should call this.
+     *
+     * @return The stored Credential, or null if not authenticated.
+     * @throws IOException If there's an error accessing stored credentials
+     */
+    Credential loadCredentialFromStore() throws IOException {
+        try {
+            return buildAuthorizationCodeFlow().loadCredential(USER_ID);
+        } catch (Exception e) {
+            logger.warn("Failed to load stored credential: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private GoogleAuthorizationCodeFlow buildAuthorizationCodeFlow() throws IOException {
         // Load client secrets from classpath
         InputStream in = getClass().getResourceAsStream("/credential.json");
         if (in == null) {
@@ -84,24 +127,6 @@ public class GoogleDriveConfig {
                 .build();
     }
 
-    /**
-     * Creates an authorized Credential object.
-     * This uses the stored credential if available, otherwise returns null
-     * indicating authentication is needed.
-     *
-     * @return An authorized Credential object, or null if not authenticated.
-     * @throws IOException If there's an error accessing stored credentials
-     */
-    public Credential getStoredCredential() throws IOException {
-        // Try to get stored credential for the user
-        try {
-            return authorizationCodeFlow().loadCredential(USER_ID);
-        } catch (Exception e) {
-            logger.warn("Failed to load stored credential: {}", e.getMessage());
-            return null;
-        }
-    }
-
     /**
      * Creates a Drive service object.
      * This bean is used throughout the application to interact with Google Drive
@@ -129,7 +154,7 @@ public class GoogleDriveConfig {
                     "No valid credential found. Google Drive API calls will fail until user authenticates via web interface.");
         }
 
-        return new Drive.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential)
+        return new Drive.Builder(HTTP_TRANSPORT, JSON_FACTORY, new DriveRequestMetrics(credential))
                 .setApplicationName(APPLICATION_NAME)
                 .build();
     }
@@ -10,8 +10,12 @@ import java.util.Base64;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +24,10 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import com.example.metrics.DriveRequestMetrics;
 import com.example.model.DriveFile;
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
@@ -39,7 +47,7 @@ import com.google.api.services.drive.model.FileList;
  * Drive.
  */
 @Service
-public class GoogleDriveService {
+public class GoogleDriveService implements StorageProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(GoogleDriveService.class);
     private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
@@ -53,37 +61,56 @@ public class GoogleDriveService {
     @Value("${google.drive.application.name}")
     private String APPLICATION_NAME;
 
-    private final GoogleDriveConfig driveConfig;
-    private Drive driveService;
+    @Value("${drive.metadata.batch-window-ms:20}")
+    private long metadataBatchWindowMs;
+
+    @Value("${drive.metadata.timeout-ms:10000}")
+    private long metadataTimeoutMs;
+
+    private final CredentialCache credentialCache;
+    private volatile Drive driveService;
+    // Credential the current Drive client was built with
+    private volatile Credential driveCredential;
+    private NetHttpTransport httpTransport;
+    private DriveMetadataBatcher metadataBatcher;
 
     @Autowired
-    public GoogleDriveService(GoogleDriveConfig driveConfig, Drive driveService) {
-        this.driveConfig = driveConfig;
+    public GoogleDriveService(CredentialCache credentialCache, Drive driveService) {
+        this.credentialCache = credentialCache;
         this.driveService = driveService;
+        this.driveCredential = credentialCache.get();
         logger.info("GoogleDriveService initialized with Drive service");
     }
 
+    @PostConstruct
+    public void initMetadataBatcher() {
+        // Always batch against the current client, which is replaced on credential refresh
+        this.metadataBatcher = new DriveMetadataBatcher(() -> driveService, metadataBatchWindowMs);
+    }
+
+    @PreDestroy
+    public void shutdownMetadataBatcher() {
+        metadataBatcher.shutdown();
+    }
+
     /**
      * Refreshes the Drive service with the latest credentials.
      * This should be called after authentication to ensure we have a valid service.
+     * It re-reads the token store, so it is not meant for the regular request path.
      * 
      * @return true if the service was successfully refreshed, false otherwise
      */
     public boolean refreshDriveService() {
         try {
             logger.info("Refreshing Drive service with updated credentials");
-            Credential credential = driveConfig.getStoredCredential();
+            Credential credential = credentialCache.reload();
 
             if (credential == null) {
                 logger.warn("Failed to refresh Drive service: No credentials available");
                 return false;
             }
 
-            final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
-            this.driveService = new Drive.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential)
-                    .setApplicationName(APPLICATION_NAME)
-                    .build();
-
+            rebuildDriveService(credential);
             logger.info("Drive service successfully refreshed with updated credentials");
             return true;
         } catch (IOException | GeneralSecurityException e) {
@@ -92,6 +119,33 @@ public class GoogleDriveService {
         }
     }
 
+    /**
+     * Makes sure the Drive client uses the currently cached credential.
+     * This only rebuilds the client when the cached credential has changed, and
+     * never touches the token store.
+     */
+    private void ensureDriveService() {
+        Credential credential = credentialCache.get();
+        if (credential == null || credential == driveCredential) {
+            return;
+        }
+        try {
+            rebuildDriveService(credential);
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warn("Error rebuilding Drive service with cached credential", e);
+        }
+    }
+
+    private synchronized void rebuildDriveService(Credential credential) throws IOException, GeneralSecurityException {
+        if (httpTransport == null) {
+            httpTransport = GoogleNetHttpTransport.newTrustedTransport();
+        }
+        this.driveService = new Drive.Builder(httpTransport, JSON_FACTORY, new DriveRequestMetrics(credential))
+                .setApplicationName(APPLICATION_NAME)
+                .build();
+        this.driveCredential = credential;
+    }
+
     /**
      * Lists files and folders in Google Drive.
      * 
@@ -101,12 +155,8 @@ public class GoogleDriveService {
      * @throws IOException If an error occurs while accessing the Drive API
      */
     public FileList listFiles(String folderId) throws IOException {
-        // Try to refresh the drive service if needed
-        try {
-            refreshDriveService();
-        } catch (Exception e) {
-            logger.warn("Error refreshing Drive service before listing files", e);
-        }
+        // Pick up a new cached credential if there is one (no token store access)
+        ensureDriveService();
 
         logger.info("Listing files from Google Drive with folderId: {}", folderId);
 
@@ -137,6 +187,95 @@ public class GoogleDriveService {
         }
     }
 
+    /**
+     * Lists all image files directly inside a folder, following page tokens.
+     * Unlike {@link #listFiles(String)} this is not capped at a single page, so
+     * it is suitable for bulk imports of large folders.
+     *
+     * @param folderId ID of the folder to list
+     * @return All non-trashed image files in the folder
+     * @throws IOException If an error occurs while accessing the Drive API
+     */
+    public List<File> listImageFiles(String folderId) throws IOException {
+        String query = "'" + folderId + "' in parents and mimeType contains 'image/' and trashed = false";
+        logger.info("Listing all image files with query: {}", query);
+        ensureDriveService();
+
+        List<File> files = new ArrayList<>();
+        String pageToken = null;
+        try {
+            do {
+                FileList page = driveService.files().list()
+                        .setQ(query)
+                        .setPageSize(1000)
+                        .setPageToken(pageToken)
+                        .setFields("nextPageToken, files(id, name, mimeType, size)")
+                        .execute();
+                files.addAll(page.getFiles());
+                pageToken = page.getNextPageToken();
+            } while (pageToken != null);
+        } catch (Exception e) {
+            logger.error("Error listing image files for folder: {}", folderId, e);
+            throw new IOException("Error listing image files from Google Drive: " + e.getMessage(), e);
+        }
+
+        logger.info("Found {} image files in folder {}", files.size(), folderId);
+        return files;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return isTokenAvailable();
+    }
+
+    @Override
+    public List<DriveFile> list(String folderId) throws IOException {
+        List<DriveFile> files = new ArrayList<>();
+        for (File file : listFiles(folderId).getFiles()) {
+            files.add(toDriveFile(file));
+        }
+        return files;
+    }
+
+    @Override
+    public List<DriveFile> listImages(String folderId) throws IOException {
+        List<DriveFile> files = new ArrayList<>();
+        for (File file : listImageFiles(folderId)) {
+            files.add(toDriveFile(file));
+        }
+        return files;
+    }
+
+    @Override
+    public Map<String, DriveFile> getDetails(List<String> fileIds) throws IOException {
+        if (fileIds.size() == 1) {
+            // Single lookups from concurrent requests share one batch call
+            String fileId = fileIds.get(0);
+            return Map.of(fileId, toDriveFile(getFileDetails(fileId)));
+        }
+        Map<String, DriveFile> details = new LinkedHashMap<>();
+        getFileDetails(fileIds).forEach((fileId, file) -> details.put(fileId, toDriveFile(file)));
+        return details;
+    }
+
+    private DriveFile toDriveFile(File file) {
+        DriveFile driveFile = new DriveFile(
+                file.getId(),
+                file.getName(),
+                file.getMimeType(),
+                file.getModifiedTime() != null ? new Date(file.getModifiedTime().getValue()) : null,
+                file.getWebViewLink(),
+                file.getSize() != null ? file.getSize() : 0);
+        driveFile.setThumbnailLink(file.getThumbnailLink());
+        String contentLink = file.getWebContentLink();
+        if (contentLink == null && driveFile.isImage()) {
+            // Direct view link for images Drive reports no download link for
+            contentLink = "https://drive.google.com/uc?export=view&id=" + file.getId();
+        }
+        driveFile.setWebContentLink(contentLink);
+        return driveFile;
+    }
+
     /**
      * Uploads a file to Google Drive.
      * 
@@ -163,8 +302,11 @@ public class GoogleDriveService {
      * @return The created DriveFile object
      * @throws IOException If an error occurs during upload
      */
+    @Override
     public DriveFile uploadFile(InputStream inputStream, String fileName, String mimeType, String folderId)
             throws IOException {
+        ensureDriveService();
+
         // Create file metadata
         File fileMetadata = new File();
         fileMetadata.setName(fileName);
@@ -240,7 +382,9 @@ public class GoogleDriveService {
      * @return The updated DriveFile object
      * @throws IOException If an error occurs during update
      */
+    @Override
     public DriveFile updateFile(String fileId, byte[] newContent, String newName, String mimeType) throws IOException {
+        ensureDriveService();
         try {
             logger.info("Starting to update file: {}, content size: {} bytes, mimeType: {}",
                     fileId, newContent.length, mimeType);
@@ -296,7 +440,10 @@ public class GoogleDriveService {
      * @return The created DriveFile object representing the folder
      * @throws IOException If an error occurs during folder creation
      */
+    @Override
     public DriveFile createFolder(String folderName, String parentFolderId) throws IOException {
+        ensureDriveService();
+
         // Create folder metadata
         File folderMetadata = new File();
         folderMetadata.setName(folderName);
@@ -413,6 +560,7 @@ public class GoogleDriveService {
                     Thread.currentThread().interrupt();
                 }
 
+                credentialCache.invalidate();
                 return true;
             }
             return false;
@@ -422,6 +570,14 @@ public class GoogleDriveService {
         }
     }
 
+    /**
+     * Drops the in-memory credential without touching the token store.
+     * Used when the token files have been removed by another component.
+     */
+    public void clearCachedCredential() {
+        credentialCache.invalidate();
+    }
+
     /**
      * Creates a copy of a file with new content
      * This is an alternative approach to updating a file that might be more
@@ -485,7 +641,21 @@ public class GoogleDriveService {
         return "application/vnd.google-apps.folder".equals(file.getMimeType());
     }
 
+    /**
+     * Checks whether a file ID refers to a folder.
+     * The metadata lookup is batched with other lookups made at the same time.
+     * 
+     * @param fileId ID of the file to check
+     * @return true if the file is a folder
+     * @throws IOException If the metadata cannot be retrieved
+     */
+    public boolean isFolder(String fileId) throws IOException {
+        return isFolder(getBatchedMetadata(fileId));
+    }
+
+    @Override
     public byte[] downloadFile(String fileId) throws IOException {
+        ensureDriveService();
         try {
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             driveService.files().get(fileId).executeMediaAndDownloadTo(outputStream);
@@ -505,14 +675,13 @@ public class GoogleDriveService {
      * @return byte array containing the thumbnail data
      * @throws IOException If an error occurs during download
      */
+    @Override
     public byte[] downloadThumbnail(String fileId) throws IOException {
         try {
             logger.info("Downloading thumbnail for file ID: {}", fileId);
             
-            // Get file metadata first to check MIME type
-            File file = driveService.files().get(fileId)
-                    .setFields("id, name, mimeType, thumbnailLink, size")
-                    .execute();
+            // Get file metadata first to check MIME type (coalesced with other lookups)
+            File file = getBatchedMetadata(fileId);
             
             // Check if we got thumbnail link
             if (file.getThumbnailLink() != null) {
@@ -562,47 +731,10 @@ public class GoogleDriveService {
      * @return true if a valid token is available, false otherwise
      */
     public boolean isTokenAvailable() {
-        try {
-            logger.info("Checking if Google Drive token is available");
-            
-            // Ensure we use the same user ID as the OAuth controller
-            final String USER_ID = "user";
-            
-            // Use driveConfig to get the stored credential for this specific user
-            Credential credential = driveConfig.getStoredCredential();
-            
-            if (credential == null) {
-                logger.info("No Google Drive credential found for user: {}", USER_ID);
-                return false;
-            }
-
-            if (credential.getAccessToken() == null) {
-                logger.info("Google Drive credential has no access token for user: {}", USER_ID);
-                return false;
-            }
-
-            // Check if token is expired and try to refresh if needed
-            Long expiresIn = credential.getExpiresInSeconds();
-            if (expiresIn != null && expiresIn <= 60) {
-                logger.info(
-                        "Google Drive token is expired or about to expire (expires in {} seconds), attempting to refresh",
-                        expiresIn);
-                boolean refreshed = credential.refreshToken();
-                if (!refreshed) {
-                    logger.warn("Failed to refresh Google Drive token");
-                    return false;
-                }
-                logger.info("Successfully refreshed Google Drive token, new expiration: {} seconds",
-                        credential.getExpiresInSeconds());
-            }
-
-            // If we don't need to refresh or refresh was successful, the token is valid
-            logger.info("Token is valid for user: {}", USER_ID);
-            return true;
-        } catch (Exception e) {
-            logger.error("Error checking token availability: {}", e.getMessage());
-            return false;
-        }
+        // Served from the in-memory cache; refreshes happen in the background
+        boolean available = credentialCache.isUsable();
+        logger.debug("Google Drive token available: {}", available);
+        return available;
     }
 
     /**
@@ -613,7 +745,7 @@ public class GoogleDriveService {
      */
     public Map<String, Object> getCredentialInfo() {
         try {
-            Credential credential = driveConfig.getStoredCredential();
+            Credential credential = credentialCache.get();
 
             if (credential == null) {
                 return null;
@@ -639,20 +771,14 @@ public class GoogleDriveService {
      * @throws IOException If an error occurs while accessing the Drive API
      */
     public File getFileDetails(String fileId) throws IOException {
-        // Try to refresh the drive service if needed
-        try {
-            refreshDriveService();
-        } catch (Exception e) {
-            logger.warn("Error refreshing Drive service before getting file details", e);
-        }
+        // Pick up a new cached credential if there is one (no token store access)
+        ensureDriveService();
 
         logger.info("Getting file details for fileId: {}", fileId);
 
         try {
-            // Request more fields than the basic list endpoint
-            File file = driveService.files().get(fileId)
-                    .setFields("id, name, mimeType, thumbnailLink, webContentLink, webViewLink, parents, size")
-                    .execute();
+            // Request more fields than the basic list endpoint; concurrent lookups share one batch call
+            File file = getBatchedMetadata(fileId);
 
             logger.info("Retrieved file details for: {}", file.getName());
             return file;
@@ -662,6 +788,37 @@ public class GoogleDriveService {
         }
     }
 
+    /**
+     * Get detailed file metadata for several files with batched Drive requests.
+     * Up to 100 files are fetched per HTTP round-trip.
+     * 
+     * @param fileIds The IDs of the files to get details for
+     * @return Map of file ID to metadata; files that could not be read are omitted
+     */
+    public Map<String, File> getFileDetails(List<String> fileIds) {
+        logger.info("Getting batched file details for {} files", fileIds.size());
+        return metadataBatcher.getAll(fileIds);
+    }
+
+    private File getBatchedMetadata(String fileId) throws IOException {
+        try {
+            return metadataBatcher.get(fileId).get(metadataTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // The batch is stuck somewhere; do not let it hold this request hostage
+            logger.warn("Batched metadata lookup for {} timed out after {} ms, fetching it directly",
+                    fileId, metadataTimeoutMs);
+            return driveService.files().get(fileId).setFields(DriveMetadataBatcher.METADATA_FIELDS).execute();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while getting metadata for " + fileId, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error getting metadata for " + fileId + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
     /**
      * Uploads an image to Google Drive from a byte array
      * 
@@ -673,12 +830,8 @@ public class GoogleDriveService {
      * @throws IOException If an error occurs during upload
      */
     public File uploadImage(byte[] imageData, String fileName, String mimeType, String folderId) throws IOException {
-        // Try to refresh the drive service if needed
-        try {
-            refreshDriveService();
-        } catch (Exception e) {
-            logger.warn("Error refreshing Drive service before uploading image", e);
-        }
+        // Pick up a new cached credential if there is one (no token store access)
+        ensureDriveService();
         
         logger.info("Uploading image to Google Drive: {}, size: {} bytes", fileName, imageData.length);
         
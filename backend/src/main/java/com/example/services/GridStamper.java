@@ -0,0 +1,91 @@
+package com.example.services;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import com.example.model.ImageBuffers;
+
+/**
+ * Copies a tile into many positions of an int RGB image by direct row copies.
+ * Java2D's drawImage goes through generic blit loops whenever the source and
+ * destination formats differ; converting the tile once and then copying rows
+ * of the backing int arrays avoids that per cell.
+ */
+public final class GridStamper {
+
+    private GridStamper() {
+    }
+
+    /**
+     * Returns the image as a standalone TYPE_INT_RGB image, compositing any
+     * transparency over white. Images already in that format are returned as is.
+     */
+    public static BufferedImage toIntRgb(BufferedImage source) {
+        if (source.getType() == BufferedImage.TYPE_INT_RGB && source.getRaster().getParent() == null) {
+            return source;
+        }
+        BufferedImage converted = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = converted.createGraphics();
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, source.getWidth(), source.getHeight());
+        g2d.drawImage(source, 0, 0, null);
+        g2d.dispose();
+        return converted;
+    }
+
+    /**
+     * Fills the destination with a solid RGB colour.
+     */
+    public static void fill(BufferedImage dest, int rgb) {
+        Arrays.fill(pixels(dest), rgb);
+    }
+
+    /**
+     * Copies the tile to each (x, y) position, clipped to the destination.
+     * Positions are in sheet coordinates; the destination covers sheet rows
+     * starting at destOffsetY. Rows are processed in parallel and, within a
+     * row, cells are copied in order, so overlapping cells resolve the same
+     * way drawImage would.
+     *
+     * @param tile        TYPE_INT_RGB tile, see {@link #toIntRgb}
+     * @param dest        TYPE_INT_RGB destination
+     * @param destOffsetY Sheet row that corresponds to row 0 of dest
+     * @param xs          Tile x positions
+     * @param ys          Tile y positions
+     */
+    public static void stamp(BufferedImage tile, BufferedImage dest, int destOffsetY, int[] xs, int[] ys) {
+        int[] src = pixels(tile);
+        int[] dst = pixels(dest);
+        int tileWidth = tile.getWidth();
+        int tileHeight = tile.getHeight();
+        int destWidth = dest.getWidth();
+        int destHeight = dest.getHeight();
+
+        ImageBuffers.rows(destWidth, destHeight).forEach(row -> {
+            int sheetY = row + destOffsetY;
+            int destRowStart = row * destWidth;
+            for (int cell = 0; cell < xs.length; cell++) {
+                int tileRow = sheetY - ys[cell];
+                if (tileRow < 0 || tileRow >= tileHeight) {
+                    continue;
+                }
+                // Clip the row horizontally
+                int x0 = Math.max(0, xs[cell]);
+                int x1 = Math.min(destWidth, xs[cell] + tileWidth);
+                if (x0 < x1) {
+                    System.arraycopy(src, tileRow * tileWidth + (x0 - xs[cell]), dst, destRowStart + x0, x1 - x0);
+                }
+            }
+        });
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB || image.getRaster().getParent() != null) {
+            throw new IllegalArgumentException("Expected a standalone TYPE_INT_RGB image");
+        }
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.services;
+
+import com.example.metrics.ImageMetrics;
+import com.example.model.IngestedImage;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.FileCacheImageInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Turns uploaded bytes into an editable image without ever holding the full
+ * resolution decode in memory.
+ * <p>
+ * The upload is decoded straight from the incoming stream while a copy goes
+ * to the originals directory, where it stays for full quality export. The
+ * decoder's seek cache is a temp file in the same directory, so large uploads
+ * are not buffered on the heap. Its
+ * dimensions are read from the header and checked against a pixel limit.
+ * Images larger than the working resolution are decoded with source
+ * subsampling to between one and two times the working size, and then
+ * resampled down to it. The EXIF orientation of JPEGs
+ * is applied last, so the editor always works on an upright image.
+ */
+@Service
+public class ImageIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageIngestService.class);
+
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    private final Path originalsDir;
+    private final int maxWorkingSize;
+    private final long maxPixels;
+    private final long maxUploadBytes;
+
+    public ImageIngestService(@Value("${ingest.originals-dir:./uploaded_images/originals}") String originalsDir,
+            @Value("${ingest.max-working-size:3000}") int maxWorkingSize,
+            @Value("${ingest.max-pixels:200000000}") long maxPixels,
+            @Value("${ingest.max-upload-mb:200}") long maxUploadMb) {
+        this.originalsDir = Paths.get(originalsDir);
+        this.maxWorkingSize = maxWorkingSize;
+        this.maxPixels = maxPixels;
+        this.maxUploadBytes = maxUploadMb * 1024 * 1024;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(originalsDir);
+    }
+
+    /**
+     * Decodes an image from a stream as it arrives, at working resolution.
+     * The bytes are copied to the originals directory and hashed on the way
+     * through, so decoding starts without waiting for the whole upload. Originals
+     * are stored under their SHA-256, so uploading the same file again does
+     * not store it twice.
+     *
+     * @throws IOException If the data is not a readable image, exceeds the
+     *                     pixel limit or the upload size limit
+     */
+    public IngestedImage ingest(InputStream data) throws IOException {
+        return ingest(data, true);
+    }
+
+    /**
+     * Decodes an image the same way as {@link #ingest}, with the same limits,
+     * but does not keep the original; {@link IngestedImage#getOriginalFile()}
+     * is null. For images that are only ever worked on at working resolution.
+     *
+     * @throws IOException If the data is not a readable image, exceeds the
+     *                     pixel limit or the upload size limit
+     */
+    public IngestedImage decode(InputStream data) throws IOException {
+        return ingest(data, false);
+    }
+
+    private IngestedImage ingest(InputStream data, boolean keepOriginal) throws IOException {
+        // Without an original to keep, the copy is only needed for EXIF and goes to the system temp dir
+        Path temp = keepOriginal ? Files.createTempFile(originalsDir, ".upload-", ".tmp")
+                : Files.createTempFile(".decode-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            TeeInputStream tee;
+            BufferedImage image;
+            String format;
+            int width;
+            int height;
+            // The copy is closed before the original is read back for EXIF and stored
+            try (OutputStream copy = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                tee = new TeeInputStream(new DigestInputStream(data, digest), copy, maxUploadBytes);
+                // The decoder may seek back, so the stream it reads has to be cached. ImageIO's
+                // memory cache would keep the whole upload on the heap; this one spools to disk.
+                try (ImageInputStream in = new FileCacheImageInputStream(tee, temp.getParent().toFile())) {
+                    Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+                    if (!readers.hasNext()) {
+                        throw new IOException("Unsupported or corrupt image file.");
+                    }
+                    ImageReader reader = readers.next();
+                    try {
+                        reader.setInput(in, true, true);
+                        format = reader.getFormatName().toLowerCase(Locale.ROOT);
+                        width = reader.getWidth(0);
+                        height = reader.getHeight(0);
+                        if ((long) width * height > maxPixels) {
+                            throw new IOException("Image too large: " + width + "x" + height);
+                        }
+
+                        // Leaves a long side of at least maxWorkingSize for the resampler
+                        int step = Math.max(1, Math.max(width, height) / maxWorkingSize);
+                        ImageReadParam param = reader.getDefaultReadParam();
+                        if (step > 1) {
+                            param.setSourceSubsampling(step, step, 0, 0);
+                        }
+                        image = ImageMetrics.time(ImageMetrics.DECODE, () -> reader.read(0, param));
+                    } finally {
+                        reader.dispose();
+                    }
+                }
+                // Whatever the decoder did not need still belongs to the original
+                tee.transferTo(OutputStream.nullOutputStream());
+            }
+
+            image = fitWorkingSize(image);
+            int orientation = "jpeg".equals(format) ? readExifOrientation(temp) : 1;
+            image = orient(image, orientation);
+
+            Path original = keepOriginal ? store(temp, HexFormat.of().formatHex(digest.digest()), format) : null;
+            ImageMetrics.recordBytes(ImageMetrics.DECODE, tee.getCount());
+            logger.info("{} {} bytes, {}x{} {} as {}x{} (orientation {})", keepOriginal ? "Ingested" : "Decoded",
+                    tee.getCount(), width, height, format, image.getWidth(), image.getHeight(), orientation);
+            return new IngestedImage(image, original, width, height, orientation);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes a stored original that is no longer referenced. Failures are only logged.
+     */
+    public void discard(Path originalFile) {
+        if (originalFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(originalFile);
+        } catch (IOException e) {
+            logger.warn("Could not delete original {}: {}", originalFile.getFileName(), e.getMessage());
+        }
+    }
+
+    // Moves the upload into place, unless identical content is already stored
+    private Path store(Path temp, String hash, String format) throws IOException {
+        Path original = originalsDir.resolve(hash + "." + ("jpeg".equals(format) ? "jpg" : format));
+        if (Files.exists(original)) {
+            logger.info("Original {} already stored", original.getFileName());
+            return original;
+        }
+        try {
+            Files.move(temp, original, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // An identical upload was stored between the check and the move
+            logger.info("Original {} stored concurrently", original.getFileName());
+        }
+        return original;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private BufferedImage fitWorkingSize(BufferedImage image) {
+        int longSide = Math.max(image.getWidth(), image.getHeight());
+        if (longSide <= maxWorkingSize) {
+            return image;
+        }
+        double scale = (double) maxWorkingSize / longSide;
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        return ImageResampler.resize(image, width, height, ImageResampler.Filter.LANCZOS);
+    }
+
+    /**
+     * Rotates and mirrors the image so that it displays upright.
+     *
+     * @param orientation EXIF orientation value; anything outside 2-8 leaves the image as is
+     */
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation < 2 || orientation > 8) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean swap = orientation >= 5;
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage result = new BufferedImage(swap ? height : width, swap ? width : height, type);
+
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int dx;
+                int dy;
+                switch (orientation) {
+                    case 2: dx = width - 1 - x; dy = y; break;                 // mirror horizontal
+                    case 3: dx = width - 1 - x; dy = height - 1 - y; break;    // rotate 180
+                    case 4: dx = x; dy = height - 1 - y; break;                // mirror vertical
+                    case 5: dx = y; dy = x; break;                             // transpose
+                    case 6: dx = height - 1 - y; dy = x; break;                // rotate 90 clockwise
+                    case 7: dx = height - 1 - y; dy = width - 1 - x; break;    // transverse
+                    default: dx = y; dy = width - 1 - x; break;                // rotate 90 counter-clockwise
+                }
+                result.setRGB(dx, dy, row[x]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the orientation tag from the EXIF block of a JPEG.
+     *
+     * @return Orientation 1-8, or 1 if the file has none or it cannot be parsed
+     */
+    static int readExifOrientation(Path jpeg) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(jpeg)))) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+                    // Not a marker, or image data starts: no EXIF before it
+                    return 1;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return 1;
+                }
+                byte[] segment = new byte[length];
+                in.readFully(segment);
+                if (marker == 0xFFE1 && length > 14 && segment[0] == 'E' && segment[1] == 'x'
+                        && segment[2] == 'i' && segment[3] == 'f' && segment[4] == 0 && segment[5] == 0) {
+                    return parseOrientation(segment, 6);
+                }
+            }
+        } catch (EOFException e) {
+            return 1;
+        } catch (IOException e) {
+            logger.warn("Could not read EXIF from {}: {}", jpeg.getFileName(), e.getMessage());
+            return 1;
+        }
+    }
+
+    // Looks up the orientation tag in IFD0 of the TIFF structure starting at tiff
+    private static int parseOrientation(byte[] data, int tiff) {
+        boolean little;
+        if (data[tiff] == 'I' && data[tiff + 1] == 'I') {
+            little = true;
+        } else if (data[tiff] == 'M' && data[tiff + 1] == 'M') {
+            little = false;
+        } else {
+            return 1;
+        }
+        long ifd = readInt(data, tiff + 4, little);
+        if (ifd < 8 || tiff + ifd + 2 > data.length) {
+            return 1;
+        }
+        int entries = readShort(data, tiff + (int) ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = tiff + (int) ifd + 2 + i * 12;
+            if (entry + 12 > data.length) {
+                return 1;
+            }
+            if (readShort(data, entry, little) == EXIF_ORIENTATION_TAG) {
+                int value = readShort(data, entry + 8, little);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] data, int offset, boolean little) {
+        int b0 = data[offset] & 0xFF;
+        int b1 = data[offset + 1] & 0xFF;
+        return little ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static long readInt(byte[] data, int offset, boolean little) {
+        long hi = readShort(data, offset + (little ? 2 : 0), little);
+        long lo = readShort(data, offset + (little ? 0 : 2), little);
+        return (hi << 16) | lo;
+    }
+
+    /**
+     * Copies everything read through it to an output stream and enforces a size limit.
+     */
+    private static final class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+        private final long limit;
+        private long count;
+
+        TeeInputStream(InputStream in, OutputStream copy, long limit) {
+            super(in);
+            this.copy = copy;
+            this.limit = limit;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                written(1);
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                written(n);
+                copy.write(buffer, offset, n);
+            }
+            return n;
+        }
+
+        // Skipped bytes still have to reach the copy, so read them instead
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int r = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (r < 0) {
+                    break;
+                }
+                skipped += r;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void written(int n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("Upload exceeds " + limit + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.services;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import com.example.model.ImageBuffers;
+
+/**
+ * Separable image resampler with proper low-pass filtering.
+ * <p>
+ * Each axis is resampled with a windowed kernel whose support widens with
+ * the reduction factor, so large reductions do not alias the way a bilinear
+ * drawImage does. Kernel weights depend only on the filter and the source
+ * and target lengths, and are cached. Rows are processed in parallel.
+ * Reductions of 4x or more first halve the image with a 2x2 box filter
+ * until less than 4x remains, which is much cheaper than running a wide
+ * kernel over every source pixel.
+ */
+public final class ImageResampler {
+
+    public enum Filter {
+        /** Lanczos, three lobes. Sharpest, slight ringing on hard edges. */
+        LANCZOS(3.0) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                if (x < 1e-8) {
+                    return 1.0;
+                }
+                if (x >= 3.0) {
+                    return 0.0;
+                }
+                double px = Math.PI * x;
+                return 3.0 * Math.sin(px) * Math.sin(px / 3.0) / (px * px);
+            }
+        },
+        /** Mitchell-Netravali cubic (B = C = 1/3). Softer, no visible ringing. */
+        MITCHELL(2.0) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                final double b = 1.0 / 3.0;
+                final double c = 1.0 / 3.0;
+                if (x < 1.0) {
+                    return ((12 - 9 * b - 6 * c) * x * x * x + (-18 + 12 * b + 6 * c) * x * x + (6 - 2 * b)) / 6.0;
+                }
+                if (x < 2.0) {
+                    return ((-b - 6 * c) * x * x * x + (6 * b + 30 * c) * x * x + (-12 * b - 48 * c) * x
+                            + (8 * b + 24 * c)) / 6.0;
+                }
+                return 0.0;
+            }
+        };
+
+        private final double support;
+
+        Filter(double support) {
+            this.support = support;
+        }
+
+        abstract double weight(double x);
+
+        /**
+         * @param name Filter name, case insensitive; null means Lanczos
+         * @throws IllegalArgumentException If the name is not a known filter
+         */
+        public static Filter fromName(String name) {
+            if (name == null) {
+                return LANCZOS;
+            }
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown resize filter: " + name);
+            }
+        }
+    }
+
+    // Filtering costs more per pixel than a copy, so it is split sooner than ImageBuffers.rows would
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    // Box-halve while the remaining reduction is at least this
+    private static final int BOX_HALVING_FACTOR = 4;
+    private static final int MAX_CACHED_WEIGHTS = 64;
+
+    private static final Map<String, Weights> WEIGHT_CACHE = new ConcurrentHashMap<>();
+
+    private ImageResampler() {
+    }
+
+    /**
+     * Resizes the image. The result is TYPE_INT_ARGB if the source has
+     * alpha, TYPE_INT_RGB otherwise. Transparent images are filtered with
+     * premultiplied alpha so edges do not pick up the colour of invisible pixels.
+     */
+    public static BufferedImage resize(BufferedImage source, int targetWidth, int targetHeight, Filter filter) {
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            throw new IllegalArgumentException("Target size must be positive");
+        }
+        boolean alpha = source.getColorModel().hasAlpha();
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = readArgb(source);
+
+        // Leaves a reduction of less than BOX_HALVING_FACTOR for the kernel
+        while (width >= BOX_HALVING_FACTOR * targetWidth && height >= BOX_HALVING_FACTOR * targetHeight) {
+            pixels = halve(pixels, width, height, alpha);
+            width /= 2;
+            height /= 2;
+        }
+
+        BufferedImage result = new BufferedImage(targetWidth, targetHeight,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] out = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        if (width == targetWidth && height == targetHeight) {
+            System.arraycopy(pixels, 0, out, 0, out.length);
+            if (!alpha) {
+                opaque(out);
+            }
+            return result;
+        }
+
+        Weights horizontal = weights(filter, width, targetWidth);
+        Weights vertical = weights(filter, height, targetHeight);
+
+        // Horizontal pass into premultiplied float channels: source rows x target columns
+        float[] temp = new float[height * targetWidth * 4];
+        final int[] src = pixels;
+        final int srcWidth = width;
+        rows(height, targetWidth).forEach(y -> {
+            int rowStart = y * srcWidth;
+            int tempRow = y * targetWidth * 4;
+            for (int x = 0; x < targetWidth; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                int start = horizontal.start[x];
+                int offset = x * horizontal.taps;
+                for (int k = 0; k < horizontal.count[x]; k++) {
+                    float w = horizontal.weights[offset + k];
+                    int p = src[rowStart + start + k];
+                    float pa = alpha ? (p >>> 24) : 255f;
+                    float scale = w * pa / 255f;
+                    a += w * pa;
+                    r += scale * ((p >> 16) & 0xFF);
+                    g += scale * ((p >> 8) & 0xFF);
+                    b += scale * (p & 0xFF);
+                }
+                int t = tempRow + x * 4;
+                temp[t] = a;
+                temp[t + 1] = r;
+                temp[t + 2] = g;
+                temp[t + 3] = b;
+            }
+        });
+
+        // Vertical pass, back to non-premultiplied ARGB
+        rows(targetHeight, targetWidth).forEach(y -> {
+            int start = vertical.start[y];
+            int offset = y * vertical.taps;
+            int count = vertical.count[y];
+            int rowWidth = targetWidth * 4;
+            for (int x = 0; x < targetWidth; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                int t = start * rowWidth + x * 4;
+                for (int k = 0; k < count; k++, t += rowWidth) {
+                    float w = vertical.weights[offset + k];
+                    a += w * temp[t];
+                    r += w * temp[t + 1];
+                    g += w * temp[t + 2];
+                    b += w * temp[t + 3];
+                }
+                int ia = clamp(a);
+                if (ia == 0) {
+                    out[y * targetWidth + x] = 0;
+                    continue;
+                }
+                float unpremultiply = 255f / a;
+                out[y * targetWidth + x] = (alpha ? ia << 24 : 0xFF000000)
+                        | (clamp(r * unpremultiply) << 16)
+                        | (clamp(g * unpremultiply) << 8)
+                        | clamp(b * unpremultiply);
+            }
+        });
+        return result;
+    }
+
+    // Averages 2x2 blocks; an odd last row or column is dropped
+    private static int[] halve(int[] pixels, int width, int height, boolean alpha) {
+        int halfWidth = width / 2;
+        int halfHeight = height / 2;
+        int[] out = new int[halfWidth * halfHeight];
+        rows(halfHeight, halfWidth).forEach(y -> {
+            int top = 2 * y * width;
+            int bottom = top + width;
+            for (int x = 0; x < halfWidth; x++) {
+                int p0 = pixels[top + 2 * x];
+                int p1 = pixels[top + 2 * x + 1];
+                int p2 = pixels[bottom + 2 * x];
+                int p3 = pixels[bottom + 2 * x + 1];
+                if (!alpha) {
+                    out[y * halfWidth + x] = 0xFF000000
+                            | (((channel(p0, 16) + channel(p1, 16) + channel(p2, 16) + channel(p3, 16) + 2) >> 2) << 16)
+                            | (((channel(p0, 8) + channel(p1, 8) + channel(p2, 8) + channel(p3, 8) + 2) >> 2) << 8)
+                            | ((channel(p0, 0) + channel(p1, 0) + channel(p2, 0) + channel(p3, 0) + 2) >> 2);
+                    continue;
+                }
+                // Weight colours by alpha so transparent pixels do not bleed in
+                int a0 = p0 >>> 24, a1 = p1 >>> 24, a2 = p2 >>> 24, a3 = p3 >>> 24;
+                int alphaSum = a0 + a1 + a2 + a3;
+                if (alphaSum == 0) {
+                    out[y * halfWidth + x] = 0;
+                    continue;
+                }
+                int half = alphaSum / 2;
+                int r = (channel(p0, 16) * a0 + channel(p1, 16) * a1 + channel(p2, 16) * a2 + channel(p3, 16) * a3 + half) / alphaSum;
+                int g = (channel(p0, 8) * a0 + channel(p1, 8) * a1 + channel(p2, 8) * a2 + channel(p3, 8) * a3 + half) / alphaSum;
+                int b = (channel(p0, 0) * a0 + channel(p1, 0) * a1 + channel(p2, 0) * a2 + channel(p3, 0) * a3 + half) / alphaSum;
+                out[y * halfWidth + x] = (((alphaSum + 2) >> 2) << 24) | (r << 16) | (g << 8) | b;
+            }
+        });
+        return out;
+    }
+
+    private static Weights weights(Filter filter, int sourceLength, int targetLength) {
+        String key = filter + ":" + sourceLength + ":" + targetLength;
+        Weights cached = WEIGHT_CACHE.get(key);
+        if (cached == null) {
+            if (WEIGHT_CACHE.size() >= MAX_CACHED_WEIGHTS) {
+                WEIGHT_CACHE.clear();
+            }
+            cached = new Weights(filter, sourceLength, targetLength);
+            WEIGHT_CACHE.put(key, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Normalized kernel taps for every target position along one axis.
+     */
+    private static final class Weights {
+        final int taps;
+        final int[] start;
+        final int[] count;
+        final float[] weights;
+
+        Weights(Filter filter, int sourceLength, int targetLength) {
+            double scale = (double) sourceLength / targetLength;
+            // Widen the kernel when reducing so it also acts as a low-pass filter
+            double filterScale = Math.max(1.0, scale);
+            double support = filter.support * filterScale;
+            taps = (int) Math.ceil(support) * 2 + 2;
+            start = new int[targetLength];
+            count = new int[targetLength];
+            weights = new float[targetLength * taps];
+
+            for (int i = 0; i < targetLength; i++) {
+                double center = (i + 0.5) * scale;
+                int first = Math.max(0, (int) Math.floor(center - support));
+                int last = Math.min(sourceLength - 1, (int) Math.ceil(center + support) - 1);
+                int n = Math.min(taps, last - first + 1);
+                double sum = 0;
+                for (int k = 0; k < n; k++) {
+                    double w = filter.weight((first + k + 0.5 - center) / filterScale);
+                    weights[i * taps + k] = (float) w;
+                    sum += w;
+                }
+                // Taps outside the image are dropped, so renormalize what is left
+                if (sum != 0) {
+                    for (int k = 0; k < n; k++) {
+                        weights[i * taps + k] /= (float) sum;
+                    }
+                }
+                start[i] = first;
+                count[i] = n;
+            }
+        }
+    }
+
+    private static int[] readArgb(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        // Packed int rasters can be read directly; the array is only read, never written.
+        // The top byte of TYPE_INT_RGB is undefined, but opaque images ignore it.
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+                && image.getRaster().getParent() == null
+                && image.getRaster().getDataBuffer().getSize() == width * height) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        int[] pixels = new int[width * height];
+        rows(height, width).forEach(y -> image.getRGB(0, y, width, 1, pixels, y * width, width));
+        return pixels;
+    }
+
+    private static void opaque(int[] pixels) {
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] |= 0xFF000000;
+        }
+    }
+
+    private static int channel(int pixel, int shift) {
+        return (pixel >> shift) & 0xFF;
+    }
+
+    private static int clamp(float value) {
+        int v = Math.round(value);
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+
+    private static IntStream rows(int height, int width) {
+        return ImageBuffers.rows(width, height, PARALLEL_THRESHOLD);
+    }
+}
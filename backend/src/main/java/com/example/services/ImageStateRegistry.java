@@ -0,0 +1,294 @@
+package com.example.services;
+
+import com.example.model.BatchSlot;
+import com.example.model.BatchWorkspace;
+import com.example.model.ComposedSheet;
+import com.example.model.ImageState;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Editor sessions, each with its own {@link ImageState}, batch workspace and
+ * composed sheets.
+ * <p>
+ * Session IDs are issued by {@link #create}; clients send theirs in the
+ * {@value #SESSION_HEADER} header, and an ID the registry does not know is
+ * refused rather than turned into a new session. Requests without the header
+ * share the {@value #DEFAULT_SESSION} session, which is how the single-user
+ * desktop app behaves. Sessions idle for longer than the configured timeout
+ * are dropped. New sessions are rate limited per client, and when the
+ * session limit is reached the least recently used session makes room only
+ * if it has been idle for a while, so a burst of new sessions cannot push
+ * out active users.
+ * <p>
+ * IDs are bearer secrets, so logs and the admin API name sessions by their
+ * {@linkplain Session#getKey() key}, a hash of the ID.
+ */
+@Service
+public class ImageStateRegistry {
+
+    public static final String SESSION_HEADER = "X-Session-Id";
+    public static final String DEFAULT_SESSION = "default";
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStateRegistry.class);
+
+    private static final Pattern SESSION_ID = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+    private static final int ID_BYTES = 24;
+    private static final long RATE_WINDOW_MS = 60_000;
+
+    private final ImageIngestService imageIngestService;
+    private final int maxSessions;
+    private final long idleTimeoutMs;
+    private final long evictableAfterMs;
+    private final int createPerMinute;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Sessions created per client address in the current window
+    private final Map<String, CreationWindow> creations = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    public ImageStateRegistry(ImageIngestService imageIngestService,
+            @Value("${session.max-count:64}") int maxSessions,
+            @Value("${session.idle-timeout-minutes:120}") long idleTimeoutMinutes,
+            @Value("${session.evictable-after-idle-minutes:10}") long evictableAfterIdleMinutes,
+            @Value("${session.create-per-minute:20}") int createPerMinute) {
+        this.imageIngestService = imageIngestService;
+        this.maxSessions = Math.max(1, maxSessions);
+        this.idleTimeoutMs = idleTimeoutMinutes * 60_000;
+        this.evictableAfterMs = evictableAfterIdleMinutes * 60_000;
+        this.createPerMinute = createPerMinute;
+    }
+
+    /**
+     * An editor session, what it holds and when it was last used.
+     */
+    public static final class Session {
+        private final String id;
+        private final String key;
+        private final ImageState state = new ImageState();
+        private final BatchWorkspace workspace = new BatchWorkspace();
+        private volatile List<ComposedSheet> sheets = Collections.emptyList();
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        Session(String id) {
+            this.id = id;
+            this.key = keyOf(id);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Names the session without revealing its ID: the first 16 hex digits
+         * of the ID's SHA-256.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public ImageState getState() {
+            return state;
+        }
+
+        public BatchWorkspace getWorkspace() {
+            return workspace;
+        }
+
+        /**
+         * Sheets from the session's last compose, in sheet order.
+         */
+        public List<ComposedSheet> getSheets() {
+            return sheets;
+        }
+
+        public void setSheets(List<ComposedSheet> sheets) {
+            this.sheets = sheets;
+        }
+
+        public long getIdleMillis() {
+            return System.currentTimeMillis() - lastAccess;
+        }
+    }
+
+    private static final class CreationWindow {
+        private final long start = System.currentTimeMillis();
+        private int count;
+    }
+
+    /**
+     * Starts a new session with a random, unguessable ID.
+     *
+     * @param client Address of the client asking, for rate limiting
+     * @throws IllegalStateException If the client has created too many
+     *                               sessions recently, or all sessions are in use
+     */
+    public Session create(String client) {
+        if (createPerMinute > 0) {
+            long now = System.currentTimeMillis();
+            CreationWindow window = creations.compute(client == null ? "" : client,
+                    (key, current) -> current == null || now - current.start >= RATE_WINDOW_MS
+                            ? new CreationWindow() : current);
+            synchronized (window) {
+                if (++window.count > createPerMinute) {
+                    throw new IllegalStateException("Too many new sessions, try again in a minute");
+                }
+            }
+        }
+        if (sessions.size() >= maxSessions && !evictLeastRecentlyUsed()) {
+            throw new IllegalStateException("All editor sessions are in use, try again later");
+        }
+        byte[] bytes = new byte[ID_BYTES];
+        random.nextBytes(bytes);
+        Session session = new Session(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes));
+        sessions.put(session.getId(), session);
+        logger.info("Created session {} ({} live)", session.getKey(), sessions.size());
+        return session;
+    }
+
+    /**
+     * Returns the session named by a client, and marks it as used.
+     *
+     * @param sessionId Session ID, or null for the default session
+     * @return The session, or null if there is no session with that ID
+     * @throws IllegalArgumentException If the ID is not 1-64 letters, digits, '.', '_' or '-'
+     */
+    public Session find(String sessionId) {
+        String id = sessionId == null || sessionId.isBlank() ? DEFAULT_SESSION : sessionId;
+        if (!SESSION_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid session ID");
+        }
+        // The default session is the only one created on demand
+        Session session = DEFAULT_SESSION.equals(id) ? sessions.computeIfAbsent(id, Session::new) : sessions.get(id);
+        if (session != null) {
+            session.lastAccess = System.currentTimeMillis();
+        }
+        return session;
+    }
+
+    /**
+     * Live sessions, most recently used first.
+     */
+    public List<Session> getSessions() {
+        List<Session> list = new ArrayList<>(sessions.values());
+        list.sort(Comparator.comparingLong(Session::getIdleMillis));
+        return list;
+    }
+
+    /**
+     * Ends a session and deletes its stored original if no other session uses it.
+     *
+     * @return true if the session existed
+     */
+    public boolean remove(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session == null) {
+            return false;
+        }
+        // Requests still running hold their own copies of the Mat view
+        session.getState().dropMatView();
+        for (BatchSlot slot : session.getWorkspace().getSlots()) {
+            slot.getState().dropMatView();
+        }
+        retireOriginal(session.getState().getOriginalFile());
+        logger.info("Removed session {} after {} s idle", session.getKey(), session.getIdleMillis() / 1000);
+        return true;
+    }
+
+    /**
+     * Ends the session with the given {@linkplain Session#getKey() key}.
+     *
+     * @return true if the session existed
+     */
+    public boolean removeByKey(String key) {
+        for (Session session : sessions.values()) {
+            if (session.getKey().equals(key)) {
+                return remove(session.getId());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Points the state at a newly ingested original and deletes the previous
+     * one unless another session still uses it. Originals are stored by
+     * content, so sessions that uploaded the same file share it.
+     */
+    public void replaceOriginal(ImageState state, Path originalFile) {
+        Path previous = state.getOriginalFile();
+        state.setOriginalFile(originalFile);
+        if (previous != null && !previous.equals(originalFile)) {
+            retireOriginal(previous);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${session.expiry-check-ms:60000}")
+    public void expireIdleSessions() {
+        for (Session session : getSessions()) {
+            if (session.getIdleMillis() > idleTimeoutMs) {
+                remove(session.getId());
+            }
+        }
+        long now = System.currentTimeMillis();
+        creations.values().removeIf(window -> now - window.start >= RATE_WINDOW_MS);
+    }
+
+    // Drops the least recently used session if it has been idle long enough
+    private boolean evictLeastRecentlyUsed() {
+        List<Session> list = getSessions();
+        if (list.isEmpty()) {
+            return true;
+        }
+        Session oldest = list.get(list.size() - 1);
+        if (oldest.getIdleMillis() < evictableAfterMs) {
+            logger.warn("Session limit of {} reached and every session was used in the last {} s", maxSessions,
+                    evictableAfterMs / 1000);
+            return false;
+        }
+        logger.warn("Session limit of {} reached, dropping least recently used session {}", maxSessions,
+                oldest.getKey());
+        remove(oldest.getId());
+        return true;
+    }
+
+    private static String keyOf(String id) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(id.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void retireOriginal(Path originalFile) {
+        if (originalFile == null) {
+            return;
+        }
+        for (Session session : sessions.values()) {
+            if (originalFile.equals(session.getState().getOriginalFile())) {
+                return;
+            }
+        }
+        imageIngestService.discard(originalFile);
+    }
+}
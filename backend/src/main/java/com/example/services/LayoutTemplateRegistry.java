@@ -0,0 +1,67 @@
+package com.example.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Service;
+
+import com.example.model.LayoutTemplate;
+import com.example.model.SheetGeometry;
+
+/**
+ * Registry of the standard print layout presets.
+ * The presets mirror LayoutOption.getStandardOptions() of the desktop
+ * generator (converted to millimetres). Sheet geometry is computed once per
+ * template and DPI and then served from a cache.
+ */
+@Service
+public class LayoutTemplateRegistry {
+
+    private final Map<String, LayoutTemplate> templates = new LinkedHashMap<>();
+    private final Map<String, SheetGeometry> geometryCache = new ConcurrentHashMap<>();
+
+    public LayoutTemplateRegistry() {
+        register(new LayoutTemplate("2x2-4x6in", "2x2 (4x6 inch)", 2, 2,
+                35, 45, 152.4, 101.6, 10, 5, 5, 5));
+        register(new LayoutTemplate("4x6-a4", "4x6 (A4)", 4, 6,
+                25, 35, 210, 297, 10, 10, 5, 5));
+        register(new LayoutTemplate("2x3-5x7in", "2x3 (5x7 inch)", 2, 3,
+                30, 40, 177.8, 127, 5, 5, 5, 5));
+        register(new LayoutTemplate("6x8-passport-a4", "6x8 Passport (A4)", 6, 8,
+                20, 25, 210, 297, 15, 15, 5, 5));
+    }
+
+    private void register(LayoutTemplate template) {
+        templates.put(template.getId(), template);
+    }
+
+    public List<LayoutTemplate> getTemplates() {
+        return Collections.unmodifiableList(new ArrayList<>(templates.values()));
+    }
+
+    /**
+     * @throws IllegalArgumentException If no template has the given ID
+     */
+    public LayoutTemplate getTemplate(String templateId) {
+        LayoutTemplate template = templates.get(templateId);
+        if (template == null) {
+            throw new IllegalArgumentException("Unknown layout template: " + templateId);
+        }
+        return template;
+    }
+
+    /**
+     * Returns the cached sheet geometry for a template at the given DPI.
+     *
+     * @throws IllegalArgumentException If no template has the given ID
+     */
+    public SheetGeometry getGeometry(String templateId, int dpi) {
+        LayoutTemplate template = getTemplate(templateId);
+        return geometryCache.computeIfAbsent(templateId + "@" + dpi,
+                key -> SheetGeometry.forTemplate(template, dpi));
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.services;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import com.example.model.DriveFile;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Local-directory stand-in for Google Drive.
+ * Files live under {@code storage.local.root}; file IDs are URL-safe encodings
+ * of the path relative to that root. An optional simulated latency is added to
+ * every call so Drive-backed workflows can be load-tested without network access.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "storage.provider", havingValue = "local")
+public class LocalDriveStorage implements StorageProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalDriveStorage.class);
+    private static final int THUMBNAIL_SIZE = 220;
+
+    @Value("${storage.local.root:./local_drive}")
+    private String rootDirectory;
+
+    @Value("${storage.local.latency-ms:0}")
+    private long latencyMs;
+
+    @Value("${storage.local.latency-jitter-ms:0}")
+    private long latencyJitterMs;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(rootDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        logger.info("Local storage initialized at {} (latency {} ms +/- {} ms)", root, latencyMs, latencyJitterMs);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public List<DriveFile> list(String folderId) throws IOException {
+        simulateLatency();
+        try (Stream<Path> entries = Files.list(resolveFolder(folderId))) {
+            List<DriveFile> files = new ArrayList<>();
+            for (Path path : entries.sorted(Comparator.comparing(Path::getFileName)).collect(Collectors.toList())) {
+                files.add(toDriveFile(path));
+            }
+            return files;
+        }
+    }
+
+    @Override
+    public List<DriveFile> listImages(String folderId) throws IOException {
+        return list(folderId).stream()
+                .filter(DriveFile::isImage)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<String, DriveFile> getDetails(List<String> fileIds) throws IOException {
+        // One simulated round-trip for the whole lookup, like a Drive batch request
+        simulateLatency();
+        Map<String, DriveFile> details = new LinkedHashMap<>();
+        for (String fileId : fileIds) {
+            Path path = resolve(fileId);
+            if (Files.exists(path)) {
+                details.put(fileId, toDriveFile(path));
+            }
+        }
+        return details;
+    }
+
+    @Override
+    public byte[] downloadFile(String fileId) throws IOException {
+        simulateLatency();
+        return Files.readAllBytes(resolveExisting(fileId));
+    }
+
+    @Override
+    public byte[] downloadThumbnail(String fileId) throws IOException {
+        simulateLatency();
+        Path path = resolveExisting(fileId);
+        BufferedImage image = ImageIO.read(path.toFile());
+        if (image == null) {
+            return Files.readAllBytes(path);
+        }
+
+        double scale = Math.min(1.0, (double) THUMBNAIL_SIZE / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = thumbnail.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(thumbnail, "jpg", out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public DriveFile uploadFile(InputStream inputStream, String fileName, String mimeType, String folderId)
+            throws IOException {
+        simulateLatency();
+        Path folder = resolveFolder(folderId);
+        Path target = uniqueName(folder, sanitize(fileName));
+        writeAtomically(target, inputStream);
+        logger.info("Stored {} in local storage", target);
+        return toDriveFile(target);
+    }
+
+    @Override
+    public DriveFile updateFile(String fileId, byte[] newContent, String newName, String mimeType)
+            throws IOException {
+        simulateLatency();
+        Path path = resolveExisting(fileId);
+        writeAtomically(path, new ByteArrayInputStream(newContent));
+        if (newName != null && !newName.isEmpty() && !newName.equals(path.getFileName().toString())) {
+            Path renamed = uniqueName(path.getParent(), sanitize(newName));
+            path = Files.move(path, renamed);
+        }
+        return toDriveFile(path);
+    }
+
+    @Override
+    public DriveFile createFolder(String folderName, String parentFolderId) throws IOException {
+        simulateLatency();
+        Path folder = uniqueName(resolveFolder(parentFolderId), sanitize(folderName));
+        Files.createDirectories(folder);
+        return toDriveFile(folder);
+    }
+
+    private void simulateLatency() {
+        long delay = latencyMs;
+        if (latencyJitterMs > 0) {
+            delay += ThreadLocalRandom.current().nextLong(-latencyJitterMs, latencyJitterMs + 1);
+        }
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private DriveFile toDriveFile(Path path) throws IOException {
+        boolean folder = Files.isDirectory(path);
+        String mimeType = folder ? FOLDER_MIME_TYPE : Files.probeContentType(path);
+        if (mimeType == null) {
+            mimeType = guessMimeType(path.getFileName().toString());
+        }
+        DriveFile file = new DriveFile(
+                toId(path),
+                path.getFileName().toString(),
+                mimeType,
+                new Date(Files.getLastModifiedTime(path).toMillis()),
+                path.toUri().toString(),
+                folder ? 0 : Files.size(path));
+        if (!folder) {
+            file.setWebContentLink(path.toUri().toString());
+        }
+        return file;
+    }
+
+    private String guessMimeType(String name) {
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            return "image/jpeg";
+        } else if (lower.endsWith(".png")) {
+            return "image/png";
+        } else if (lower.endsWith(".gif")) {
+            return "image/gif";
+        } else if (lower.endsWith(".bmp")) {
+            return "image/bmp";
+        }
+        return "application/octet-stream";
+    }
+
+    private String toId(Path path) {
+        String relative = root.relativize(path).toString().replace('\\', '/');
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(relative.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path resolve(String fileId) throws IOException {
+        String relative;
+        try {
+            relative = new String(Base64.getUrlDecoder().decode(fileId), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid file ID: " + fileId);
+        }
+        Path path = root.resolve(relative).normalize();
+        // Never allow IDs to escape the storage root
+        if (!path.startsWith(root)) {
+            throw new IOException("Invalid file ID: " + fileId);
+        }
+        return path;
+    }
+
+    private Path resolveExisting(String fileId) throws IOException {
+        Path path = resolve(fileId);
+        if (!Files.isRegularFile(path)) {
+            throw new IOException("File not found: " + fileId);
+        }
+        return path;
+    }
+
+    private Path resolveFolder(String folderId) throws IOException {
+        if (folderId == null || folderId.isEmpty() || "root".equals(folderId)) {
+            return root;
+        }
+        Path folder = resolve(folderId);
+        if (!Files.isDirectory(folder)) {
+            throw new IOException("Folder not found: " + folderId);
+        }
+        return folder;
+    }
+
+    private String sanitize(String name) {
+        String cleaned = name == null ? "" : name.replaceAll("[\\\\/:*?\"<>|]", "_").trim();
+        return cleaned.isEmpty() || cleaned.equals(".") || cleaned.equals("..") ? "untitled" : cleaned;
+    }
+
+    private Path uniqueName(Path folder, String name) {
+        Path candidate = folder.resolve(name);
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 1; Files.exists(candidate); i++) {
+            candidate = folder.resolve(base + " (" + i + ")" + extension);
+        }
+        return candidate;
+    }
+
+    private void writeAtomically(Path target, InputStream content) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.services;
+
+import com.example.model.BatchSlot;
+import com.example.model.ComposedSheet;
+import com.example.model.ImageBuffers;
+import com.example.model.ImageState;
+import com.example.model.MemoryCategory;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Keeps track of how much memory the editor's images take, per session and
+ * per {@link MemoryCategory}, and sheds the least valuable parts before the
+ * heap runs out.
+ * <p>
+ * Accounted memory covers image pixels held by editor sessions (their edit
+ * history, batch workspace and composed sheets), the decoded background cache
+ * and the OpenCV Mat views (native). ONNX Runtime and OpenCV scratch
+ * allocations are not visible to the JVM; they show up only as the gap
+ * between the process RSS and the JVM's own usage.
+ * <p>
+ * A periodic check measures everything and, if the total is over budget,
+ * evicts in this order until it is back under the low-water mark: the
+ * background cache and Mat views, composed sheets, redo stacks, undo history
+ * beyond the newest few steps (least recently used sessions first), and
+ * finally whole sessions that have been idle for a while.
+ */
+@Service
+public class MemoryAccountingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryAccountingService.class);
+
+    private final ImageStateRegistry registry;
+    private final BackgroundLibrary backgroundLibrary;
+    private final SheetComposerService sheetComposerService;
+    private final MeterRegistry meterRegistry;
+
+    private final long budgetBytes;
+    private final long lowWaterBytes;
+    private final int keepHistory;
+    private final long evictIdleMs;
+
+    private final AtomicReference<Map<MemoryCategory, Long>> lastTotals =
+            new AtomicReference<>(new EnumMap<>(MemoryCategory.class));
+
+    public MemoryAccountingService(ImageStateRegistry registry, BackgroundLibrary backgroundLibrary,
+            SheetComposerService sheetComposerService, MeterRegistry meterRegistry,
+            @Value("${memory.budget-mb:0}") long budgetMb,
+            @Value("${memory.low-water-percent:80}") int lowWaterPercent,
+            @Value("${memory.keep-history:3}") int keepHistory,
+            @Value("${memory.evict-idle-minutes:10}") long evictIdleMinutes) {
+        this.registry = registry;
+        this.backgroundLibrary = backgroundLibrary;
+        this.sheetComposerService = sheetComposerService;
+        this.meterRegistry = meterRegistry;
+        // By default leave 40% of the heap for request processing
+        this.budgetBytes = budgetMb > 0 ? budgetMb * 1024 * 1024 : Runtime.getRuntime().maxMemory() / 10 * 6;
+        this.lowWaterBytes = budgetBytes / 100 * Math.min(100, Math.max(0, lowWaterPercent));
+        this.keepHistory = keepHistory;
+        this.evictIdleMs = evictIdleMinutes * 60_000;
+    }
+
+    @PostConstruct
+    public void registerGauges() {
+        for (MemoryCategory category : MemoryCategory.values()) {
+            Gauge.builder("editor.memory", lastTotals, totals -> totals.get().getOrDefault(category, 0L))
+                    .description("Image memory held by the editor, as of the last check")
+                    .baseUnit("bytes")
+                    .tag("category", category.label())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("editor.memory.budget", () -> budgetBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("editor.sessions", registry, r -> r.getSessions().size())
+                .register(meterRegistry);
+        Gauge.builder("process.memory.rss", MemoryAccountingService::residentSetSize)
+                .description("Resident set size of the process, including native memory")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Measures, and evicts if over budget. Runs periodically.
+     */
+    @Scheduled(fixedDelayString = "${memory.check-ms:10000}", initialDelayString = "${memory.check-ms:10000}")
+    public void check() {
+        long total = sum(measureTotals());
+        if (total > budgetBytes) {
+            logger.warn("Editor memory {} MB is over the {} MB budget, evicting", total >> 20, budgetBytes >> 20);
+            evict(total - lowWaterBytes);
+        }
+    }
+
+    /**
+     * Frees at least the given number of bytes if it can.
+     *
+     * @return Bytes actually freed
+     */
+    public long evict(long bytesToFree) {
+        long freed = 0;
+
+        // Caches and Mat views are rebuilt on demand
+        freed += backgroundLibrary.trimCache(0);
+        List<ImageStateRegistry.Session> leastRecentFirst = registry.getSessions();
+        Collections.reverse(leastRecentFirst);
+        for (ImageStateRegistry.Session session : leastRecentFirst) {
+            freed += session.getState().dropMatView();
+            for (BatchSlot slot : session.getWorkspace().getSlots()) {
+                freed += slot.getState().dropMatView();
+            }
+        }
+
+        // Sheets can be composed again; edit history cannot
+        for (ImageStateRegistry.Session session : leastRecentFirst) {
+            if (freed >= bytesToFree) {
+                break;
+            }
+            freed += sheetComposerService.releaseSheets(session);
+        }
+        for (ImageStateRegistry.Session session : leastRecentFirst) {
+            if (freed >= bytesToFree) {
+                break;
+            }
+            ImageState state = session.getState();
+            freed += state.measureMemory().getOrDefault(MemoryCategory.FUTURE, 0L);
+            state.clearFuture();
+        }
+        for (ImageStateRegistry.Session session : leastRecentFirst) {
+            if (freed >= bytesToFree) {
+                break;
+            }
+            freed += session.getState().trimHistory(keepHistory);
+        }
+        for (ImageStateRegistry.Session session : leastRecentFirst) {
+            if (freed >= bytesToFree) {
+                break;
+            }
+            if (session.getIdleMillis() > evictIdleMs) {
+                long held = sum(measureSession(session));
+                if (registry.remove(session.getId())) {
+                    freed += held;
+                }
+            }
+        }
+
+        measureTotals();
+        logger.info("Evicted {} MB of editor memory ({} MB requested)", freed >> 20, Math.max(0, bytesToFree) >> 20);
+        return freed;
+    }
+
+    /**
+     * Full breakdown for the admin endpoint.
+     */
+    public Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        Map<MemoryCategory, Long> totals = new EnumMap<>(MemoryCategory.class);
+
+        List<Map<String, Object>> sessions = new ArrayList<>();
+        long composedSheets = 0;
+        int batchSlots = 0;
+        for (ImageStateRegistry.Session session : registry.getSessions()) {
+            ImageState state = session.getState();
+            Map<MemoryCategory, Long> usage = measureSession(session);
+            addAll(totals, usage);
+            long sheetBytes = measureSheets(session);
+            composedSheets += sheetBytes;
+            batchSlots += session.getWorkspace().size();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("key", session.getKey());
+            entry.put("idleSeconds", session.getIdleMillis() / 1000);
+            entry.put("historyDepth", state.getHistorySize());
+            entry.put("futureDepth", state.getFutureSize());
+            entry.put("batchSlots", session.getWorkspace().size());
+            entry.put("sheets", session.getSheets().size());
+            entry.put("sheetBytes", sheetBytes);
+            entry.put("totalBytes", sum(usage));
+            entry.put("bytes", labelled(usage));
+            sessions.add(entry);
+        }
+        long backgroundCache = backgroundLibrary.getCachedBytes();
+        totals.merge(MemoryCategory.CACHES, backgroundCache, Long::sum);
+        lastTotals.set(totals);
+
+        report.put("budgetBytes", budgetBytes);
+        report.put("lowWaterBytes", lowWaterBytes);
+        report.put("accountedBytes", sum(totals));
+        report.put("categories", labelled(totals));
+        report.put("sessions", sessions);
+        report.put("batchSlots", batchSlots);
+        report.put("caches", Map.of(
+                "backgroundLibraryBytes", backgroundCache,
+                "composedSheetsBytes", composedSheets));
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long direct = directBufferBytes();
+        long rss = residentSetSize();
+        Map<String, Object> process = new LinkedHashMap<>();
+        process.put("heapUsedBytes", heap.getUsed());
+        process.put("heapCommittedBytes", heap.getCommitted());
+        process.put("heapMaxBytes", heap.getMax());
+        process.put("directBufferBytes", direct);
+        process.put("rssBytes", rss);
+        // Native memory the JVM cannot attribute: ONNX Runtime, OpenCV, metaspace, thread stacks
+        process.put("untrackedNativeBytes", rss < 0 ? -1 : Math.max(0, rss - heap.getCommitted() - direct
+                - totals.getOrDefault(MemoryCategory.NATIVE, 0L)));
+        report.put("process", process);
+        return report;
+    }
+
+    private Map<MemoryCategory, Long> measureTotals() {
+        Map<MemoryCategory, Long> totals = new EnumMap<>(MemoryCategory.class);
+        for (ImageStateRegistry.Session session : registry.getSessions()) {
+            addAll(totals, measureSession(session));
+        }
+        totals.merge(MemoryCategory.CACHES, backgroundLibrary.getCachedBytes(), Long::sum);
+        lastTotals.set(totals);
+        return totals;
+    }
+
+    // The editor state, every batch slot, and composed sheets under CACHES
+    private static Map<MemoryCategory, Long> measureSession(ImageStateRegistry.Session session) {
+        Map<MemoryCategory, Long> totals = new EnumMap<>(MemoryCategory.class);
+        addAll(totals, session.getState().measureMemory());
+        for (BatchSlot slot : session.getWorkspace().getSlots()) {
+            addAll(totals, slot.getState().measureMemory());
+        }
+        totals.merge(MemoryCategory.CACHES, measureSheets(session), Long::sum);
+        return totals;
+    }
+
+    private static long measureSheets(ImageStateRegistry.Session session) {
+        long bytes = 0;
+        for (ComposedSheet sheet : session.getSheets()) {
+            bytes += ImageBuffers.sizeOf(sheet.getImage());
+        }
+        return bytes;
+    }
+
+    private static void addAll(Map<MemoryCategory, Long> totals, Map<MemoryCategory, Long> usage) {
+        usage.forEach((category, bytes) -> totals.merge(category, bytes, Long::sum));
+    }
+
+    private static long sum(Map<MemoryCategory, Long> usage) {
+        return usage.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static Map<String, Long> labelled(Map<MemoryCategory, Long> usage) {
+        Map<String, Long> labelled = new LinkedHashMap<>();
+        for (MemoryCategory category : MemoryCategory.values()) {
+            labelled.put(category.label(), usage.getOrDefault(category, 0L));
+        }
+        return labelled;
+    }
+
+    private static long directBufferBytes() {
+        long bytes = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            bytes += Math.max(0, pool.getMemoryUsed());
+        }
+        return bytes;
+    }
+
+    // From /proc on Linux; -1 elsewhere
+    private static long residentSetSize() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.debug("Could not read RSS: {}", e.getMessage());
+        }
+        return -1;
+    }
+}
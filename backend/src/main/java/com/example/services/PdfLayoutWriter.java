@@ -0,0 +1,88 @@
+package com.example.services;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import com.example.model.SheetGeometry;
+
+/**
+ * Writes a photo grid layout as a PDF.
+ * The photo is embedded once as an image XObject and every grid cell on every
+ * page references it, so file size and render time barely depend on the number
+ * of copies and the sheet is never rasterized.
+ */
+public class PdfLayoutWriter {
+
+    private static final float POINTS_PER_INCH = 72f;
+
+    private final BufferedImage photo;
+    private final SheetGeometry geometry;
+
+    /**
+     * @param photo    Photo to place in each cell, at its native resolution
+     * @param geometry Page size and photo placement; pixel positions are
+     *                 converted to points using the geometry's DPI
+     */
+    public PdfLayoutWriter(BufferedImage photo, SheetGeometry geometry) {
+        this.photo = photo;
+        this.geometry = geometry;
+    }
+
+    public int getCellsPerPage() {
+        return geometry.getCellCount();
+    }
+
+    /**
+     * Number of pages needed for the given number of copies.
+     * A non-positive copy count means one full sheet.
+     */
+    public int getPageCount(int copies) {
+        if (copies <= 0) {
+            return 1;
+        }
+        return (copies + getCellsPerPage() - 1) / getCellsPerPage();
+    }
+
+    /**
+     * Writes the layout, filling cells in order and adding pages until the
+     * requested number of copies has been placed.
+     *
+     * @param copies Number of photos to place; non-positive fills one sheet
+     * @param out    Destination stream, left open
+     */
+    public void write(int copies, OutputStream out) throws IOException {
+        int remaining = copies <= 0 ? getCellsPerPage() : copies;
+        float scale = POINTS_PER_INCH / geometry.getDpi();
+        float pageWidth = geometry.getSheetWidth() * scale;
+        float pageHeight = geometry.getSheetHeight() * scale;
+        float imageWidth = geometry.getPhotoWidth() * scale;
+        float imageHeight = geometry.getPhotoHeight() * scale;
+
+        try (PDDocument document = new PDDocument()) {
+            // Embedded once, referenced from every cell on every page
+            PDImageXObject image = LosslessFactory.createFromImage(document, photo);
+
+            while (remaining > 0) {
+                PDPage page = new PDPage(new PDRectangle(pageWidth, pageHeight));
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    for (int cell = 0; cell < getCellsPerPage() && remaining > 0; cell++, remaining--) {
+                        // PDF user space starts at the bottom-left corner
+                        float x = geometry.getCellX(cell) * scale;
+                        float y = pageHeight - geometry.getCellY(cell) * scale - imageHeight;
+                        content.drawImage(image, x, y, imageWidth, imageHeight);
+                    }
+                }
+            }
+            document.save(out);
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package com.example.services;
 
 import com.example.dto.PhotoEnhanceRequest;
+import com.example.model.ImageBuffers;
 import com.example.model.ImageState;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
 
 @Service
@@ -54,6 +54,14 @@ public class PhotoEnhanceService {
     }
     
     private BufferedImage applyBrightnessContrast(BufferedImage image, float brightnessValue, float contrastValue) {
+        return applyLut(image, buildLut(brightnessValue, contrastValue));
+    }
+    
+    /**
+     * Builds the 256-entry lookup table for one brightness/contrast setting.
+     * The same table is used for the red, green and blue channels.
+     */
+    public int[] buildLut(float brightnessValue, float contrastValue) {
         // For brightness: 
         // 0 is normal, 
         // negative values (-100 to 0) darken the image
@@ -71,42 +79,48 @@ public class PhotoEnhanceService {
             contrast = Math.max(0.1f, 1.0f + (contrastValue / 100.0f));
         }
         
-        // Create a compatible image type
-        BufferedImage output = new BufferedImage(
-            image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-            
-        // Draw the original image to ensure type compatibility
-        Graphics2D g2d = output.createGraphics();
-        g2d.drawImage(image, 0, 0, null);
-        g2d.dispose();
-        
-        // For simplicity and reliability, use the manual method for all cases
-        return manualEnhancement(output, brightness, contrast);
+        int[] lut = new int[256];
+        for (int i = 0; i < lut.length; i++) {
+            lut[i] = adjustComponent(i, brightness, contrast);
+        }
+        return lut;
     }
     
-    private BufferedImage manualEnhancement(BufferedImage image, float brightness, float contrast) {
-        BufferedImage output = new BufferedImage(
-            image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-            
-        // Manually adjust each pixel
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                int rgb = image.getRGB(x, y);
-                
-                int alpha = (rgb >> 24) & 0xFF;
-                int red = (rgb >> 16) & 0xFF;
-                int green = (rgb >> 8) & 0xFF;
-                int blue = rgb & 0xFF;
-                
-                // Apply brightness and contrast
-                red = adjustComponent(red, brightness, contrast);
-                green = adjustComponent(green, brightness, contrast);
-                blue = adjustComponent(blue, brightness, contrast);
-                
-                // Recombine
-                rgb = (alpha << 24) | (red << 16) | (green << 8) | blue;
-                output.setRGB(x, y, rgb);
+    /**
+     * Applies a lookup table to the red, green and blue channels in one pass.
+     * Alpha is kept; the result is always TYPE_INT_ARGB.
+     */
+    public BufferedImage applyLut(BufferedImage image, int[] lut) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        
+        // Canonical images are mapped straight from one pixel array to the other
+        if (ImageBuffers.isCanonical(image)) {
+            int[] in = ImageBuffers.pixels(image);
+            int[] out = ImageBuffers.pixels(output);
+            for (int i = 0; i < in.length; i++) {
+                int rgb = in[i];
+                out[i] = (rgb & 0xFF000000)
+                        | (lut[(rgb >> 16) & 0xFF] << 16)
+                        | (lut[(rgb >> 8) & 0xFF] << 8)
+                        | lut[rgb & 0xFF];
             }
+            return output;
+        }
+        
+        int[] row = new int[width];
+        
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                row[x] = (rgb & 0xFF000000)
+                        | (lut[(rgb >> 16) & 0xFF] << 16)
+                        | (lut[(rgb >> 8) & 0xFF] << 8)
+                        | lut[rgb & 0xFF];
+            }
+            output.setRGB(0, y, width, 1, row, 0, width);
         }
         
         return output;
@@ -149,13 +163,20 @@ public class PhotoEnhanceService {
             return null;
         }
         
+        return apply(originalImage, request);
+    }
+    
+    /**
+     * Applies brightness and contrast to the image without touching any editor state.
+     */
+    public BufferedImage apply(BufferedImage image, PhotoEnhanceRequest request) {
         // Check if both values are 0 - if so, just return original image without processing
         if (request.getBrightness() == 0 && request.getContrast() == 0) {
-            return originalImage;
+            return image;
         }
         
         return applyBrightnessContrast(
-            originalImage, 
+            image, 
             request.getBrightness(), 
             request.getContrast());
     }
@@ -2,141 +2,173 @@ package com.example.services;
 
 import com.example.dto.PhotoLayoutRequest;
 import com.example.model.ImageState;
+import com.example.model.SheetGeometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.IOException;
 
 @Service
 public class PhotoLayoutService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PhotoLayoutService.class);
+
+    // Pixel sizes of uploaded photos are interpreted at screen resolution
+    private static final int SCREEN_DPI = 96;
+    private static final int MIN_DPI = 72;
+    private static final int MAX_DPI = 1200;
+    // A0 is 841 x 1189 mm
+    private static final int MAX_PAPER_MM = 1200;
+    // Upper bound on PDF copies, so one request cannot ask for any number of pages
+    static final int MAX_COPIES = 1000;
+    // Sheets rendered whole into an editor image (A4 at 600 DPI is 35 megapixels);
+    // larger ones can only be streamed by /layout/export
+    static final long MAX_IN_MEMORY_PIXELS = 40_000_000L;
+
+    private final LayoutTemplateRegistry templateRegistry;
+
+    public PhotoLayoutService(LayoutTemplateRegistry templateRegistry) {
+        this.templateRegistry = templateRegistry;
+    }
+
     public ResponseEntity<String> createLayout(PhotoLayoutRequest request, ImageState state) {
         // Use original image instead of current image to prevent recursive grid creation
         BufferedImage originalImg = state.getOriginalImage();
         if (originalImg == null) return ResponseEntity.badRequest().body("No image loaded.");
         
         try {
+            // Render the whole sheet straight into an editor image, before touching the history
+            BufferedImage layoutImage = renderInMemory(request, originalImg);
+            logger.debug("Layout of {}x{} photo rendered as {}x{} sheet", originalImg.getWidth(),
+                    originalImg.getHeight(), layoutImage.getWidth(), layoutImage.getHeight());
+            
             // Save current image to history before applying layout
             BufferedImage currentImg = state.getCurrentImage();
-            state.pushHistory(state.cloneImage(currentImg));
+            state.pushHistory(currentImg);
             
             // Clear future stack when making a new edit
             state.clearFuture();
             
-            // Log the dimensions of the original image
-            System.out.println("Original image dimensions: " + originalImg.getWidth() + "x" + originalImg.getHeight() + " pixels");
-            
-            // Convert mm to pixels for processing (using 3.779528 as mm to px conversion)
-            final double mmToPx = 3.779528;
-            
-            // Calculate border size in pixels
-            int borderSizePx = (int) Math.round(request.getBorderSize() * mmToPx);
-            System.out.println("Border size: " + request.getBorderSize() + " mm (" + borderSizePx + " pixels)");
-            
-            // Create an image with the border
-            BufferedImage imageWithBorder = addBorder(originalImg, borderSizePx, Color.WHITE);
-            System.out.println("Image with border dimensions: " + imageWithBorder.getWidth() + "x" + imageWithBorder.getHeight() + " pixels");
-            
-            // Log the requested layout grid
-            System.out.println("Requested layout: " + request.getCols() + "x" + request.getRows() + 
-                             " (Width: " + request.getFinalWidth() + "mm, Height: " + request.getFinalHeight() + "mm)");
-            
-            // Create the final layout
-            BufferedImage layoutImage = createGridLayout(
-                imageWithBorder, 
-                request.getRows(), 
-                request.getCols(), 
-                request.getFinalWidth(),
-                request.getFinalHeight()
-            );
-            
-            System.out.println("Final layout image dimensions: " + layoutImage.getWidth() + "x" + layoutImage.getHeight() + " pixels");
-            
             // Update the current image
             state.setCurrentImage(layoutImage);
             
             return ResponseEntity.ok("Photo layout created successfully.");
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.warn("Failed to create layout", e);
             return ResponseEntity.badRequest().body("Failed to create layout: " + e.getMessage());
         }
     }
     
-    private BufferedImage addBorder(BufferedImage source, int borderSize, Color color) {
-        // If border size is 0, return the original image without a border
-        if (borderSize <= 0) {
-            System.out.println("No border requested, using original image dimensions");
-            return source;
-        }
-        
-        int width = source.getWidth();
-        int height = source.getHeight();
-        
-        // Create a new image with border
-        BufferedImage borderedImage = new BufferedImage(
-            width + (2 * borderSize),
-            height + (2 * borderSize),
-            BufferedImage.TYPE_INT_RGB
-        );
+    /**
+     * Lays out the given image without touching any editor state.
+     */
+    public BufferedImage apply(BufferedImage image, PhotoLayoutRequest request) {
+        return renderInMemory(request, image);
+    }
+    
+    /**
+     * Prepares a print export of the layout for the current original image.
+     * Unlike createLayout, nothing is stored in the image state; the returned
+     * renderer produces the sheet strip by strip as it is written out.
+     */
+    public TiledLayoutRenderer prepareExport(PhotoLayoutRequest request, ImageState state) {
+        BufferedImage originalImg = state.getOriginalImage();
+        if (originalImg == null) throw new IllegalStateException("No image loaded.");
         
-        // Create graphics and fill with border color
-        Graphics2D g2d = borderedImage.createGraphics();
-        g2d.setColor(color);
-        g2d.fillRect(0, 0, borderedImage.getWidth(), borderedImage.getHeight());
+        return createRenderer(resolveGeometry(request, originalImg), originalImg);
+    }
+    
+    /**
+     * Prepares a PDF export of the layout for the current original image.
+     * The photo keeps its native pixels and is only placed at the cell size,
+     * so the sheet is never rasterized.
+     */
+    public PdfLayoutWriter preparePdfExport(PhotoLayoutRequest request, ImageState state) {
+        BufferedImage originalImg = state.getOriginalImage();
+        if (originalImg == null) throw new IllegalStateException("No image loaded.");
+        if (request.getCopies() > MAX_COPIES) {
+            throw new IllegalArgumentException("Copies must be at most " + MAX_COPIES);
+        }
         
-        // Draw the original image in the center
-        g2d.drawImage(source, borderSize, borderSize, null);
-        g2d.dispose();
+        SheetGeometry geometry = resolveGeometry(request, originalImg);
+        logger.debug("PDF layout: {} cells per page, {} copies", geometry.getCellCount(), request.getCopies());
         
-        return borderedImage;
+        return new PdfLayoutWriter(originalImg, geometry);
     }
     
-    private BufferedImage createGridLayout(BufferedImage sourceImage, int rows, int cols, int finalWidthMm, int finalHeightMm) throws IOException {
-        // Convert mm to pixels for final size
-        final double mmToPx = 3.779528;
-        int finalWidthPx = (int) Math.round(finalWidthMm * mmToPx);
-        int finalHeightPx = (int) Math.round(finalHeightMm * mmToPx);
-        
-        // Calculate individual image dimensions
-        int imageWidth = sourceImage.getWidth();
-        int imageHeight = sourceImage.getHeight();
+    // The strip renderer keeps memory flat for exports, but an editor image needs the whole sheet
+    private BufferedImage renderInMemory(PhotoLayoutRequest request, BufferedImage originalImg) {
+        SheetGeometry geometry = resolveGeometry(request, originalImg);
+        if ((long) geometry.getSheetWidth() * geometry.getSheetHeight() > MAX_IN_MEMORY_PIXELS) {
+            throw new IllegalArgumentException("Sheet of " + geometry.getSheetWidth() + "x" + geometry.getSheetHeight()
+                    + " pixels is too large to edit at " + geometry.getDpi() + " DPI; export it instead");
+        }
+        return createRenderer(geometry, originalImg).toBufferedImage();
+    }
+    
+    private TiledLayoutRenderer createRenderer(SheetGeometry geometry, BufferedImage originalImg) {
+        logger.debug("Layout sheet {}x{} pixels at {} DPI", geometry.getSheetWidth(), geometry.getSheetHeight(),
+                geometry.getDpi());
         
-        // Log dimensions for debugging
-        System.out.println("Creating grid layout with: " + rows + " rows, " + cols + " columns");
-        System.out.println("Source image dimensions: " + imageWidth + "x" + imageHeight + " pixels");
-        System.out.println("Final canvas dimensions: " + finalWidthPx + "x" + finalHeightPx + " pixels");
+        // Scale the photo once; every cell is then a plain copy of it
+        BufferedImage photo = scaleTo(originalImg, geometry.getPhotoWidth(), geometry.getPhotoHeight());
+        return new TiledLayoutRenderer(photo, geometry);
+    }
+    
+    private SheetGeometry resolveGeometry(PhotoLayoutRequest request, BufferedImage originalImg) {
+        int dpi = request.getDpi();
+        if (dpi < MIN_DPI || dpi > MAX_DPI) {
+            throw new IllegalArgumentException("DPI must be between " + MIN_DPI + " and " + MAX_DPI);
+        }
         
-        // Create a blank white canvas of the required size
-        BufferedImage layoutImage = new BufferedImage(
-            finalWidthPx,
-            finalHeightPx,
-            BufferedImage.TYPE_INT_RGB
-        );
+        // Templates carry their own paper, photo size and spacing
+        if (request.getTemplateId() != null && !request.getTemplateId().isEmpty()) {
+            logger.debug("Using layout template {}", request.getTemplateId());
+            return templateRegistry.getGeometry(request.getTemplateId(), dpi);
+        }
         
-        // Fill the canvas with white
-        Graphics2D g2d = layoutImage.createGraphics();
-        g2d.setColor(Color.WHITE);
-        g2d.fillRect(0, 0, finalWidthPx, finalHeightPx);
+        if (!(request.getFinalWidth() > 0 && request.getFinalWidth() <= MAX_PAPER_MM
+                && request.getFinalHeight() > 0 && request.getFinalHeight() <= MAX_PAPER_MM)) {
+            throw new IllegalArgumentException("Paper width and height must be between 0 and " + MAX_PAPER_MM + " mm");
+        }
+        int sheetWidth = SheetGeometry.mmToPx(request.getFinalWidth(), dpi);
+        int sheetHeight = SheetGeometry.mmToPx(request.getFinalHeight(), dpi);
+        int borderSizePx = SheetGeometry.mmToPx(request.getBorderSize(), dpi);
+        if (request.getBorderSize() < 0 || sheetWidth <= 2 * borderSizePx || sheetHeight <= 2 * borderSizePx) {
+            throw new IllegalArgumentException("Paper is too small for the border");
+        }
         
-        // Set rendering hints for better quality
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        // The photo's pixel size is taken to be at screen resolution, so scale it to the output DPI,
+        // but never beyond one cell filling the sheet
+        double scale = Math.min((double) dpi / SCREEN_DPI, Math.min(
+                (double) (sheetWidth - 2 * borderSizePx) / originalImg.getWidth(),
+                (double) (sheetHeight - 2 * borderSizePx) / originalImg.getHeight()));
+        int photoWidth = Math.max(1, (int) Math.round(originalImg.getWidth() * scale));
+        int photoHeight = Math.max(1, (int) Math.round(originalImg.getHeight() * scale));
+        logger.debug("Grid {}x{} on {}x{} mm, border {} px, photo {}x{} px", request.getCols(), request.getRows(),
+                request.getFinalWidth(), request.getFinalHeight(), borderSizePx, photoWidth, photoHeight);
         
-        // Draw the source image in a grid pattern
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                int x = col * imageWidth;
-                int y = row * imageHeight;
-                
-                // Draw the image
-                g2d.drawImage(sourceImage, x, y, null);
-            }
+        return SheetGeometry.grid(request.getRows(), request.getCols(), photoWidth, photoHeight, borderSizePx,
+                sheetWidth, sheetHeight, dpi);
+    }
+    
+    private BufferedImage scaleTo(BufferedImage source, int width, int height) {
+        if (source.getWidth() == width && source.getHeight() == height) {
+            return source;
         }
         
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = scaled.createGraphics();
+        // Transparent areas end up white, as they would on the sheet
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(source, 0, 0, width, height, null);
         g2d.dispose();
-        return layoutImage;
+        return scaled;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,253 @@
+package com.example.services;
+
+import com.example.dto.CropRequest;
+import com.example.dto.PhotoEnhanceRequest;
+import com.example.dto.PipelineStep;
+import com.example.dto.ResizeRequest;
+import org.springframework.stereotype.Service;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Groups pipeline steps so that adjacent operations of the same kind run as
+ * a single pass over the pixels.
+ * <ul>
+ * <li>Consecutive crop, bilinear resize and face-center steps are folded into
+ * one affine transform and resampled once. Face detection for a face-center step
+ * runs on a small preview of the image as it would look at that point.</li>
+ * <li>Consecutive enhance steps are folded into one 256-entry lookup table.</li>
+ * </ul>
+ * Everything else, and any group of one, runs through the regular service.
+ */
+@Service
+public class PipelinePlanner {
+
+    // Longest side of the preview used for face detection inside a fused group
+    private static final int DETECTION_PREVIEW_SIZE = 640;
+
+    private final CropImageService cropImageService;
+    private final ResizeImageService resizeImageService;
+    private final FaceCenteringService faceCenteringService;
+    private final PhotoEnhanceService photoEnhanceService;
+
+    public PipelinePlanner(CropImageService cropImageService, ResizeImageService resizeImageService,
+            FaceCenteringService faceCenteringService, PhotoEnhanceService photoEnhanceService) {
+        this.cropImageService = cropImageService;
+        this.resizeImageService = resizeImageService;
+        this.faceCenteringService = faceCenteringService;
+        this.photoEnhanceService = photoEnhanceService;
+    }
+
+    public enum Kind {
+        GEOMETRY, TONE, SINGLE
+    }
+
+    /**
+     * A run of consecutive steps that is executed as one unit.
+     */
+    public static final class Stage {
+        private final Kind kind;
+        private final int firstIndex;
+        private final List<PipelineStep> steps;
+
+        Stage(Kind kind, int firstIndex, List<PipelineStep> steps) {
+            this.kind = kind;
+            this.firstIndex = firstIndex;
+            this.steps = Collections.unmodifiableList(steps);
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public List<PipelineStep> getSteps() {
+            return steps;
+        }
+
+        /**
+         * True if more than one step runs in this stage.
+         */
+        public boolean isFused() {
+            return steps.size() > 1;
+        }
+
+        /**
+         * Human readable label used in logs and error messages,
+         * e.g. "Step 2 (crop)" or "Steps 2-4 (crop, resize, face-center)".
+         */
+        public String describe() {
+            List<String> ops = new ArrayList<>();
+            for (PipelineStep step : steps) {
+                ops.add(step.getOp());
+            }
+            if (!isFused()) {
+                return "Step " + firstIndex + " (" + ops.get(0) + ")";
+            }
+            return "Steps " + firstIndex + "-" + (firstIndex + steps.size() - 1) + " (" + String.join(", ", ops) + ")";
+        }
+    }
+
+    /**
+     * Splits the steps into stages, merging adjacent steps that can share a pass.
+     *
+     * @param fuse If false, every step becomes its own stage
+     */
+    public List<Stage> plan(List<PipelineStep> steps, boolean fuse) {
+        List<Stage> stages = new ArrayList<>();
+        int i = 0;
+        while (i < steps.size()) {
+            Kind kind = kindOf(steps.get(i));
+            int end = i + 1;
+            if (fuse && kind != Kind.SINGLE) {
+                while (end < steps.size() && kindOf(steps.get(end)) == kind) {
+                    end++;
+                }
+            }
+            stages.add(new Stage(kind, i, new ArrayList<>(steps.subList(i, end))));
+            i = end;
+        }
+        return stages;
+    }
+
+    /**
+     * Runs a fused stage and returns the resulting image.
+     *
+     * @throws IllegalArgumentException If a step is malformed
+     */
+    public BufferedImage applyFused(BufferedImage image, Stage stage) {
+        switch (stage.getKind()) {
+            case GEOMETRY:
+                return applyGeometry(image, stage.getSteps());
+            case TONE:
+                return applyTone(image, stage.getSteps());
+            default:
+                throw new IllegalArgumentException("Stage cannot be fused: " + stage.describe());
+        }
+    }
+
+    private Kind kindOf(PipelineStep step) {
+        String op = step.getOp() == null ? "" : step.getOp();
+        switch (op) {
+            case "resize":
+                // Kernel resampling needs its own pass; only bilinear folds into the transform
+                return step.getResize() != null && resizeImageService.isBilinear(step.getResize())
+                        ? Kind.GEOMETRY : Kind.SINGLE;
+            case "crop":
+            case "face-center":
+                return Kind.GEOMETRY;
+            case "enhance":
+                return Kind.TONE;
+            default:
+                return Kind.SINGLE;
+        }
+    }
+
+    private BufferedImage applyGeometry(BufferedImage image, List<PipelineStep> steps) {
+        // Maps source pixels to output pixels; later steps are pre-concatenated
+        AffineTransform transform = new AffineTransform();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        // Face centering works on an opaque image with a white fill
+        boolean opaque = false;
+
+        for (PipelineStep step : steps) {
+            switch (step.getOp()) {
+                case "crop": {
+                    CropRequest crop = required(step.getCrop(), step.getOp());
+                    if (crop.getWidth() <= 0 || crop.getHeight() <= 0) {
+                        throw new IllegalArgumentException("Invalid crop dimensions: width and height must be positive");
+                    }
+                    Rectangle bounds = cropImageService.bounds(width, height, crop);
+                    transform.preConcatenate(AffineTransform.getTranslateInstance(-bounds.x, -bounds.y));
+                    width = bounds.width;
+                    height = bounds.height;
+                    break;
+                }
+                case "resize": {
+                    ResizeRequest resize = required(step.getResize(), step.getOp());
+                    if (resize.getWidth() <= 0 || resize.getHeight() <= 0) {
+                        throw new IllegalArgumentException("Invalid resize dimensions: width and height must be positive");
+                    }
+                    Dimension target = resizeImageService.targetSize(width, height, resize);
+                    transform.preConcatenate(AffineTransform.getScaleInstance(
+                            (double) target.width / width, (double) target.height / height));
+                    width = target.width;
+                    height = target.height;
+                    break;
+                }
+                case "face-center": {
+                    double scale = Math.min(1.0, (double) DETECTION_PREVIEW_SIZE / Math.max(width, height));
+                    AffineTransform previewTransform = new AffineTransform(transform);
+                    previewTransform.preConcatenate(AffineTransform.getScaleInstance(scale, scale));
+                    BufferedImage preview = render(image, previewTransform,
+                            Math.max(1, (int) Math.round(width * scale)),
+                            Math.max(1, (int) Math.round(height * scale)),
+                            BufferedImage.TYPE_INT_ARGB, null);
+                    int offsetX = (int) Math.round(faceCenteringService.findCenteringOffset(preview) / scale);
+                    transform.preConcatenate(AffineTransform.getTranslateInstance(offsetX, 0));
+                    opaque = true;
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Not a geometric operation: " + step.getOp());
+            }
+        }
+
+        if (opaque) {
+            return render(image, transform, width, height, BufferedImage.TYPE_INT_RGB, Color.WHITE);
+        }
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        return render(image, transform, width, height, type, null);
+    }
+
+    private BufferedImage render(BufferedImage source, AffineTransform transform, int width, int height,
+            int type, Color background) {
+        BufferedImage output = new BufferedImage(width, height, type);
+        Graphics2D g = output.createGraphics();
+        if (background != null) {
+            g.setColor(background);
+            g.fillRect(0, 0, width, height);
+        }
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(source, transform, null);
+        g.dispose();
+        return output;
+    }
+
+    private BufferedImage applyTone(BufferedImage image, List<PipelineStep> steps) {
+        int[] combined = null;
+        for (PipelineStep step : steps) {
+            PhotoEnhanceRequest enhance = required(step.getEnhance(), step.getOp());
+            // A zero adjustment leaves the image untouched, same as a single enhance step
+            if (enhance.getBrightness() == 0 && enhance.getContrast() == 0) {
+                continue;
+            }
+            int[] lut = photoEnhanceService.buildLut(enhance.getBrightness(), enhance.getContrast());
+            if (combined == null) {
+                combined = lut;
+            } else {
+                for (int i = 0; i < combined.length; i++) {
+                    combined[i] = lut[combined[i]];
+                }
+            }
+        }
+        return combined == null ? image : photoEnhanceService.applyLut(image, combined);
+    }
+
+    private <T> T required(T params, String op) {
+        if (params == null) {
+            throw new IllegalArgumentException("Missing parameters for " + op);
+        }
+        return params;
+    }
+}
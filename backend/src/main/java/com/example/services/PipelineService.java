@@ -0,0 +1,163 @@
+package com.example.services;
+
+import com.example.dto.BackgroundRemovalRequest;
+import com.example.dto.FaceCenteringRequest;
+import com.example.dto.PipelineRequest;
+import com.example.dto.PipelineStep;
+import com.example.metrics.ImageMetrics;
+import com.example.model.ImageState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Runs an ordered list of editing operations in one request.
+ * Steps are applied back to back on in-memory images; the editor state is
+ * only updated once, with a single history entry, when every step succeeded.
+ */
+@Service
+public class PipelineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineService.class);
+
+    private final CropImageService cropImageService;
+    private final ResizeImageService resizeImageService;
+    private final FaceCenteringService faceCenteringService;
+    private final BackgroundRemovalService backgroundRemovalService;
+    private final BackgroundReplaceService backgroundReplaceService;
+    private final PhotoEnhanceService photoEnhanceService;
+    private final PhotoLayoutService photoLayoutService;
+    private final PipelinePlanner planner;
+
+    public PipelineService(CropImageService cropImageService, ResizeImageService resizeImageService,
+            FaceCenteringService faceCenteringService, BackgroundRemovalService backgroundRemovalService,
+            BackgroundReplaceService backgroundReplaceService, PhotoEnhanceService photoEnhanceService,
+            PhotoLayoutService photoLayoutService, PipelinePlanner planner) {
+        this.cropImageService = cropImageService;
+        this.resizeImageService = resizeImageService;
+        this.faceCenteringService = faceCenteringService;
+        this.backgroundRemovalService = backgroundRemovalService;
+        this.backgroundReplaceService = backgroundReplaceService;
+        this.photoEnhanceService = photoEnhanceService;
+        this.photoLayoutService = photoLayoutService;
+        this.planner = planner;
+    }
+
+    public ResponseEntity<?> run(PipelineRequest request, ImageState state) {
+        BufferedImage img = state.getCurrentImage();
+        if (img == null) return ResponseEntity.badRequest().body("No image loaded.");
+        if (request.getSteps() == null || request.getSteps().isEmpty()) {
+            return ResponseEntity.badRequest().body("Pipeline has no steps.");
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            BufferedImage result = execute(img, request.getSteps(), request.isFuse());
+            logger.debug("Pipeline of {} steps completed in {} ms", request.getSteps().size(),
+                    System.currentTimeMillis() - start);
+
+            // One history entry for the whole pipeline
+            state.pushHistory(img);
+            state.clearFuture();
+            state.setCurrentImage(result);
+            // The matte and the enhancement reference belong to the old image
+            backgroundReplaceService.resetBackgroundState(state);
+            state.clearReferenceImage();
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ImageMetrics.time(ImageMetrics.ENCODE, () -> ImageIO.write(result, "png", baos));
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .body(baos.toByteArray());
+        } catch (Exception e) {
+            logger.warn("Pipeline failed", e);
+            return ResponseEntity.badRequest().body("Pipeline failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the steps in order and returns the final image.
+     * The input image is not modified.
+     *
+     * @throws IllegalArgumentException If a step is malformed or fails validation
+     * @throws Exception                If an operation fails
+     */
+    public BufferedImage execute(BufferedImage image, List<PipelineStep> steps) throws Exception {
+        return execute(image, steps, true);
+    }
+
+    /**
+     * Same as {@link #execute(BufferedImage, List)}, optionally running every
+     * step on its own instead of merging adjacent steps into shared passes.
+     */
+    public BufferedImage execute(BufferedImage image, List<PipelineStep> steps, boolean fuse) throws Exception {
+        return execute(image, steps, fuse, null);
+    }
+
+    /**
+     * Same as {@link #execute(BufferedImage, List, boolean)}, reporting the
+     * duration of every stage in nanoseconds.
+     *
+     * @param stageTimer Receives the stage description and its duration; may be null
+     */
+    public BufferedImage execute(BufferedImage image, List<PipelineStep> steps, boolean fuse,
+            ObjLongConsumer<String> stageTimer) throws Exception {
+        BufferedImage current = image;
+        for (PipelinePlanner.Stage stage : planner.plan(steps, fuse)) {
+            long start = System.nanoTime();
+            try {
+                current = stage.isFused()
+                        ? planner.applyFused(current, stage)
+                        : applyStep(current, stage.getSteps().get(0));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                throw new IllegalArgumentException(stage.describe() + ": " + e.getMessage(), e);
+            }
+            long elapsed = System.nanoTime() - start;
+            if (stageTimer != null) {
+                stageTimer.accept(stage.describe(), elapsed);
+            }
+            logger.debug("Pipeline {} took {} ms", stage.describe(), elapsed / 1_000_000);
+        }
+        return current;
+    }
+
+    private BufferedImage applyStep(BufferedImage image, PipelineStep step) throws Exception {
+        String op = step.getOp() == null ? "" : step.getOp();
+        switch (op) {
+            case "crop":
+                return cropImageService.apply(image, required(step.getCrop(), op));
+            case "resize":
+                return resizeImageService.apply(image, required(step.getResize(), op));
+            case "face-center":
+                // These two have no required parameters
+                return faceCenteringService.apply(image,
+                        step.getFaceCenter() != null ? step.getFaceCenter() : new FaceCenteringRequest());
+            case "background-remove":
+                return backgroundRemovalService.apply(image,
+                        step.getBackgroundRemove() != null ? step.getBackgroundRemove() : new BackgroundRemovalRequest());
+            case "background-replace":
+                return backgroundReplaceService.apply(image, required(step.getBackgroundReplace(), op));
+            case "enhance":
+                return photoEnhanceService.apply(image, required(step.getEnhance(), op));
+            case "layout":
+                return photoLayoutService.apply(image, required(step.getLayout(), op));
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + op);
+        }
+    }
+
+    private <T> T required(T params, String op) {
+        if (params == null) {
+            throw new IllegalArgumentException("Missing parameters for " + op);
+        }
+        return params;
+    }
+}
@@ -4,6 +4,7 @@ import com.example.dto.ResizeRequest;
 import com.example.model.ImageState;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
@@ -20,54 +21,82 @@ public class ResizeImageService {
         }
         
         // Save current image to history before resizing
-        state.pushHistory(cloneImage(img));
+        state.pushHistory(img);
         
         // Clear future stack when making a new edit
         state.clearFuture();
 
         try {
-            // Calculate dimensions to maintain aspect ratio
-            int targetWidth = resize.getWidth();
-            int targetHeight = resize.getHeight();
-            
-            // If maintain aspect ratio is true, calculate the correct dimensions
-            if (resize.isMaintainAspectRatio()) {
-                double aspectRatio = (double) img.getWidth() / img.getHeight();
-                
-                // When width is explicitly provided, adjust height
-                if (resize.isWidthProvided()) {
-                    targetHeight = (int) Math.round(targetWidth / aspectRatio);
-                } 
-                // When height is explicitly provided, adjust width
-                else if (resize.isHeightProvided()) {
-                    targetWidth = (int) Math.round(targetHeight * aspectRatio);
-                }
-            }
-            
-            // Create a new buffered image with the target dimensions
-            BufferedImage resized = new BufferedImage(targetWidth, targetHeight, img.getType());
-            Graphics2D g = resized.createGraphics();
-            
-            // Set rendering hints for better quality
-            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            
-            g.drawImage(img, 0, 0, targetWidth, targetHeight, null);
-            g.dispose();
-            
+            BufferedImage resized = apply(img, resize);
             state.setCurrentImage(resized);
-            return ResponseEntity.ok("Image resized successfully to " + targetWidth + "x" + targetHeight);
+            return ResponseEntity.ok("Image resized successfully to " + resized.getWidth() + "x" + resized.getHeight());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Failed to resize image: " + e.getMessage());
         }
     }
 
-    private BufferedImage cloneImage(BufferedImage img) {
-        BufferedImage copy = new BufferedImage(img.getWidth(), img.getHeight(), img.getType());
-        Graphics2D g = copy.createGraphics();
-        g.drawImage(img, 0, 0, null);
+    /**
+     * Resizes the image without touching any editor state.
+     */
+    public BufferedImage apply(BufferedImage img, ResizeRequest resize) {
+        if (resize.getWidth() <= 0 || resize.getHeight() <= 0) {
+            throw new IllegalArgumentException("Invalid resize dimensions: width and height must be positive");
+        }
+
+        Dimension target = targetSize(img.getWidth(), img.getHeight(), resize);
+        int targetWidth = target.width;
+        int targetHeight = target.height;
+        
+        // Kernel resampling unless the old single-pass bilinear scaling is asked for
+        if (!isBilinear(resize)) {
+            return ImageResampler.resize(img, targetWidth, targetHeight, ImageResampler.Filter.fromName(resize.getFilter()));
+        }
+        
+        // Create a new buffered image with the target dimensions
+        BufferedImage resized = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = resized.createGraphics();
+        
+        // Set rendering hints for better quality
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        
+        g.drawImage(img, 0, 0, targetWidth, targetHeight, null);
         g.dispose();
-        return copy;
+        
+        return resized;
+    }
+
+    /**
+     * True if the request uses Java2D bilinear scaling rather than the kernel resampler.
+     */
+    public boolean isBilinear(ResizeRequest resize) {
+        return "bilinear".equalsIgnoreCase(resize.getFilter());
+    }
+
+    /**
+     * Returns the output size for an image of the given size, applying the
+     * aspect ratio rules of the request.
+     */
+    public Dimension targetSize(int imageWidth, int imageHeight, ResizeRequest resize) {
+        // Calculate dimensions to maintain aspect ratio
+        int targetWidth = resize.getWidth();
+        int targetHeight = resize.getHeight();
+        
+        // If maintain aspect ratio is true, calculate the correct dimensions
+        if (resize.isMaintainAspectRatio()) {
+            double aspectRatio = (double) imageWidth / imageHeight;
+            
+            // When width is explicitly provided, adjust height
+            if (resize.isWidthProvided()) {
+                targetHeight = (int) Math.round(targetWidth / aspectRatio);
+            } 
+            // When height is explicitly provided, adjust width
+            else if (resize.isHeightProvided()) {
+                targetWidth = (int) Math.round(targetHeight * aspectRatio);
+            }
+        }
+        
+        return new Dimension(targetWidth, targetHeight);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,356 @@
+package com.example.services;
+
+import com.example.dto.SheetComposeItem;
+import com.example.dto.SheetComposeRequest;
+import com.example.model.BatchSlot;
+import com.example.model.ComposedSheet;
+import com.example.model.ImageBuffers;
+import com.example.model.SheetGeometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Packs photos of different sizes onto as few sheets as possible and renders
+ * the sheets in parallel.
+ * Packing uses the MaxRects heuristic with best-short-side-fit: photos are
+ * placed largest first, each on the first sheet with room for it, in the free
+ * area that leaves the least leftover.
+ * The rendered sheets are kept on the editor session that composed them.
+ */
+@Service
+public class SheetComposerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SheetComposerService.class);
+
+    private static final int MIN_DPI = 72;
+    private static final int MAX_DPI = 1200;
+    private static final int WHITE = 0xFFFFFF;
+    // A0 is 841 x 1189 mm
+    private static final double MAX_PAPER_MM = 1200;
+    // Pixels of one sheet (A4 at about 800 DPI) and of all sheets of one order
+    static final long MAX_SHEET_PIXELS = 1L << 26;
+    static final long MAX_TOTAL_PIXELS = 1L << 28;
+    // No real order has more photos per sheet; bounds the work before packing starts
+    static final int MAX_PHOTOS_PER_SHEET = 500;
+
+    @Value("${compose.max-sheets:20}")
+    private int maxSheets;
+
+    public ComposedSheet getSheet(ImageStateRegistry.Session session, int index) {
+        List<ComposedSheet> current = session.getSheets();
+        return index >= 0 && index < current.size() ? current.get(index) : null;
+    }
+
+    /**
+     * Drops the session's composed sheets to free their memory; the client
+     * composes again to get them back.
+     *
+     * @return Bytes of sheet images released
+     */
+    public long releaseSheets(ImageStateRegistry.Session session) {
+        long bytes = 0;
+        for (ComposedSheet sheet : session.getSheets()) {
+            bytes += ImageBuffers.sizeOf(sheet.getImage());
+        }
+        session.setSheets(Collections.emptyList());
+        return bytes;
+    }
+
+    /**
+     * Packs and renders the requested photos, replacing the session's
+     * previous result.
+     *
+     * @param request Paper settings and the (source, size, count) items
+     * @param session Session whose editor image ("current") and batch
+     *                workspace ("batch") are the sources
+     * @return Summary of the sheets and placements
+     * @throws IllegalArgumentException If the request is invalid or a photo
+     *                                  does not fit on the paper
+     */
+    public Map<String, Object> compose(SheetComposeRequest request, ImageStateRegistry.Session session) {
+        long start = System.currentTimeMillis();
+        int dpi = request.getDpi();
+        if (dpi < MIN_DPI || dpi > MAX_DPI) {
+            throw new IllegalArgumentException("DPI must be between " + MIN_DPI + " and " + MAX_DPI);
+        }
+        List<SheetComposeItem> items = request.getItems();
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("No items to compose");
+        }
+
+        if (!(request.getPaperWidth() > 0 && request.getPaperWidth() <= MAX_PAPER_MM
+                && request.getPaperHeight() > 0 && request.getPaperHeight() <= MAX_PAPER_MM)) {
+            throw new IllegalArgumentException("Paper width and height must be between 0 and " + MAX_PAPER_MM + " mm");
+        }
+        if (!(request.getMargin() >= 0 && request.getSpacing() >= 0)) {
+            throw new IllegalArgumentException("Margin and spacing must not be negative");
+        }
+
+        int sheetWidth = SheetGeometry.mmToPx(request.getPaperWidth(), dpi);
+        int sheetHeight = SheetGeometry.mmToPx(request.getPaperHeight(), dpi);
+        int margin = SheetGeometry.mmToPx(request.getMargin(), dpi);
+        int spacing = SheetGeometry.mmToPx(request.getSpacing(), dpi);
+        if ((long) sheetWidth * sheetHeight > MAX_SHEET_PIXELS) {
+            throw new IllegalArgumentException("Paper is too large to render at " + dpi + " DPI");
+        }
+        if (sheetWidth <= 2 * margin || sheetHeight <= 2 * margin) {
+            throw new IllegalArgumentException("Paper is too small for the margin");
+        }
+
+        // Resolve every source image up front so bad requests fail before any work
+        List<BufferedImage> sources = new ArrayList<>(items.size());
+        for (SheetComposeItem item : items) {
+            sources.add(resolveSource(item, session));
+        }
+
+        List<ComposedSheet> packed = pack(items, dpi, sheetWidth, sheetHeight, margin, spacing);
+        if ((long) sheetWidth * sheetHeight * packed.size() > MAX_TOTAL_PIXELS) {
+            throw new IllegalArgumentException("Order is too large to render at " + dpi + " DPI");
+        }
+        logger.debug("Packed {} items onto {} sheet(s) in {} ms", items.size(), packed.size(),
+                System.currentTimeMillis() - start);
+
+        // Scale each photo once, then render all sheets in parallel
+        BufferedImage[] tiles = new BufferedImage[items.size()];
+        IntStream.range(0, items.size()).parallel().forEach(i -> tiles[i] = GridStamper.toIntRgb(
+                fitToSize(sources.get(i), SheetGeometry.mmToPx(items.get(i).getWidth(), dpi),
+                        SheetGeometry.mmToPx(items.get(i).getHeight(), dpi))));
+        packed.parallelStream().forEach(sheet -> sheet.setImage(render(sheet, tiles, sheetWidth, sheetHeight)));
+        session.setSheets(Collections.unmodifiableList(packed));
+
+        long elapsed = System.currentTimeMillis() - start;
+        logger.debug("Composed {} sheet(s) at {} DPI in {} ms", packed.size(), dpi, elapsed);
+
+        long usedArea = 0;
+        List<Map<String, Object>> sheetSummaries = new ArrayList<>();
+        for (ComposedSheet sheet : packed) {
+            List<Map<String, Object>> placements = new ArrayList<>();
+            for (ComposedSheet.Placement placement : sheet.getPlacements()) {
+                usedArea += (long) placement.getWidth() * placement.getHeight();
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("item", placement.getItem());
+                entry.put("x", placement.getX());
+                entry.put("y", placement.getY());
+                entry.put("width", placement.getWidth());
+                entry.put("height", placement.getHeight());
+                placements.add(entry);
+            }
+            Map<String, Object> summary = new HashMap<>();
+            summary.put("index", sheet.getIndex());
+            summary.put("placements", placements);
+            sheetSummaries.add(summary);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("sheetCount", packed.size());
+        response.put("sheetWidth", sheetWidth);
+        response.put("sheetHeight", sheetHeight);
+        response.put("dpi", dpi);
+        response.put("utilization", (double) usedArea / ((long) sheetWidth * sheetHeight * packed.size()));
+        response.put("sheets", sheetSummaries);
+        response.put("elapsedMs", elapsed);
+        return response;
+    }
+
+    private BufferedImage resolveSource(SheetComposeItem item, ImageStateRegistry.Session session) {
+        if (item.getWidth() <= 0 || item.getHeight() <= 0 || item.getCount() <= 0) {
+            throw new IllegalArgumentException("Item size and count must be positive");
+        }
+        BufferedImage image;
+        if ("batch".equalsIgnoreCase(item.getSource())) {
+            BatchSlot slot = session.getWorkspace().getSlot(item.getSlot());
+            image = slot == null ? null : slot.getState().getCurrentImage();
+            if (image == null) {
+                throw new IllegalArgumentException("Batch slot " + item.getSlot() + " has no image");
+            }
+        } else {
+            image = session.getState().getCurrentImage();
+            if (image == null) {
+                throw new IllegalArgumentException("No image loaded.");
+            }
+        }
+        return image;
+    }
+
+    private List<ComposedSheet> pack(List<SheetComposeItem> items, int dpi, int sheetWidth, int sheetHeight,
+            int margin, int spacing) {
+        // Each photo reserves its spacing on the right and bottom; the usable
+        // area grows by the same amount so the last row and column need none
+        int binWidth = sheetWidth - 2 * margin + spacing;
+        int binHeight = sheetHeight - 2 * margin + spacing;
+
+        int[] widths = new int[items.size()];
+        int[] heights = new int[items.size()];
+        long photos = 0;
+        double area = 0;
+        for (int i = 0; i < items.size(); i++) {
+            SheetComposeItem item = items.get(i);
+            widths[i] = SheetGeometry.mmToPx(item.getWidth(), dpi);
+            heights[i] = SheetGeometry.mmToPx(item.getHeight(), dpi);
+            if (widths[i] + spacing > binWidth || heights[i] + spacing > binHeight) {
+                throw new IllegalArgumentException("Item " + i + " (" + item.getWidth() + "x" + item.getHeight() +
+                        " mm) does not fit on the paper");
+            }
+            photos += item.getCount();
+            area += (double) item.getCount() * (widths[i] + spacing) * (heights[i] + spacing);
+        }
+        // Orders that cannot possibly fit are rejected before they are expanded into pieces
+        if (photos > (long) maxSheets * MAX_PHOTOS_PER_SHEET || area > (double) maxSheets * binWidth * binHeight) {
+            throw new IllegalArgumentException("Order needs more than " + maxSheets + " sheets");
+        }
+
+        // Expand counts into individual photos: {item, width, height}
+        List<int[]> pieces = new ArrayList<>((int) photos);
+        for (int i = 0; i < items.size(); i++) {
+            for (int n = 0; n < items.get(i).getCount(); n++) {
+                pieces.add(new int[] { i, widths[i], heights[i] });
+            }
+        }
+        // Largest first packs tightest
+        pieces.sort((a, b) -> Long.compare((long) b[1] * b[2], (long) a[1] * a[2]));
+
+        List<ComposedSheet> result = new ArrayList<>();
+        List<List<Rectangle>> freeRects = new ArrayList<>();
+        for (int[] piece : pieces) {
+            int width = piece[1] + spacing;
+            int height = piece[2] + spacing;
+            Rectangle position = null;
+            int sheet = 0;
+            while (sheet < result.size()) {
+                position = findPosition(freeRects.get(sheet), width, height);
+                if (position != null) {
+                    break;
+                }
+                sheet++;
+            }
+            if (position == null) {
+                if (result.size() >= maxSheets) {
+                    throw new IllegalArgumentException("Order needs more than " + maxSheets + " sheets");
+                }
+                result.add(new ComposedSheet(result.size()));
+                List<Rectangle> free = new ArrayList<>();
+                free.add(new Rectangle(0, 0, binWidth, binHeight));
+                freeRects.add(free);
+                position = findPosition(free, width, height);
+            }
+            splitFreeRects(freeRects.get(sheet), position);
+            result.get(sheet).addPlacement(new ComposedSheet.Placement(piece[0],
+                    margin + position.x, margin + position.y, piece[1], piece[2]));
+        }
+        return result;
+    }
+
+    /**
+     * MaxRects best-short-side-fit: picks the free rectangle that leaves the
+     * smallest leftover on its shorter side.
+     */
+    private Rectangle findPosition(List<Rectangle> free, int width, int height) {
+        Rectangle best = null;
+        int bestShort = Integer.MAX_VALUE;
+        int bestLong = Integer.MAX_VALUE;
+        for (Rectangle rect : free) {
+            if (width <= rect.width && height <= rect.height) {
+                int leftoverX = rect.width - width;
+                int leftoverY = rect.height - height;
+                int shortSide = Math.min(leftoverX, leftoverY);
+                int longSide = Math.max(leftoverX, leftoverY);
+                if (shortSide < bestShort || (shortSide == bestShort && longSide < bestLong)) {
+                    best = new Rectangle(rect.x, rect.y, width, height);
+                    bestShort = shortSide;
+                    bestLong = longSide;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void splitFreeRects(List<Rectangle> free, Rectangle used) {
+        List<Rectangle> split = new ArrayList<>();
+        for (Iterator<Rectangle> it = free.iterator(); it.hasNext();) {
+            Rectangle rect = it.next();
+            if (!rect.intersects(used)) {
+                continue;
+            }
+            it.remove();
+            // Keep the maximal free areas on each side of the used rectangle
+            if (used.x > rect.x) {
+                split.add(new Rectangle(rect.x, rect.y, used.x - rect.x, rect.height));
+            }
+            if (used.x + used.width < rect.x + rect.width) {
+                split.add(new Rectangle(used.x + used.width, rect.y,
+                        rect.x + rect.width - used.x - used.width, rect.height));
+            }
+            if (used.y > rect.y) {
+                split.add(new Rectangle(rect.x, rect.y, rect.width, used.y - rect.y));
+            }
+            if (used.y + used.height < rect.y + rect.height) {
+                split.add(new Rectangle(rect.x, used.y + used.height,
+                        rect.width, rect.y + rect.height - used.y - used.height));
+            }
+        }
+        free.addAll(split);
+
+        // Drop free rectangles contained in another one
+        for (int i = free.size() - 1; i >= 0; i--) {
+            for (int j = 0; j < free.size(); j++) {
+                if (i != j && free.get(j).contains(free.get(i))) {
+                    free.remove(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    private BufferedImage render(ComposedSheet sheet, BufferedImage[] tiles, int sheetWidth, int sheetHeight) {
+        BufferedImage image = new BufferedImage(sheetWidth, sheetHeight, BufferedImage.TYPE_INT_RGB);
+        GridStamper.fill(image, WHITE);
+
+        // Stamp all copies of the same item in one pass
+        Map<Integer, List<ComposedSheet.Placement>> byItem = new HashMap<>();
+        for (ComposedSheet.Placement placement : sheet.getPlacements()) {
+            byItem.computeIfAbsent(placement.getItem(), k -> new ArrayList<>()).add(placement);
+        }
+        for (Map.Entry<Integer, List<ComposedSheet.Placement>> entry : byItem.entrySet()) {
+            List<ComposedSheet.Placement> placements = entry.getValue();
+            int[] xs = new int[placements.size()];
+            int[] ys = new int[placements.size()];
+            for (int i = 0; i < xs.length; i++) {
+                xs[i] = placements.get(i).getX();
+                ys[i] = placements.get(i).getY();
+            }
+            GridStamper.stamp(tiles[entry.getKey()], image, 0, xs, ys);
+        }
+        return image;
+    }
+
+    private BufferedImage fitToSize(BufferedImage source, int width, int height) {
+        // Centre-crop to the target aspect ratio so photos are never stretched
+        double scale = Math.max((double) width / source.getWidth(), (double) height / source.getHeight());
+        int cropWidth = Math.min(source.getWidth(), (int) Math.round(width / scale));
+        int cropHeight = Math.min(source.getHeight(), (int) Math.round(height / scale));
+        int cropX = (source.getWidth() - cropWidth) / 2;
+        int cropY = (source.getHeight() - cropHeight) / 2;
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = scaled.createGraphics();
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(source, 0, 0, width, height, cropX, cropY, cropX + cropWidth, cropY + cropHeight, null);
+        g2d.dispose();
+        return scaled;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import com.example.model.DriveFile;
+
+/**
+ * Storage backend used for importing and exporting photos.
+ * The Google Drive implementation is the default; a local-directory stand-in
+ * can be enabled with {@code storage.provider=local} to run Drive-backed
+ * workflows offline or benchmark them on a single machine.
+ */
+public interface StorageProvider {
+
+    String FOLDER_MIME_TYPE = "application/vnd.google-apps.folder";
+
+    /**
+     * @return true if the storage can currently be used (e.g. the user is authenticated)
+     */
+    boolean isAvailable();
+
+    /**
+     * Lists the files and folders directly inside a folder.
+     * 
+     * @param folderId Folder to list, or null for the root
+     * @return Files and folders in the folder
+     * @throws IOException If the folder cannot be listed
+     */
+    List<DriveFile> list(String folderId) throws IOException;
+
+    /**
+     * Lists every image directly inside a folder, without page limits.
+     * 
+     * @param folderId Folder to list
+     * @return Image files in the folder
+     * @throws IOException If the folder cannot be listed
+     */
+    List<DriveFile> listImages(String folderId) throws IOException;
+
+    /**
+     * Looks up metadata for several files at once.
+     * 
+     * @param fileIds IDs of the files to look up
+     * @return Map of file ID to metadata; unknown files are omitted
+     * @throws IOException If the lookup fails as a whole
+     */
+    Map<String, DriveFile> getDetails(List<String> fileIds) throws IOException;
+
+    /**
+     * @param fileId ID of the file to download
+     * @return The file content
+     * @throws IOException If the file cannot be read
+     */
+    byte[] downloadFile(String fileId) throws IOException;
+
+    /**
+     * @param fileId ID of the file to get a thumbnail for
+     * @return Thumbnail image bytes
+     * @throws IOException If the file cannot be read
+     */
+    byte[] downloadThumbnail(String fileId) throws IOException;
+
+    /**
+     * Uploads a new file.
+     * 
+     * @param inputStream File content
+     * @param fileName    Name of the new file
+     * @param mimeType    MIME type of the content
+     * @param folderId    Folder to upload to, or null for the root
+     * @return The created file
+     * @throws IOException If the upload fails
+     */
+    DriveFile uploadFile(InputStream inputStream, String fileName, String mimeType, String folderId)
+            throws IOException;
+
+    /**
+     * Replaces the content of an existing file.
+     * 
+     * @param fileId     ID of the file to update
+     * @param newContent New file content
+     * @param newName    Optional new name (null to keep the current one)
+     * @param mimeType   MIME type of the content
+     * @return The updated file
+     * @throws IOException If the update fails
+     */
+    DriveFile updateFile(String fileId, byte[] newContent, String newName, String mimeType) throws IOException;
+
+    /**
+     * @param folderName     Name of the new folder
+     * @param parentFolderId Parent folder, or null for the root
+     * @return The created folder
+     * @throws IOException If the folder cannot be created
+     */
+    DriveFile createFolder(String folderName, String parentFolderId) throws IOException;
+}
@@ -0,0 +1,290 @@
+package com.example.services;
+
+import com.example.metrics.ImageMetrics;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Vector;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import com.example.model.ImageBuffers;
+import com.example.model.SheetGeometry;
+
+/**
+ * Renders a photo grid sheet in horizontal strips.
+ * The sheet is never held in memory as a whole: the PNG encoder pulls rows
+ * from a {@link RenderedImage} view that renders one strip at a time, so
+ * peak memory is the scaled tile plus a single strip regardless of DPI.
+ */
+public class TiledLayoutRenderer {
+
+    // Target pixels per strip (about 4 MB of int RGB)
+    private static final int STRIP_PIXELS = 1 << 20;
+    private static final double MM_PER_INCH = 25.4;
+
+    private static final int WHITE = 0xFFFFFF;
+
+    private final BufferedImage tile;
+    private final int[] cellX;
+    private final int[] cellY;
+    private final int sheetWidth;
+    private final int sheetHeight;
+    private final int dpi;
+    private final int stripHeight;
+
+    /**
+     * @param tile     Photo already scaled to the geometry's photo size
+     * @param geometry Sheet size and photo placement; its DPI is written into
+     *                 the PNG metadata
+     */
+    public TiledLayoutRenderer(BufferedImage tile, SheetGeometry geometry) {
+        // Converted once so every cell is a plain row copy
+        this.tile = GridStamper.toIntRgb(tile);
+        this.cellX = new int[geometry.getCellCount()];
+        this.cellY = new int[geometry.getCellCount()];
+        for (int cell = 0; cell < cellX.length; cell++) {
+            cellX[cell] = geometry.getCellX(cell);
+            cellY[cell] = geometry.getCellY(cell);
+        }
+        this.sheetWidth = geometry.getSheetWidth();
+        this.sheetHeight = geometry.getSheetHeight();
+        this.dpi = geometry.getDpi();
+        this.stripHeight = Math.max(16, Math.min(sheetHeight, STRIP_PIXELS / sheetWidth));
+    }
+
+    public int getSheetWidth() {
+        return sheetWidth;
+    }
+
+    public int getSheetHeight() {
+        return sheetHeight;
+    }
+
+    public int getDpi() {
+        return dpi;
+    }
+
+    /**
+     * Renders rows [y0, y0 + strip.getHeight()) of the sheet into the given
+     * TYPE_INT_RGB strip.
+     */
+    public void renderStrip(BufferedImage strip, int y0) {
+        GridStamper.fill(strip, WHITE);
+        GridStamper.stamp(tile, strip, y0, cellX, cellY);
+    }
+
+    /**
+     * Renders the whole sheet into a single image in the canonical editor layout.
+     * Only suitable for screen resolutions; use {@link #writePng} for print output.
+     */
+    public BufferedImage toBufferedImage() {
+        return ImageMetrics.time(ImageMetrics.LAYOUT, () -> {
+            BufferedImage sheet = new BufferedImage(sheetWidth, sheetHeight, BufferedImage.TYPE_INT_RGB);
+            renderStrip(sheet, 0);
+            return ImageBuffers.adoptOpaque(sheet);
+        });
+    }
+
+    /**
+     * Streams the sheet as PNG, rendering strips on demand as the encoder
+     * consumes rows. The output carries a pHYs chunk with the sheet DPI.
+     */
+    public void writePng(OutputStream out) throws IOException {
+        RenderedImage view = new StripView();
+        ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(view);
+        Iterator<ImageWriter> writers = ImageIO.getImageWriters(type, "png");
+        if (!writers.hasNext()) {
+            throw new IOException("No PNG writer available");
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            IIOMetadata metadata = writer.getDefaultImageMetadata(type, param);
+            setDpi(metadata);
+            // Strips are rendered as the encoder pulls rows, so this covers layout as well
+            ImageMetrics.time(ImageMetrics.ENCODE, () -> {
+                writer.write(null, new IIOImage(view, null, metadata), param);
+                return null;
+            });
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void setDpi(IIOMetadata metadata) throws IOException {
+        // PNG stores resolution as pixels per metre
+        String pixelsPerMetre = Integer.toString((int) Math.round(dpi / MM_PER_INCH * 1000));
+        IIOMetadataNode phys = new IIOMetadataNode("pHYs");
+        phys.setAttribute("pixelsPerUnitXAxis", pixelsPerMetre);
+        phys.setAttribute("pixelsPerUnitYAxis", pixelsPerMetre);
+        phys.setAttribute("unitSpecifier", "meter");
+        IIOMetadataNode root = new IIOMetadataNode("javax_imageio_png_1.0");
+        root.appendChild(phys);
+        metadata.mergeTree("javax_imageio_png_1.0", root);
+    }
+
+    /**
+     * Read-only image view whose tiles are full-width strips of the sheet.
+     * The most recently rendered strip is cached since encoders read rows
+     * top to bottom.
+     */
+    private class StripView implements RenderedImage {
+
+        private final BufferedImage prototype = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        private BufferedImage strip;
+        private int stripIndex = -1;
+
+        private synchronized Raster strip(int index) {
+            if (index != stripIndex) {
+                int y0 = index * stripHeight;
+                int height = Math.min(stripHeight, sheetHeight - y0);
+                if (strip == null || strip.getHeight() != height) {
+                    strip = new BufferedImage(sheetWidth, height, BufferedImage.TYPE_INT_RGB);
+                }
+                renderStrip(strip, y0);
+                stripIndex = index;
+            }
+            return strip.getRaster().createTranslatedChild(0, index * stripHeight);
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return java.awt.Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return prototype.getColorModel();
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return prototype.getSampleModel().createCompatibleSampleModel(sheetWidth, stripHeight);
+        }
+
+        @Override
+        public int getWidth() {
+            return sheetWidth;
+        }
+
+        @Override
+        public int getHeight() {
+            return sheetHeight;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return (sheetHeight + stripHeight - 1) / stripHeight;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return sheetWidth;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return stripHeight;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            return strip(tileY);
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, sheetWidth, sheetHeight));
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            Rectangle bounds = rect.intersection(new Rectangle(0, 0, sheetWidth, sheetHeight));
+            WritableRaster result = prototype.getRaster()
+                    .createCompatibleWritableRaster(bounds.width, bounds.height)
+                    .createWritableTranslatedChild(bounds.x, bounds.y);
+            return copyData(result);
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if (raster == null) {
+                raster = prototype.getRaster().createCompatibleWritableRaster(sheetWidth, sheetHeight);
+            }
+            Rectangle bounds = raster.getBounds();
+            int firstStrip = bounds.y / stripHeight;
+            int lastStrip = (bounds.y + bounds.height - 1) / stripHeight;
+            for (int i = firstStrip; i <= lastStrip; i++) {
+                Raster source = strip(i);
+                Rectangle overlap = source.getBounds().intersection(bounds);
+                if (!overlap.isEmpty()) {
+                    raster.setRect(source.createChild(overlap.x, overlap.y, overlap.width, overlap.height,
+                            overlap.x, overlap.y, null));
+                }
+            }
+            return raster;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.example.services;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.example.dto.PipelineRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches an inbox directory and runs every new image through a pipeline recipe.
+ * <p>
+ * A file is only picked up once its size and modification time have not
+ * changed for {@code watch.stable-ms}, it can be opened and, for JPEG and PNG,
+ * it ends with the format's end marker, so half-copied camera exports are
+ * left alone. Files are decoded like uploads, at working resolution and
+ * upright. Ready files go to a fixed-size worker pool with a bounded
+ * queue; when the queue is full the files simply stay pending and are retried
+ * on the next tick. Results are written to the outbox as PNG, named after the
+ * whole source file name ({@code photo.jpg} gives {@code photo.jpg.png}), each
+ * outcome is appended to {@code manifest.jsonl} there, and the source is moved
+ * to {@code .done} or {@code .failed} inside the inbox. Neither step replaces
+ * an existing file; a name that is taken gets a number, e.g.
+ * {@code photo-1.jpg}.
+ */
+@Service
+@ConditionalOnProperty(name = "watch.enabled", havingValue = "true")
+public class WatchFolderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WatchFolderService.class);
+    private static final String MANIFEST_FILE = "manifest.jsonl";
+    private static final int INCOMPLETE_GRACE_FACTOR = 10;
+    private static final byte[] PNG_END = {'I', 'E', 'N', 'D', (byte) 0xAE, 0x42, 0x60, (byte) 0x82};
+
+    @Value("${watch.input-dir:./watch/inbox}")
+    private String inputDirectory;
+
+    @Value("${watch.output-dir:./watch/outbox}")
+    private String outputDirectory;
+
+    @Value("${watch.recipe:./watch/recipe.json}")
+    private String recipeFile;
+
+    @Value("${watch.threads:2}")
+    private int threads;
+
+    @Value("${watch.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${watch.stable-ms:1000}")
+    private long stableMs;
+
+    private final PipelineService pipelineService;
+    private final ImageIngestService imageIngestService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Files seen but not yet handed to a worker, keyed by path
+    private final Map<Path, FileProbe> pending = new LinkedHashMap<>();
+    // Files queued or being processed, so repeated events do not resubmit them
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private Path inbox;
+    private Path outbox;
+    private PipelineRequest recipe;
+    private WatchService watchService;
+    private ThreadPoolExecutor workers;
+    private Thread watcher;
+    private volatile boolean running;
+
+    public WatchFolderService(PipelineService pipelineService, ImageIngestService imageIngestService) {
+        this.pipelineService = pipelineService;
+        this.imageIngestService = imageIngestService;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path recipePath = Paths.get(recipeFile);
+        if (!Files.exists(recipePath)) {
+            throw new IllegalStateException("Watch folder recipe not found: " + recipePath.toAbsolutePath());
+        }
+        recipe = objectMapper.readValue(recipePath.toFile(), PipelineRequest.class);
+        if (recipe.getSteps() == null || recipe.getSteps().isEmpty()) {
+            throw new IllegalStateException("Watch folder recipe has no steps: " + recipePath.toAbsolutePath());
+        }
+
+        inbox = Paths.get(inputDirectory).toAbsolutePath().normalize();
+        outbox = Paths.get(outputDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(inbox);
+        Files.createDirectories(outbox);
+
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread t = new Thread(r, "watch-folder-worker");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        watchService = inbox.getFileSystem().newWatchService();
+        inbox.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+
+        running = true;
+        watcher = new Thread(this::watchLoop, "watch-folder");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("Watching {} -> {} with {} workers, queue {} ({} recipe steps)",
+                inbox, outbox, threads, queueCapacity, recipe.getSteps().size());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to close watch service: {}", e.getMessage());
+        }
+        if (workers != null) {
+            workers.shutdown();
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Watch folder workers did not finish in time");
+                workers.shutdownNow();
+            }
+        }
+        logger.info("Watch folder stopped: {} processed, {} failed", processed.get(), failed.get());
+    }
+
+    private void watchLoop() {
+        // Pick up anything that arrived while we were not running
+        rescan();
+        long tickMs = Math.max(50, Math.min(stableMs, 500));
+        while (running) {
+            try {
+                WatchKey key = watchService.poll(tickMs, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            // Events were dropped; the directory listing is the source of truth
+                            logger.warn("Watch events overflowed, rescanning {}", inbox);
+                            rescan();
+                        } else {
+                            track(inbox.resolve((Path) event.context()));
+                        }
+                    }
+                    key.reset();
+                }
+                dispatchStableFiles();
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                logger.error("Watch folder loop error", e);
+            }
+        }
+    }
+
+    private void rescan() {
+        try (Stream<Path> files = Files.list(inbox)) {
+            files.forEach(this::track);
+        } catch (IOException e) {
+            logger.error("Failed to scan {}: {}", inbox, e.getMessage());
+        }
+    }
+
+    private void track(Path path) {
+        if (!isCandidate(path) || inFlight.contains(path)) {
+            return;
+        }
+        // A new event resets the stability timer
+        pending.put(path, null);
+    }
+
+    private void dispatchStableFiles() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, FileProbe>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, FileProbe> entry = it.next();
+            Path path = entry.getKey();
+            FileProbe probe;
+            try {
+                probe = FileProbe.of(path, now);
+            } catch (IOException e) {
+                // Deleted or renamed before it settled
+                it.remove();
+                continue;
+            }
+
+            FileProbe previous = entry.getValue();
+            if (previous == null || !previous.sameAs(probe)) {
+                entry.setValue(probe);
+                continue;
+            }
+            long quietMs = now - previous.since;
+            if (quietMs < stableMs || !isReadable(path)) {
+                continue;
+            }
+            // A writer may pause longer than the stability window; wait for the
+            // format's end marker, but not forever in case the file is corrupt
+            if (quietMs < INCOMPLETE_GRACE_FACTOR * stableMs && !hasEndMarker(path)) {
+                continue;
+            }
+
+            if (workers.getQueue().remainingCapacity() == 0) {
+                // Backpressure: leave the rest pending until workers catch up
+                logger.debug("Watch queue full, {} files waiting", pending.size());
+                return;
+            }
+            inFlight.add(path);
+            try {
+                workers.execute(() -> process(path));
+                it.remove();
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(path);
+                return;
+            }
+        }
+    }
+
+    private void process(Path source) {
+        long start = System.currentTimeMillis();
+        String name = source.getFileName().toString();
+        // The source extension stays in the name so photo.jpg and photo.png do not collide
+        Path output = freeName(outbox, name + ".png");
+        try {
+            BufferedImage image;
+            try (InputStream in = Files.newInputStream(source)) {
+                image = imageIngestService.decode(in).getImage();
+            }
+            BufferedImage result = pipelineService.execute(image, recipe.getSteps(), recipe.isFuse());
+            writeAtomically(result, output);
+            moveSource(source, ".done");
+            processed.incrementAndGet();
+            appendManifest(name, output.getFileName().toString(), "done", System.currentTimeMillis() - start, null);
+            logger.info("Processed {} -> {} in {} ms", name, output.getFileName(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            logger.error("Failed to process {}: {}", name, e.getMessage());
+            try {
+                moveSource(source, ".failed");
+            } catch (IOException moveError) {
+                logger.warn("Failed to move {} aside: {}", name, moveError.getMessage());
+            }
+            appendManifest(name, null, "failed", System.currentTimeMillis() - start, e.getMessage());
+        } finally {
+            inFlight.remove(source);
+        }
+    }
+
+    private void writeAtomically(BufferedImage image, Path target) throws IOException {
+        Path temp = Files.createTempFile(outbox, ".watch-", ".tmp");
+        try {
+            if (!ImageIO.write(image, "png", temp.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void moveSource(Path source, String folder) throws IOException {
+        Path target = inbox.resolve(folder);
+        Files.createDirectories(target);
+        // Without REPLACE_EXISTING a file that appears in the meantime makes this fail rather than vanish
+        Files.move(source, freeName(target, source.getFileName().toString()));
+    }
+
+    private synchronized void appendManifest(String source, String output, String status, long elapsedMs, String error) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("time", System.currentTimeMillis());
+        entry.put("source", source);
+        entry.put("output", output);
+        entry.put("status", status);
+        entry.put("elapsedMs", elapsedMs);
+        if (error != null) {
+            entry.put("error", error);
+        }
+        try (Writer writer = Files.newBufferedWriter(outbox.resolve(MANIFEST_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(objectMapper.writeValueAsString(entry));
+            writer.write('\n');
+        } catch (IOException e) {
+            logger.warn("Failed to update manifest: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isCandidate(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.startsWith(".") || !Files.isRegularFile(path)) {
+            return false;
+        }
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png")
+                || name.endsWith(".bmp") || name.endsWith(".gif");
+    }
+
+    // Writers on some platforms hold an exclusive lock until the copy is done
+    private static boolean isReadable(Path path) {
+        try {
+            FileChannel.open(path, StandardOpenOption.READ).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // JPEG ends with an EOI marker and PNG with an IEND chunk; other formats are not checked
+    private static boolean hasEndMarker(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean jpeg = name.endsWith(".jpg") || name.endsWith(".jpeg");
+        if (!jpeg && !name.endsWith(".png")) {
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int length = jpeg ? 2 : PNG_END.length;
+            if (channel.size() < length) {
+                return false;
+            }
+            ByteBuffer tail = ByteBuffer.allocate(length);
+            channel.read(tail, channel.size() - length);
+            byte[] bytes = tail.array();
+            if (jpeg) {
+                return (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD9;
+            }
+            return Arrays.equals(bytes, PNG_END);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String baseName(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    // First of name, name-1, name-2... (numbered before the extension) that does not exist yet
+    private static Path freeName(Path directory, String name) {
+        String base = baseName(name);
+        String extension = name.substring(base.length());
+        Path target = directory.resolve(name);
+        for (int n = 1; Files.exists(target); n++) {
+            target = directory.resolve(base + "-" + n + extension);
+        }
+        return target;
+    }
+
+    /**
+     * Size and modification time of a file when it was last looked at.
+     */
+    private static final class FileProbe {
+        final long size;
+        final long modified;
+        final long since;
+
+        FileProbe(long size, long modified, long since) {
+            this.size = size;
+            this.modified = modified;
+            this.since = since;
+        }
+
+        static FileProbe of(Path path, long now) throws IOException {
+            return new FileProbe(Files.size(path), Files.getLastModifiedTime(path).toMillis(), now);
+        }
+
+        boolean sameAs(FileProbe other) {
+            return size == other.size && modified == other.modified;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class AdminAccessInterceptorTest {
+
+    private final AdminAccessInterceptor interceptor = new AdminAccessInterceptor("s3cret");
+
+    @Test
+    void acceptsTheConfiguredToken() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(adminRequest("s3cret"), response, null)).isTrue();
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void rejectsAMissingOrWrongToken() throws Exception {
+        for (String token : new String[] { null, "", "s3cre", "s3cret ", "S3CRET" }) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            assertThat(interceptor.preHandle(adminRequest(token), response, null)).as("token %s", token).isFalse();
+            assertThat(response.getStatus()).isEqualTo(403);
+        }
+    }
+
+    @Test
+    void hidesTheEndpointsWhenNoTokenIsConfigured() throws Exception {
+        AdminAccessInterceptor disabled = new AdminAccessInterceptor("");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Not even an empty token gets in
+        assertThat(disabled.preHandle(adminRequest(""), response, null)).isFalse();
+        assertThat(response.getStatus()).isEqualTo(404);
+    }
+
+    @Test
+    void letsCorsPreflightThroughWithoutAToken() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("OPTIONS", "/api/admin/memory");
+        request.addHeader(HttpHeaders.ORIGIN, "http://localhost:5173");
+        request.addHeader(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, "GET");
+
+        assertThat(interceptor.preHandle(request, new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    private static MockHttpServletRequest adminRequest(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/admin/memory");
+        if (token != null) {
+            request.addHeader(AdminAccessInterceptor.TOKEN_HEADER, token);
+        }
+        return request;
+    }
+}
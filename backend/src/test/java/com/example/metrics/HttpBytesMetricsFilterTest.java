@@ -0,0 +1,108 @@
+package com.example.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+
+class HttpBytesMetricsFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final HttpBytesMetricsFilter filter = new HttpBytesMetricsFilter(registry);
+
+    @Test
+    void countsBodiesReadAndWrittenThroughTheStreams() throws Exception {
+        MockHttpServletRequest request = request("POST", "/api/upload", "/api/upload");
+        request.setContent(new byte[100]);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> {
+            req.getInputStream().readAllBytes();
+            res.getOutputStream().write(new byte[250]);
+            res.getOutputStream().write(7);
+        });
+
+        assertThat(summary("http.server.request.bytes", "POST", "/api/upload").totalAmount()).isEqualTo(100);
+        assertThat(summary("http.server.response.bytes", "POST", "/api/upload").totalAmount()).isEqualTo(251);
+        assertThat(response.getContentAsByteArray()).hasSize(251);
+    }
+
+    @Test
+    void countsWriterOutputAsEncodedBytes() throws Exception {
+        MockHttpServletRequest request = request("GET", "/api/status/1", "/api/status/{id}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setCharacterEncoding("UTF-8");
+
+        // The writer is never flushed by the application; the filter has to
+        filter.doFilter(request, response, (req, res) -> res.getWriter().write("héllo"));
+
+        assertThat(summary("http.server.response.bytes", "GET", "/api/status/{id}").totalAmount()).isEqualTo(6);
+        assertThat(response.getContentAsString(StandardCharsets.UTF_8)).isEqualTo("héllo");
+        assertThat(registry.find("http.server.request.bytes").summary()).isNull();
+    }
+
+    @Test
+    void countsUnreadBodiesByContentLengthAndSendfileByRange() throws Exception {
+        MockHttpServletRequest request = request("POST", "/api/files/a", "/api/files/{id}");
+        // Multipart bodies are parsed by the container, never through the wrapped stream
+        request.setContent(new byte[4096]);
+        request.setAttribute("org.apache.tomcat.sendfile.start", 1000L);
+        request.setAttribute("org.apache.tomcat.sendfile.end", 3000L);
+        FilterChain chain = (req, res) -> res.getOutputStream().write(new byte[10]);
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(summary("http.server.request.bytes", "POST", "/api/files/{id}").totalAmount()).isEqualTo(4096);
+        assertThat(summary("http.server.response.bytes", "POST", "/api/files/{id}").totalAmount()).isEqualTo(2010);
+    }
+
+    @Test
+    void recordsAsyncResponsesWhenTheyComplete() throws Exception {
+        MockHttpServletRequest request = request("GET", "/api/events", "/api/events");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> {
+            req.startAsync();
+            res.getOutputStream().write(new byte[32]);
+        });
+        assertThat(registry.find("http.server.response.bytes").summary()).isNull();
+
+        request.getAsyncContext().complete();
+
+        assertThat(summary("http.server.response.bytes", "GET", "/api/events").totalAmount()).isEqualTo(32);
+    }
+
+    @Test
+    void ignoresRequestsOutsideTheApi() throws Exception {
+        MockHttpServletRequest request = request("GET", "/index.html", null);
+        FilterChain chain = (req, res) -> res.getOutputStream().write(new byte[64]);
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(registry.getMeters()).isEmpty();
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String pattern) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        if (pattern != null) {
+            // Spring MVC sets this while handling the request, before the filter records
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        }
+        return request;
+    }
+
+    private DistributionSummary summary(String name, String method, String uri) {
+        DistributionSummary summary = registry.find(name).tag("method", method).tag("uri", uri).summary();
+        assertThat(summary).as("%s %s %s", name, method, uri).isNotNull();
+        return summary;
+    }
+}
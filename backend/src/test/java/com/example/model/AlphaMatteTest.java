@@ -0,0 +1,113 @@
+package com.example.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+class AlphaMatteTest {
+
+    // Java2D rounds each blend its own way; one level either side is the same colour
+    private static final int TOLERANCE = 1;
+
+    @Test
+    void blendsOverAColourLikeDrawImage() {
+        BufferedImage cutOut = randomCutOut(300, 200, 1);
+        int background = 0xFF3366CC;
+
+        BufferedImage expected = new BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = expected.createGraphics();
+        g2d.setColor(new Color(background, true));
+        g2d.fillRect(0, 0, 300, 200);
+        g2d.drawImage(cutOut, 0, 0, null);
+        g2d.dispose();
+
+        assertClose(AlphaMatte.from(cutOut).compositeOver(background), expected);
+    }
+
+    @Test
+    void blendsOverAnImageLikeDrawImage() {
+        BufferedImage cutOut = randomCutOut(257, 131, 2);
+        // Backgrounds from the library are opaque; Java2D leaves no defined colour under transparent ones
+        BufferedImage background = randomCutOut(257, 131, 3);
+        int[] backgroundPixels = ImageBuffers.pixels(background);
+        for (int i = 0; i < backgroundPixels.length; i++) {
+            backgroundPixels[i] |= 0xFF000000;
+        }
+
+        BufferedImage expected = ImageBuffers.copy(background);
+        Graphics2D g2d = expected.createGraphics();
+        g2d.drawImage(cutOut, 0, 0, null);
+        g2d.dispose();
+
+        assertClose(AlphaMatte.from(cutOut).compositeOver(backgroundPixels), expected);
+    }
+
+    @Test
+    void keepsTheAlphaOfTheBackground() {
+        BufferedImage cutOut = randomCutOut(16, 16, 7);
+
+        BufferedImage result = AlphaMatte.from(cutOut).compositeOver(0x00FFFFFF);
+
+        for (int pixel : ImageBuffers.pixels(result)) {
+            assertThat(pixel >>> 24).isZero();
+        }
+    }
+
+    @Test
+    void rejectsABackgroundOfAnotherSize() {
+        AlphaMatte matte = AlphaMatte.from(randomCutOut(10, 10, 4));
+
+        assertThatThrownBy(() -> matte.compositeOver(new int[99]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void sharesThePixelsOfTheCurrentImage() {
+        ImageState state = new ImageState();
+        state.setCurrentImage(randomCutOut(100, 100, 5));
+        state.setAlphaMatte(AlphaMatte.from(state.getCurrentImage()));
+
+        assertThat(state.measureMemory().get(MemoryCategory.MATTE)).isZero();
+
+        // A new current image drops the matte of the old one
+        state.setCurrentImage(randomCutOut(100, 100, 6));
+        assertThat(state.getAlphaMatte()).isNull();
+        assertThat(state.measureMemory().get(MemoryCategory.MATTE)).isZero();
+    }
+
+    private static void assertClose(BufferedImage actual, BufferedImage expected) {
+        int[] a = ImageBuffers.pixels(actual);
+        int[] e = ImageBuffers.pixels(ImageBuffers.toCanonical(expected));
+        assertThat(a).hasSameSizeAs(e);
+        for (int i = 0; i < a.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                int diff = Math.abs(((a[i] >>> shift) & 0xFF) - ((e[i] >>> shift) & 0xFF));
+                assertThat(diff).as("pixel %d, bits %d-%d: %08x vs %08x", i, shift, shift + 7, a[i], e[i])
+                        .isLessThanOrEqualTo(TOLERANCE);
+            }
+        }
+    }
+
+    // Random colours with fully transparent, fully opaque and partial alpha
+    private static BufferedImage randomCutOut(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ImageBuffers.pixels(image);
+        for (int i = 0; i < pixels.length; i++) {
+            int alpha = switch (random.nextInt(3)) {
+                case 0 -> 0;
+                case 1 -> 255;
+                default -> random.nextInt(256);
+            };
+            pixels[i] = (alpha << 24) | (random.nextInt() & 0x00FFFFFF);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+
+class CredentialCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private Credential stored;
+    private CredentialCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CredentialCache(() -> {
+            loads.incrementAndGet();
+            return stored;
+        });
+        ReflectionTestUtils.setField(cache, "refreshAheadSeconds", 300L);
+    }
+
+    @Test
+    void readsTheTokenStoreOnceUntilReloaded() {
+        stored = new FakeCredential(true, 3600);
+
+        assertThat(cache.get()).isSameAs(stored);
+        assertThat(cache.get()).isSameAs(stored);
+        assertThat(loads).hasValue(1);
+
+        Credential replaced = new FakeCredential(true, 3600);
+        stored = replaced;
+        assertThat(cache.reload()).isSameAs(replaced);
+        assertThat(cache.get()).isSameAs(replaced);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void invalidateDropsTheCredentialWithoutReadingTheStoreAgain() {
+        stored = new FakeCredential(true, 3600);
+        cache.get();
+
+        cache.invalidate();
+
+        assertThat(cache.get()).isNull();
+        assertThat(cache.isUsable()).isFalse();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void failedLoadCountsAsNotAuthenticated() {
+        CredentialCache failing = new CredentialCache(() -> {
+            throw new IOException("token file unreadable");
+        });
+
+        assertThat(failing.get()).isNull();
+        assertThat(failing.isUsable()).isFalse();
+    }
+
+    @Test
+    void refreshesATokenAboutToExpire() {
+        FakeCredential expiring = new FakeCredential(true, 3600);
+        stored = expiring;
+        cache.get();
+        // Expires after loading, so only the scheduled check refreshes it
+        expiring.setExpiresInSeconds(60L);
+
+        cache.refreshIfExpiring();
+
+        assertThat(expiring.refreshes).hasValue(1);
+        assertThat(expiring.getAccessToken()).isEqualTo("renewed");
+        assertThat(expiring.getExpiresInSeconds()).isGreaterThan(300);
+        assertThat(cache.get()).isSameAs(expiring);
+    }
+
+    @Test
+    void leavesAFreshTokenAlone() {
+        FakeCredential fresh = new FakeCredential(true, 3600);
+        stored = fresh;
+        cache.get();
+
+        cache.refreshIfExpiring();
+
+        assertThat(fresh.refreshes).hasValue(0);
+    }
+
+    @Test
+    void dropsATokenThatCannotBeRefreshed() {
+        FakeCredential revoked = new FakeCredential(false, 3600);
+        stored = revoked;
+        cache.get();
+        revoked.setExpiresInSeconds(60L);
+
+        cache.refreshIfExpiring();
+
+        assertThat(revoked.refreshes).hasValue(1);
+        assertThat(cache.get()).isNull();
+        assertThat(cache.isUsable()).isFalse();
+        assertThat(loads).hasValue(1);
+    }
+
+    // Refreshes without a token server: succeeds with an hour's validity or fails
+    private static final class FakeCredential extends Credential {
+        private final boolean refreshSucceeds;
+        private final AtomicInteger refreshes = new AtomicInteger();
+
+        FakeCredential(boolean refreshSucceeds, long expiresInSeconds) {
+            super(new Credential.Builder(BearerToken.authorizationHeaderAccessMethod())
+                    .setTransport(new NetHttpTransport())
+                    .setJsonFactory(GsonFactory.getDefaultInstance())
+                    .setTokenServerEncodedUrl("http://localhost/token")
+                    .setClientAuthentication(request -> { }));
+            this.refreshSucceeds = refreshSucceeds;
+            setAccessToken("access");
+            setRefreshToken("refresh");
+            setExpiresInSeconds(expiresInSeconds);
+        }
+
+        @Override
+        protected TokenResponse executeRefreshToken() {
+            refreshes.incrementAndGet();
+            return refreshSucceeds ? new TokenResponse().setAccessToken("renewed").setExpiresInSeconds(3600L) : null;
+        }
+    }
+}
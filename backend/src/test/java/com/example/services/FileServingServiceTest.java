@@ -0,0 +1,185 @@
+package com.example.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class FileServingServiceTest {
+
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private final FileServingService service = new FileServingService();
+    private Path file;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        content = new byte[100];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        file = dir.resolve("photo.png");
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(LAST_MODIFIED));
+    }
+
+    @Test
+    void servesTheWholeFileWithValidators() throws Exception {
+        MockHttpServletResponse response = serve(get());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+        assertThat(response.getContentLengthLong()).isEqualTo(100);
+        assertThat(response.getContentType()).isEqualTo(MediaType.IMAGE_PNG_VALUE);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNotBlank();
+        assertThat(response.getDateHeader(HttpHeaders.LAST_MODIFIED)).isEqualTo(LAST_MODIFIED);
+    }
+
+    @Test
+    void servesASingleRange() throws Exception {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 10-19/100");
+        assertThat(response.getContentLengthLong()).isEqualTo(10);
+        assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 10, 20));
+    }
+
+    @Test
+    void servesSuffixAndOpenEndedRanges() throws Exception {
+        MockHttpServletRequest suffix = get();
+        suffix.addHeader(HttpHeaders.RANGE, "bytes=-5");
+        MockHttpServletResponse response = serve(suffix);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 95-99/100");
+        assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 95, 100));
+
+        // An end past the file is clamped
+        MockHttpServletRequest openEnded = get();
+        openEnded.addHeader(HttpHeaders.RANGE, "bytes=90-500");
+        response = serve(openEnded);
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 90-99/100");
+    }
+
+    @Test
+    void answersMultipleRangesWithTheWholeFile() throws Exception {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-1,5-6");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isNull();
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    void rejectsUnsatisfiableRanges() throws Exception {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-200");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */100");
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void ignoresMalformedRanges() throws Exception {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "pages=1-2");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    void answersAMatchingIfNoneMatchWithNotModified() throws Exception {
+        String etag = serve(get()).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse response = serve(request);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+
+        MockHttpServletRequest stale = get();
+        stale.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\"");
+        assertThat(serve(stale).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void answersIfModifiedSinceByTheFileTime() throws Exception {
+        MockHttpServletRequest current = get();
+        current.addHeader(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED);
+        MockHttpServletResponse response = serve(current);
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+
+        MockHttpServletRequest older = get();
+        older.addHeader(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED - 60_000);
+        response = serve(older);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    void ignoresTheRangeWhenIfRangeIsStale() throws Exception {
+        String etag = serve(get()).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletRequest matching = get();
+        matching.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        matching.addHeader(HttpHeaders.IF_RANGE, etag);
+        assertThat(serve(matching).getStatus()).isEqualTo(206);
+
+        MockHttpServletRequest stale = get();
+        stale.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        stale.addHeader(HttpHeaders.IF_RANGE, "\"other\"");
+        MockHttpServletResponse response = serve(stale);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    void headRequestsGetHeadersOnly() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/photo.png");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentLengthLong()).isEqualTo(100);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.serve(file, MediaType.IMAGE_PNG, request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/photo.png");
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class GridStamperTest {
+
+    private static final int WHITE = 0xFFFFFF;
+
+    @Test
+    void matchesDrawImageIncludingClippedAndOverlappingCells() {
+        BufferedImage tile = randomTile(37, 23, 1);
+        // Off every edge, overlapping each other, and one entirely outside
+        int[] xs = { -10, 0, 20, 90, 95, 300 };
+        int[] ys = { -5, 10, 15, 40, 78, 0 };
+
+        assertStripsMatchDrawImage(tile, 110, 90, xs, ys);
+    }
+
+    @Test
+    void matchesDrawImageAcrossTheParallelThreshold() {
+        BufferedImage tile = randomTile(64, 48, 2);
+        int cols = 12;
+        int rows = 16;
+        int[] xs = new int[cols * rows];
+        int[] ys = new int[cols * rows];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = (i % cols) * 70 + 3;
+            ys[i] = (i / cols) * 55 + 3;
+        }
+
+        assertStripsMatchDrawImage(tile, cols * 70, rows * 55, xs, ys);
+    }
+
+    @Test
+    void convertsTransparencyOverWhite() {
+        BufferedImage argb = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+        argb.setRGB(0, 0, 0x00123456);
+        argb.setRGB(1, 0, 0xFF123456);
+
+        BufferedImage rgb = GridStamper.toIntRgb(argb);
+
+        assertThat(rgb.getType()).isEqualTo(BufferedImage.TYPE_INT_RGB);
+        assertThat(rgb.getRGB(0, 0)).isEqualTo(0xFFFFFFFF);
+        assertThat(rgb.getRGB(1, 0)).isEqualTo(0xFF123456);
+        BufferedImage already = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+        assertThat(GridStamper.toIntRgb(already)).isSameAs(already);
+    }
+
+    @Test
+    void rejectsOtherLayouts() {
+        BufferedImage tile = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        BufferedImage argb = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+
+        assertThatThrownBy(() -> GridStamper.stamp(tile, argb, 0, new int[] { 0 }, new int[] { 0 }))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> GridStamper.fill(tile.getSubimage(1, 1, 2, 2), WHITE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Renders the sheet whole and in uneven strips, and compares both with drawImage
+    private static void assertStripsMatchDrawImage(BufferedImage tile, int width, int height, int[] xs, int[] ys) {
+        BufferedImage expected = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = expected.createGraphics();
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, width, height);
+        for (int i = 0; i < xs.length; i++) {
+            g2d.drawImage(tile, xs[i], ys[i], null);
+        }
+        g2d.dispose();
+
+        for (int stripHeight : new int[] { height, 17 }) {
+            for (int y0 = 0; y0 < height; y0 += stripHeight) {
+                BufferedImage strip = new BufferedImage(width, Math.min(stripHeight, height - y0),
+                        BufferedImage.TYPE_INT_RGB);
+                GridStamper.fill(strip, WHITE);
+                GridStamper.stamp(tile, strip, y0, xs, ys);
+                int[] actualRows = strip.getRGB(0, 0, width, strip.getHeight(), null, 0, width);
+                int[] expectedRows = expected.getRGB(0, y0, width, strip.getHeight(), null, 0, width);
+                assertThat(actualRows).as("strip at row %d", y0).isEqualTo(expectedRows);
+            }
+        }
+    }
+
+    private static BufferedImage randomTile(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage tile = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                tile.setRGB(x, y, random.nextInt());
+            }
+        }
+        return tile;
+    }
+}
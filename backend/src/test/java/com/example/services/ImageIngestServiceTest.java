@@ -0,0 +1,197 @@
+package com.example.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.model.IngestedImage;
+
+class ImageIngestServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsOrientationFromLittleAndBigEndianExif() throws IOException {
+        assertThat(ImageIngestService.readExifOrientation(jpeg(exif(ByteOrder.LITTLE_ENDIAN, 6)))).isEqualTo(6);
+        assertThat(ImageIngestService.readExifOrientation(jpeg(exif(ByteOrder.BIG_ENDIAN, 8)))).isEqualTo(8);
+    }
+
+    @Test
+    void findsExifAfterOtherSegments() throws IOException {
+        byte[] app0 = segment(0xFFE0, "JFIF\0".getBytes());
+        assertThat(ImageIngestService.readExifOrientation(jpeg(app0, exif(ByteOrder.BIG_ENDIAN, 3)))).isEqualTo(3);
+    }
+
+    @Test
+    void defaultsToUprightWhenThereIsNoUsableOrientation() throws IOException {
+        // No EXIF at all
+        assertThat(ImageIngestService.readExifOrientation(jpeg())).isEqualTo(1);
+        // Value outside 1-8
+        assertThat(ImageIngestService.readExifOrientation(jpeg(exif(ByteOrder.BIG_ENDIAN, 9)))).isEqualTo(1);
+        // Not a JPEG
+        assertThat(ImageIngestService.readExifOrientation(write(new byte[] { 'G', 'I', 'F', '8' }))).isEqualTo(1);
+        // Truncated inside the EXIF segment
+        byte[] complete = Files.readAllBytes(jpeg(exif(ByteOrder.LITTLE_ENDIAN, 6)));
+        assertThat(ImageIngestService.readExifOrientation(write(Arrays.copyOf(complete, 20)))).isEqualTo(1);
+    }
+
+    @Test
+    void orientRotatesAndMirrors() {
+        // 2x1: red on the left, blue on the right
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0xFFFF0000);
+        image.setRGB(1, 0, 0xFF0000FF);
+
+        BufferedImage mirrored = ImageIngestService.orient(image, 2);
+        assertThat(mirrored.getRGB(0, 0)).isEqualTo(0xFF0000FF);
+
+        // Rotating clockwise puts the left edge on top
+        BufferedImage clockwise = ImageIngestService.orient(image, 6);
+        assertThat(clockwise.getWidth()).isEqualTo(1);
+        assertThat(clockwise.getHeight()).isEqualTo(2);
+        assertThat(clockwise.getRGB(0, 0)).isEqualTo(0xFFFF0000);
+        assertThat(clockwise.getRGB(0, 1)).isEqualTo(0xFF0000FF);
+
+        BufferedImage counterClockwise = ImageIngestService.orient(image, 8);
+        assertThat(counterClockwise.getRGB(0, 0)).isEqualTo(0xFF0000FF);
+
+        assertThat(ImageIngestService.orient(image, 1)).isSameAs(image);
+        assertThat(ImageIngestService.orient(image, 0)).isSameAs(image);
+    }
+
+    @Test
+    void ingestScalesToTheWorkingSizeAndKeepsTheOriginal() throws IOException {
+        ImageIngestService service = new ImageIngestService(dir.toString(), 100, 1_000_000, 10);
+        service.init();
+        byte[] png = encode(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "png");
+
+        IngestedImage ingested = service.ingest(new ByteArrayInputStream(png));
+
+        assertThat(ingested.getImage().getWidth()).isEqualTo(100);
+        assertThat(ingested.getImage().getHeight()).isEqualTo(50);
+        assertThat(Files.readAllBytes(ingested.getOriginalFile())).isEqualTo(png);
+        assertThat(ingested.getOriginalFile().getFileName().toString()).endsWith(".png");
+    }
+
+    @Test
+    void ingestRejectsImagesOverThePixelLimit() throws IOException {
+        ImageIngestService service = new ImageIngestService(dir.toString(), 100, 1000, 10);
+        service.init();
+        byte[] png = encode(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "png");
+
+        assertThatThrownBy(() -> service.ingest(new ByteArrayInputStream(png)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("too large");
+        try (var files = Files.list(dir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void decodeKeepsNoOriginal() throws IOException {
+        ImageIngestService service = new ImageIngestService(dir.toString(), 100, 1_000_000, 10);
+        service.init();
+        byte[] png = encode(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "png");
+
+        IngestedImage decoded = service.decode(new ByteArrayInputStream(png));
+
+        assertThat(decoded.getImage().getWidth()).isEqualTo(100);
+        assertThat(decoded.getOriginalFile()).isNull();
+        try (var files = Files.list(dir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void identicalUploadsShareOneOriginalEvenWhenConcurrent() throws Exception {
+        ImageIngestService service = new ImageIngestService(dir.toString(), 100, 1_000_000, 10);
+        service.init();
+        byte[] png = encode(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "png");
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<IngestedImage>> uploads = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                uploads.add(pool.submit(() -> service.ingest(new ByteArrayInputStream(png))));
+            }
+            Path first = uploads.get(0).get().getOriginalFile();
+            for (Future<IngestedImage> upload : uploads) {
+                assertThat(upload.get().getOriginalFile()).isEqualTo(first);
+            }
+            assertThat(Files.readAllBytes(first)).isEqualTo(png);
+        } finally {
+            pool.shutdown();
+        }
+        try (var files = Files.list(dir)) {
+            assertThat(files).hasSize(1);
+        }
+    }
+
+    // APP1 segment with a TIFF header and one IFD0 entry for the orientation
+    private static byte[] exif(ByteOrder order, int orientation) {
+        ByteBuffer tiff = ByteBuffer.allocate(6 + 8 + 2 + 12 + 4).order(order);
+        tiff.put("Exif\0\0".getBytes());
+        tiff.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        tiff.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        tiff.putShort((short) 42);
+        tiff.putInt(8);
+        tiff.putShort((short) 1);
+        tiff.putShort((short) 0x0112);
+        tiff.putShort((short) 3);
+        tiff.putInt(1);
+        tiff.putShort((short) orientation);
+        tiff.putShort((short) 0);
+        tiff.putInt(0);
+        return segment(0xFFE1, tiff.array());
+    }
+
+    private static byte[] segment(int marker, byte[] payload) {
+        ByteBuffer segment = ByteBuffer.allocate(4 + payload.length);
+        segment.putShort((short) marker);
+        segment.putShort((short) (payload.length + 2));
+        segment.put(payload);
+        return segment.array();
+    }
+
+    private Path jpeg(byte[]... segments) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(0xD8);
+        for (byte[] segment : segments) {
+            out.write(segment);
+        }
+        // Start of scan, then a little filler
+        out.write(new byte[] { (byte) 0xFF, (byte) 0xDA, 0, 2, 0, 0 });
+        return write(out.toByteArray());
+    }
+
+    private Path write(byte[] data) throws IOException {
+        return Files.write(Files.createTempFile(dir, "exif", ".jpg"), data);
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
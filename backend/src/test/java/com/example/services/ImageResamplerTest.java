@@ -0,0 +1,141 @@
+package com.example.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.example.services.ImageResampler.Filter;
+
+class ImageResamplerTest {
+
+    private static final int FILL = 0xFF336699;
+
+    @ParameterizedTest
+    @EnumSource(Filter.class)
+    void producesTheRequestedSize(Filter filter) {
+        BufferedImage source = solid(120, 80, BufferedImage.TYPE_INT_RGB, FILL);
+
+        assertThat(size(ImageResampler.resize(source, 37, 23, filter))).containsExactly(37, 23);
+        assertThat(size(ImageResampler.resize(source, 300, 200, filter))).containsExactly(300, 200);
+        // Large reduction goes through the box-halving path first
+        assertThat(size(ImageResampler.resize(source, 7, 5, filter))).containsExactly(7, 5);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Filter.class)
+    void keepsAUniformImageUniformUpToTheEdges(Filter filter) {
+        BufferedImage source = solid(120, 80, BufferedImage.TYPE_3BYTE_BGR, FILL);
+
+        for (int[] target : new int[][] { { 37, 23 }, { 300, 200 }, { 7, 5 } }) {
+            BufferedImage result = ImageResampler.resize(source, target[0], target[1], filter);
+            for (int y = 0; y < result.getHeight(); y++) {
+                for (int x = 0; x < result.getWidth(); x++) {
+                    assertThat(result.getRGB(x, y)).as("pixel %d,%d at %dx%d", x, y, target[0], target[1])
+                            .isEqualTo(FILL);
+                }
+            }
+        }
+    }
+
+    @Test
+    void edgePixelsKeepTheColourOfTheSourceEdge() {
+        // Black left half, white right half, reduced 8x through box halving and the kernel
+        BufferedImage source = new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = source.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(200, 0, 200, 400);
+        g.dispose();
+
+        BufferedImage result = ImageResampler.resize(source, 50, 50, Filter.LANCZOS);
+
+        for (int y = 0; y < 50; y++) {
+            assertThat(result.getRGB(0, y)).isEqualTo(0xFF000000);
+            assertThat(result.getRGB(49, y)).isEqualTo(0xFFFFFFFF);
+        }
+    }
+
+    @Test
+    void sameSizeCopiesThePixels() {
+        BufferedImage source = new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB);
+        source.setRGB(0, 0, 0x80FF0000);
+        source.setRGB(2, 1, 0xFF00FF00);
+
+        BufferedImage result = ImageResampler.resize(source, 3, 2, Filter.LANCZOS);
+
+        assertThat(result).isNotSameAs(source);
+        assertThat(result.getRGB(0, 0)).isEqualTo(0x80FF0000);
+        assertThat(result.getRGB(2, 1)).isEqualTo(0xFF00FF00);
+        assertThat(result.getRGB(1, 0)).isZero();
+    }
+
+    @Test
+    void transparentPixelsDoNotBleedIntoVisibleOnes() {
+        // Invisible green on the left, opaque red on the right
+        BufferedImage source = solid(64, 64, BufferedImage.TYPE_INT_ARGB, 0x0000FF00);
+        Graphics2D g = source.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(32, 0, 32, 64);
+        g.dispose();
+
+        for (int[] target : new int[][] { { 21, 21 }, { 8, 8 }, { 100, 100 } }) {
+            BufferedImage result = ImageResampler.resize(source, target[0], target[1], Filter.LANCZOS);
+            assertThat(result.getType()).isEqualTo(BufferedImage.TYPE_INT_ARGB);
+            assertThat(result.getRGB(0, 0) >>> 24).isZero();
+            assertThat(result.getRGB(target[0] - 1, 0)).isEqualTo(0xFFFF0000);
+            for (int y = 0; y < result.getHeight(); y++) {
+                for (int x = 0; x < result.getWidth(); x++) {
+                    assertThat((result.getRGB(x, y) >> 8) & 0xFF).as("green at %d,%d", x, y).isZero();
+                }
+            }
+        }
+    }
+
+    @Test
+    void opaqueSourcesGiveOpaqueResults() {
+        BufferedImage result = ImageResampler.resize(solid(10, 10, BufferedImage.TYPE_INT_RGB, FILL), 10, 10,
+                Filter.MITCHELL);
+
+        assertThat(result.getType()).isEqualTo(BufferedImage.TYPE_INT_RGB);
+        assertThat(result.getRGB(9, 9)).isEqualTo(FILL);
+    }
+
+    @Test
+    void rejectsEmptyTargets() {
+        BufferedImage source = solid(10, 10, BufferedImage.TYPE_INT_RGB, FILL);
+
+        assertThatThrownBy(() -> ImageResampler.resize(source, 0, 10, Filter.LANCZOS))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ImageResampler.resize(source, 10, -1, Filter.LANCZOS))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void resolvesFilterNames() {
+        assertThat(Filter.fromName(null)).isEqualTo(Filter.LANCZOS);
+        assertThat(Filter.fromName("mitchell")).isEqualTo(Filter.MITCHELL);
+        assertThatThrownBy(() -> Filter.fromName("nearest"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("nearest");
+    }
+
+    private static BufferedImage solid(int width, int height, int type, int argb) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+
+    private static int[] size(BufferedImage image) {
+        return new int[] { image.getWidth(), image.getHeight() };
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageStateRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void issuesUnguessableIdsAndNamesSessionsByKey() {
+        ImageStateRegistry registry = registry(8, 10, 20);
+
+        ImageStateRegistry.Session first = registry.create("10.0.0.1");
+        ImageStateRegistry.Session second = registry.create("10.0.0.1");
+
+        // 24 random bytes, URL-safe Base64 without padding
+        assertThat(first.getId()).matches("[A-Za-z0-9_-]{32}");
+        assertThat(first.getId()).isNotEqualTo(second.getId());
+        assertThat(first.getKey()).matches("[0-9a-f]{16}").isNotEqualTo(second.getKey());
+        assertThat(registry.find(first.getId())).isSameAs(first);
+        assertThat(registry.removeByKey(first.getKey())).isTrue();
+        assertThat(registry.find(first.getId())).isNull();
+    }
+
+    @Test
+    void refusesUnknownAndMalformedIds() {
+        ImageStateRegistry registry = registry(8, 10, 20);
+
+        assertThat(registry.find("never-issued")).isNull();
+        assertThatThrownBy(() -> registry.find("not a valid id"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> registry.find("x".repeat(65)))
+                .isInstanceOf(IllegalArgumentException.class);
+        // Only the shared default session is created on demand
+        assertThat(registry.find(null)).isSameAs(registry.find(ImageStateRegistry.DEFAULT_SESSION));
+        assertThat(registry.find(" ").getId()).isEqualTo(ImageStateRegistry.DEFAULT_SESSION);
+    }
+
+    @Test
+    void rateLimitsNewSessionsPerClient() {
+        ImageStateRegistry registry = registry(8, 10, 2);
+
+        registry.create("10.0.0.1");
+        registry.create("10.0.0.1");
+
+        assertThatThrownBy(() -> registry.create("10.0.0.1"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Too many new sessions");
+        assertThat(registry.create("10.0.0.2")).isNotNull();
+    }
+
+    @Test
+    void refusesNewSessionsWhileEverySessionIsActive() {
+        ImageStateRegistry registry = registry(2, 10, 20);
+        ImageStateRegistry.Session first = registry.create("10.0.0.1");
+        registry.create("10.0.0.2");
+
+        assertThatThrownBy(() -> registry.create("10.0.0.3"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("All editor sessions are in use");
+        assertThat(registry.find(first.getId())).isSameAs(first);
+    }
+
+    @Test
+    void makesRoomByDroppingTheLeastRecentlyUsedIdleSession() throws InterruptedException {
+        // Sessions become evictable as soon as they are idle at all
+        ImageStateRegistry registry = registry(2, 0, 20);
+        ImageStateRegistry.Session older = registry.create("10.0.0.1");
+        ImageStateRegistry.Session newer = registry.create("10.0.0.2");
+        Thread.sleep(5);
+        registry.find(older.getId());
+
+        ImageStateRegistry.Session third = registry.create("10.0.0.3");
+
+        assertThat(registry.find(newer.getId())).isNull();
+        assertThat(registry.find(older.getId())).isSameAs(older);
+        assertThat(registry.getSessions()).containsExactlyInAnyOrder(older, third);
+    }
+
+    @Test
+    void expiresIdleSessionsAndDeletesOriginalsNoSessionUses() throws IOException, InterruptedException {
+        ImageStateRegistry registry = new ImageStateRegistry(ingestService(), 8, 0, 10, 20);
+        Path shared = Files.createFile(dir.resolve("shared.jpg"));
+        ImageStateRegistry.Session first = registry.create("10.0.0.1");
+        ImageStateRegistry.Session second = registry.create("10.0.0.1");
+        registry.replaceOriginal(first.getState(), shared);
+        registry.replaceOriginal(second.getState(), shared);
+
+        registry.remove(first.getId());
+        assertThat(shared).exists();
+
+        Thread.sleep(5);
+        registry.expireIdleSessions();
+
+        assertThat(registry.find(second.getId())).isNull();
+        assertThat(shared).doesNotExist();
+    }
+
+    private ImageStateRegistry registry(int maxSessions, long evictableAfterIdleMinutes, int createPerMinute) {
+        return new ImageStateRegistry(ingestService(), maxSessions, 120, evictableAfterIdleMinutes, createPerMinute);
+    }
+
+    private ImageIngestService ingestService() {
+        return new ImageIngestService(dir.toString(), 100, 1_000_000, 10);
+    }
+}
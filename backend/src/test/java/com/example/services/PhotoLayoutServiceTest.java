@@ -0,0 +1,86 @@
+package com.example.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.dto.PhotoLayoutRequest;
+import com.example.model.ImageBuffers;
+import com.example.model.ImageState;
+import com.example.model.SheetGeometry;
+
+class PhotoLayoutServiceTest {
+
+    private final PhotoLayoutService service = new PhotoLayoutService(new LayoutTemplateRegistry());
+
+    @Test
+    void rendersTheSheetInTheCanonicalLayout() {
+        BufferedImage photo = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        photo.setRGB(0, 0, 0x123456);
+
+        BufferedImage sheet = service.apply(photo, grid(100, 100, 0, 96));
+
+        assertThat(ImageBuffers.isCanonical(sheet)).isTrue();
+        assertThat(sheet.getWidth()).isEqualTo(SheetGeometry.mmToPx(100, 96));
+        assertThat(sheet.getRGB(0, 0)).isEqualTo(0xFF123456);
+        // Outside the grid the sheet is opaque white paper
+        assertThat(sheet.getRGB(sheet.getWidth() - 1, sheet.getHeight() - 1)).isEqualTo(0xFFFFFFFF);
+    }
+
+    @Test
+    void clampsThePhotoToThePaper() {
+        // At 600 DPI the 2000 px photo would be 12500 px wide, far wider than 50 mm
+        BufferedImage photo = new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB);
+        int border = SheetGeometry.mmToPx(2, 600);
+        int printable = SheetGeometry.mmToPx(50, 600) - 2 * border;
+
+        BufferedImage sheet = service.apply(photo, grid(50, 50, 2, 600));
+
+        assertThat(sheet.getRGB(border + printable - 1, border)).isEqualTo(0xFF000000);
+        assertThat(sheet.getRGB(border + printable / 2, border + printable / 2 + 1)).isEqualTo(0xFFFFFFFF);
+    }
+
+    @Test
+    void rejectsPaperTooSmallForTheBorder() {
+        BufferedImage photo = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+
+        assertThatThrownBy(() -> service.apply(photo, grid(10, 10, 5, 96)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("too small for the border");
+        assertThatThrownBy(() -> service.apply(photo, grid(100_000, 100, 0, 96)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Paper width and height");
+    }
+
+    @Test
+    void leavesLargeSheetsToTheStreamingExport() {
+        BufferedImage photo = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        PhotoLayoutRequest a3 = grid(297, 420, 0, 1200);
+
+        assertThatThrownBy(() -> service.apply(photo, a3))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("export it instead");
+        assertThat(service.prepareExport(a3, stateWith(photo)).getSheetWidth())
+                .isEqualTo(SheetGeometry.mmToPx(297, 1200));
+    }
+
+    private static ImageState stateWith(BufferedImage photo) {
+        ImageState state = new ImageState();
+        state.setOriginalImage(photo);
+        return state;
+    }
+
+    private static PhotoLayoutRequest grid(int widthMm, int heightMm, int borderMm, int dpi) {
+        PhotoLayoutRequest request = new PhotoLayoutRequest();
+        request.setRows(1);
+        request.setCols(1);
+        request.setFinalWidth(widthMm);
+        request.setFinalHeight(heightMm);
+        request.setBorderSize(borderMm);
+        request.setDpi(dpi);
+        return request;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.dto.PhotoEnhanceRequest;
+import com.example.dto.PipelineStep;
+import com.example.services.PipelinePlanner.Kind;
+import com.example.services.PipelinePlanner.Stage;
+
+class PipelinePlannerTest {
+
+    private final PhotoEnhanceService enhanceService = new PhotoEnhanceService();
+    private final PipelinePlanner planner = new PipelinePlanner(new CropImageService(), new ResizeImageService(),
+            null, enhanceService);
+
+    @Test
+    void fusesAdjacentEnhanceStepsIntoOneStage() {
+        List<PipelineStep> steps = List.of(enhance(20, 0), enhance(0, 30), enhance(-10, -20));
+
+        List<Stage> fused = planner.plan(steps, true);
+        assertThat(fused).hasSize(1);
+        assertThat(fused.get(0).getKind()).isEqualTo(Kind.TONE);
+        assertThat(fused.get(0).getSteps()).hasSize(3);
+
+        assertThat(planner.plan(steps, false)).hasSize(3);
+    }
+
+    @Test
+    void fusedLutMatchesApplyingEachStepInTurn() {
+        BufferedImage image = gradient();
+        float[][] settings = { { 40, 0 }, { 0, 60 }, { -25, -50 } };
+
+        BufferedImage sequential = image;
+        for (float[] setting : settings) {
+            sequential = enhanceService.applyLut(sequential, enhanceService.buildLut(setting[0], setting[1]));
+        }
+        Stage stage = planner.plan(List.of(enhance(40, 0), enhance(0, 60), enhance(-25, -50)), true).get(0);
+        BufferedImage fused = planner.applyFused(image, stage);
+
+        for (int x = 0; x < 256; x++) {
+            assertThat(fused.getRGB(x, 0)).as("value %d", x).isEqualTo(sequential.getRGB(x, 0));
+            assertThat(fused.getRGB(x, 1)).as("alpha row, value %d", x).isEqualTo(sequential.getRGB(x, 1));
+        }
+    }
+
+    @Test
+    void zeroAdjustmentsLeaveTheImageUntouched() {
+        BufferedImage image = gradient();
+        Stage stage = planner.plan(List.of(enhance(0, 0), enhance(0, 0)), true).get(0);
+
+        assertThat(planner.applyFused(image, stage)).isSameAs(image);
+    }
+
+    @Test
+    void identityLutKeepsPixelsAndAlpha() {
+        BufferedImage image = gradient();
+        int[] identity = new int[256];
+        for (int i = 0; i < identity.length; i++) {
+            identity[i] = i;
+        }
+
+        BufferedImage result = enhanceService.applyLut(image, identity);
+
+        for (int x = 0; x < 256; x++) {
+            assertThat(result.getRGB(x, 0)).isEqualTo(image.getRGB(x, 0));
+            assertThat(result.getRGB(x, 1)).isEqualTo(image.getRGB(x, 1));
+        }
+    }
+
+    @Test
+    void lutsStayWithinByteRange() {
+        for (float brightness : new float[] { -100, -50, 0, 50, 100 }) {
+            for (float contrast : new float[] { -100, -50, 0, 50, 100 }) {
+                int[] lut = enhanceService.buildLut(brightness, contrast);
+                assertThat(lut).hasSize(256);
+                for (int value : lut) {
+                    assertThat(value).isBetween(0, 255);
+                }
+            }
+        }
+        assertThat(enhanceService.buildLut(0, 0)[128]).isEqualTo(128);
+    }
+
+    // Row 0: opaque grey ramp, row 1: the same ramp with a varying alpha
+    private static BufferedImage gradient() {
+        BufferedImage image = new BufferedImage(256, 2, BufferedImage.TYPE_INT_ARGB);
+        for (int x = 0; x < 256; x++) {
+            image.setRGB(x, 0, 0xFF000000 | (x << 16) | ((255 - x) << 8) | (x / 2));
+            image.setRGB(x, 1, (x << 24) | (x << 16) | (x << 8) | x);
+        }
+        return image;
+    }
+
+    private static PipelineStep enhance(float brightness, float contrast) {
+        PhotoEnhanceRequest request = new PhotoEnhanceRequest();
+        request.setBrightness(brightness);
+        request.setContrast(contrast);
+        PipelineStep step = new PipelineStep();
+        step.setOp("enhance");
+        step.setEnhance(request);
+        return step;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.dto.SheetComposeItem;
+import com.example.dto.SheetComposeRequest;
+import com.example.model.ComposedSheet;
+import com.example.model.SheetGeometry;
+
+class SheetComposerServiceTest {
+
+    // A4 at 72 DPI with 5 mm margins and 2 mm spacing
+    private static final int DPI = 72;
+    private static final int EXACT_DPI = 254;
+
+    private SheetComposerService composer;
+    private ImageStateRegistry.Session session;
+
+    @BeforeEach
+    void setUp() {
+        composer = new SheetComposerService();
+        ReflectionTestUtils.setField(composer, "maxSheets", 3);
+        session = new ImageStateRegistry.Session("test");
+        session.getState().setCurrentImage(new BufferedImage(60, 80, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    @Test
+    void packsPhotosOntoOneSheetWithoutOverlap() {
+        SheetComposeRequest request = request(item(35, 45, 6), item(50, 50, 2));
+
+        composer.compose(request, session);
+
+        assertThat(session.getSheets()).hasSize(1);
+        assertPlacementsValid(session.getSheets().get(0), request);
+        assertThat(session.getSheets().get(0).getPlacements()).hasSize(8);
+    }
+
+    @Test
+    void overflowsOntoANewSheetWhenTheFirstIsFull() {
+        // 35 x 45 mm plus spacing fits 5 across and 6 down on A4
+        int perSheet = 30;
+        SheetComposeRequest request = request(item(35, 45, perSheet + 1));
+
+        composer.compose(request, session);
+
+        List<ComposedSheet> sheets = session.getSheets();
+        assertThat(sheets).hasSize(2);
+        assertThat(sheets.get(0).getPlacements()).hasSize(perSheet);
+        assertThat(sheets.get(1).getPlacements()).hasSize(1);
+        sheets.forEach(sheet -> assertPlacementsValid(sheet, request));
+        assertThat(sheets.get(1).getImage().getWidth()).isEqualTo(SheetGeometry.mmToPx(210, DPI));
+    }
+
+    @Test
+    void largerPhotosArePlacedFirst() {
+        SheetComposeRequest request = request(item(20, 20, 3), item(90, 120, 1));
+
+        composer.compose(request, session);
+
+        ComposedSheet.Placement first = session.getSheets().get(0).getPlacements().get(0);
+        assertThat(first.getItem()).isEqualTo(1);
+        assertThat(first.getX()).isEqualTo(SheetGeometry.mmToPx(5, DPI));
+        assertThat(first.getY()).isEqualTo(SheetGeometry.mmToPx(5, DPI));
+    }
+
+    @Test
+    void keepsSheetsPerSessionUntilReleased() {
+        ImageStateRegistry.Session other = new ImageStateRegistry.Session("other");
+
+        composer.compose(request(item(35, 45, 2)), session);
+
+        assertThat(other.getSheets()).isEmpty();
+        assertThat(composer.getSheet(session, 0)).isNotNull();
+        long sheetPixels = (long) SheetGeometry.mmToPx(210, DPI) * SheetGeometry.mmToPx(297, DPI);
+        assertThat(composer.releaseSheets(session)).isEqualTo(sheetPixels * 4);
+        assertThat(composer.getSheet(session, 0)).isNull();
+        assertThat(composer.releaseSheets(session)).isZero();
+    }
+
+    @Test
+    void rejectsOrdersThatNeedMoreSheetsThanAllowed() {
+        assertThatThrownBy(() -> composer.compose(request(item(35, 45, 91)), session))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("more than 3 sheets");
+    }
+
+    @Test
+    void rejectsHugeCountsBeforeExpandingThem() {
+        assertThatThrownBy(() -> composer.compose(request(item(1, 1, 1_000_000_000)), session))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("more than 3 sheets");
+        assertThat(session.getSheets()).isEmpty();
+    }
+
+    @Test
+    void rejectsPhotosLargerThanThePaper() {
+        assertThatThrownBy(() -> composer.compose(request(item(250, 45, 1)), session))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("does not fit");
+    }
+
+    @Test
+    void rejectsPaperTooLargeForTheDpi() {
+        SheetComposeRequest request = request(item(35, 45, 1));
+        request.setPaperWidth(1000);
+        request.setPaperHeight(1000);
+        request.setDpi(1200);
+
+        assertThatThrownBy(() -> composer.compose(request, session))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("too large");
+
+        request.setPaperWidth(1_000_000);
+        assertThatThrownBy(() -> composer.compose(request, session))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Paper width and height");
+    }
+
+    @Test
+    void photoAsLargeAsThePrintableAreaNeedsNoSpacing() {
+        // 200 x 287 mm is A4 inside the 5 mm margins; spacing only separates neighbours
+        SheetComposeRequest request = request(item(200, 287, 2));
+
+        composer.compose(request, session);
+
+        assertThat(session.getSheets()).hasSize(2);
+        session.getSheets().forEach(sheet -> assertPlacementsValid(sheet, request));
+    }
+
+    @Test
+    void tilesThePaperExactlyWithoutMarginOrSpacing() {
+        // 10 px per mm, so every edge lands on a whole pixel
+        SheetComposeRequest request = exactRequest(item(25, 50, 8));
+
+        composer.compose(request, session);
+
+        assertThat(session.getSheets()).hasSize(1);
+        assertPlacementsValid(session.getSheets().get(0), request, EXACT_DPI);
+        assertThat(session.getSheets().get(0).getPlacements()).hasSize(8);
+    }
+
+    @Test
+    void fillsTheSpaceAroundALargePhotoBeforeStartingASheet() {
+        // 100 x 100 mm minus a 60 x 60 mm photo leaves room for exactly sixteen 20 x 20 mm photos
+        SheetComposeRequest request = exactRequest(item(20, 20, 16), item(60, 60, 1));
+
+        composer.compose(request, session);
+
+        assertThat(session.getSheets()).hasSize(1);
+        assertPlacementsValid(session.getSheets().get(0), request, EXACT_DPI);
+
+        request = exactRequest(item(20, 20, 17), item(60, 60, 1));
+        composer.compose(request, session);
+
+        assertThat(session.getSheets()).hasSize(2);
+        assertThat(session.getSheets().get(1).getPlacements()).hasSize(1);
+    }
+
+    private static void assertPlacementsValid(ComposedSheet sheet, SheetComposeRequest request) {
+        assertPlacementsValid(sheet, request, DPI);
+    }
+
+    private static void assertPlacementsValid(ComposedSheet sheet, SheetComposeRequest request, int dpi) {
+        int margin = SheetGeometry.mmToPx(request.getMargin(), dpi);
+        int spacing = SheetGeometry.mmToPx(request.getSpacing(), dpi);
+        Rectangle printable = new Rectangle(margin, margin,
+                SheetGeometry.mmToPx(request.getPaperWidth(), dpi) - 2 * margin,
+                SheetGeometry.mmToPx(request.getPaperHeight(), dpi) - 2 * margin);
+        List<Rectangle> placed = new ArrayList<>();
+        for (ComposedSheet.Placement placement : sheet.getPlacements()) {
+            SheetComposeItem item = request.getItems().get(placement.getItem());
+            assertThat(placement.getWidth()).isEqualTo(SheetGeometry.mmToPx(item.getWidth(), dpi));
+            assertThat(placement.getHeight()).isEqualTo(SheetGeometry.mmToPx(item.getHeight(), dpi));
+
+            Rectangle rect = new Rectangle(placement.getX(), placement.getY(), placement.getWidth(),
+                    placement.getHeight());
+            assertThat(printable.contains(rect)).as("%s inside %s", rect, printable).isTrue();
+            // Padding both sides by the spacing keeps neighbours at least that far apart
+            Rectangle padded = new Rectangle(rect.x, rect.y, rect.width + spacing, rect.height + spacing);
+            for (Rectangle other : placed) {
+                assertThat(padded.intersects(other)).as("%s too close to %s", padded, other).isFalse();
+            }
+            placed.add(padded);
+        }
+    }
+
+    private static SheetComposeRequest request(SheetComposeItem... items) {
+        SheetComposeRequest request = new SheetComposeRequest();
+        request.setDpi(DPI);
+        request.setItems(List.of(items));
+        return request;
+    }
+
+    // 100 x 100 mm at 10 px per mm, edge to edge
+    private static SheetComposeRequest exactRequest(SheetComposeItem... items) {
+        SheetComposeRequest request = request(items);
+        request.setDpi(EXACT_DPI);
+        request.setPaperWidth(100);
+        request.setPaperHeight(100);
+        request.setMargin(0);
+        request.setSpacing(0);
+        return request;
+    }
+
+    private static SheetComposeItem item(double width, double height, int count) {
+        SheetComposeItem item = new SheetComposeItem();
+        item.setWidth(width);
+        item.setHeight(height);
+        item.setCount(count);
+        return item;
+    }
+}